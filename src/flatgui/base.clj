@@ -43,6 +43,15 @@
     (.endsWith (name e) (name property))
     (= (.length (str e)) (+ (.length old-val-prefix) (dec (.length (str property)))))))
 
+;;; Counter of get-property calls in the evolver being generated. Each call gets its slot so that evolver wrapper
+;;; keeps resolved properties in a flat table indexed by slot
+(def ^:dynamic *getter-slot-counter* nil)
+
+(defn- next-getter-slot []
+  (if *getter-slot-counter*
+    (dec (swap! *getter-slot-counter* inc))
+    -1))
+
 (declare replace-gp)
 (declare replace-gpv)
 (declare replace-gpmap)
@@ -58,12 +67,13 @@
           dyn-path (some #(not (keyword? %)) path)
           property (last path-&-prop)
           dyn-property (not (keyword? property))
+          slot (next-getter-slot)
           get-property-fn (cond
-                            (and dyn-path dyn-property) (GetDynPropertyDynPathClojureFn.)
-                            dyn-path (GetPropertyDynPathClojureFn.)
-                            dyn-property (GetDynPropertyClojureFn.)
-                            :else (GetPropertyStaticClojureFn.))]
-      (with-meta (list get-property-fn path property) m))
+                            (and dyn-path dyn-property) (GetDynPropertyDynPathClojureFn. slot)
+                            dyn-path (GetPropertyDynPathClojureFn. slot)
+                            dyn-property (GetDynPropertyClojureFn. slot)
+                            :else (GetPropertyStaticClojureFn. slot))]
+      (with-meta (list get-property-fn (quote component) path property) m))
     (and (seq? %) (get-reason-call? %))
     (with-meta (list '.getEvolveReason 'component) (meta %))
     (old-value-ref? % property)
@@ -86,20 +96,28 @@
     (with-meta (functor/fmap #(gp-replacer % property) form) m)))
 
 ;(defn- gen-evolver [body property] (flatgui.core/replace-gp (gp-replacer body property) property))
-(defn- gen-evolver [body property] (gp-replacer body property))
+(defn- gen-evolver [body property]
+  (binding [*getter-slot-counter* (atom 0)]
+    (let [evolver-body (gp-replacer body property)]
+      ;; Realize lazy forms while slot counter is bound
+      (dorun (tree-seq coll? seq evolver-body))
+      evolver-body)))
 
 (defn with-all-meta [obj m]
   (let [orig-meta (meta obj)]
     (with-meta obj (merge orig-meta m))))
 
+;; Dependencies are put to metadata of the fn form rather than attached with with-meta at run time: with-meta
+;; would wrap the fn into a variadic one that allocates arguments on every call
+(defn- gen-fn-decl [params body property]
+  (with-meta
+    (list 'fn params (gen-evolver body property))
+    {:input-channel-dependencies (conj (flatgui.dependency/get-input-dependencies body) 'list)
+     :relative-dependencies (conj (flatgui.dependency/get-all-dependencies body) 'list)}))
+
 (defn- gen-evolver-decl
   ([fnname property body]
-    (let [result (list 'def fnname
-                       (list 'flatgui.base/with-all-meta
-                             (list 'fn ['component] (gen-evolver body property))
-                             (list 'hash-map
-                                    :input-channel-dependencies (conj (flatgui.dependency/get-input-dependencies body) 'list)
-                                    :relative-dependencies (conj (flatgui.dependency/get-all-dependencies body) 'list))))
+    (let [result (list 'def fnname (gen-fn-decl ['component] body property))
           ;_ (println "Generated evolver:\n" result)
           _ (if (= fnname 'r-spinner-evolver)
               (println "Evolver dependencies:\n" (flatgui.dependency/get-all-dependencies body)))
@@ -111,18 +129,10 @@
 (defmacro defevolverfn [& args] (apply gen-evolver-decl args))
 
 (defmacro accessorfn [body]
-  (list 'flatgui.base/with-all-meta
-        (list 'fn ['component] (gen-evolver body nil))
-        (list 'hash-map
-              :input-channel-dependencies (conj (flatgui.dependency/get-input-dependencies body) 'list)
-              :relative-dependencies (conj (flatgui.dependency/get-all-dependencies body) 'list))))
+  (gen-fn-decl ['component] body nil))
 
 (defmacro defaccessorfn [fnname params body]
-  (list 'def fnname (list 'flatgui.base/with-all-meta
-                          (list 'fn params (gen-evolver body nil))
-                          (list 'hash-map
-                                :input-channel-dependencies (conj (flatgui.dependency/get-input-dependencies body) 'list)
-                                :relative-dependencies (conj (flatgui.dependency/get-all-dependencies body) 'list)))))
+  (list 'def fnname (gen-fn-decl params body nil)))
 
 ;; TODO Deprecated
 (defn defroot [container] container)
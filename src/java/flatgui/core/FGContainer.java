@@ -198,6 +198,13 @@ public class FGContainer implements IFGContainer
                 evolverExecutorService_.getCompletedTaskCount());
     }
 
+    @Override
+    public long getCoalescedEventCount()
+    {
+        // This container does not coalesce events
+        return 0;
+    }
+
     // Private
 
     private Future<FGEvolveResultData> feedEventImpl(FGEvolveInputData inputData, Function<IFGModule, FGEvolveResultData> cycleFn)
@@ -141,6 +141,16 @@ public class FGWebContainerWrapper
         return changedPathsFuture;
     }
 
+    public synchronized Future<FGEvolveResultData> feedEvents(List<Object> evolveReasons)
+    {
+        return fgContainer_.feedEvents(evolveReasons);
+    }
+
+    public synchronized Future<FGEvolveResultData> feedTargetedEvents(List<Keyword> targetCellIdPath, List<Object> evolveReasons)
+    {
+        return fgContainer_.feedTargetedEvents(targetCellIdPath, evolveReasons);
+    }
+
     public Collection<ByteBuffer> getUnsolicitedResponseForClient(Consumer<Collection<ByteBuffer>> responseConsumer)
     {
         return getResponseForClientImpl(stateTransmitter_, null, responseConsumer);
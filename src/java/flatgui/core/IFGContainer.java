@@ -59,9 +59,37 @@ public interface IFGContainer
 
     Future<FGEvolveResultData> feedTargetedEvent(List<Keyword> targetCellIdPath, Object evolveReason);
 
+    /**
+     * Feeds several events at once. Implementations that support it evolve for all of them as one batch,
+     * collecting the results once; by default events are fed one by one
+     *
+     * @return results future for the whole batch
+     */
+    default Future<FGEvolveResultData> feedEvents(List<Object> evolveReasons)
+    {
+        Future<FGEvolveResultData> result = null;
+        for (Object evolveReason : evolveReasons)
+        {
+            result = feedEvent(new FGEvolveInputData(evolveReason, false));
+        }
+        return result;
+    }
+
+    default Future<FGEvolveResultData> feedTargetedEvents(List<Keyword> targetCellIdPath, List<Object> evolveReasons)
+    {
+        Future<FGEvolveResultData> result = null;
+        for (Object evolveReason : evolveReasons)
+        {
+            result = feedTargetedEvent(targetCellIdPath, evolveReason);
+        }
+        return result;
+    }
+
     List<Keyword> getLastMouseTargetIdPath();
 
     // Diagnostics
 
     int getQueueSizeWaiting();
+
+    long getCoalescedEventCount();
 }
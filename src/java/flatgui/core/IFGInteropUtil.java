@@ -26,4 +26,14 @@ public interface IFGInteropUtil
     void setReferenceFont(String fontStr, Font font);
 
     String getReferenceFontStr();
+
+    /**
+     * @param font font as passed to {@link #getStringWidth}, or null for the reference font
+     * @return object equal to the one returned by another interop util for the same font if both measure
+     *         that font the same way, so that look vectors built with one of them are good for the other
+     */
+    default Object getFontMetricsKey(String font)
+    {
+        return this;
+    }
 }
\ No newline at end of file
@@ -11,6 +11,7 @@
 package flatgui.core.awt;
 
 import java.awt.*;
+import java.util.Arrays;
 
 import javax.swing.SwingUtilities;
 
@@ -81,6 +82,19 @@ public class FGAWTInteropUtil implements IFGInteropUtil
         return referenceFontStr_;
     }
 
+    /**
+     * Fonts are measured the same way unless reference graphics is set, which has its own rendering context
+     */
+    @Override
+    public Object getFontMetricsKey(String font)
+    {
+        if (referenceGraphics_ != null)
+        {
+            return this;
+        }
+        return Arrays.asList(Double.valueOf(unitSizePx_), font != null ? font : referenceFontStr_);
+    }
+
     // Non-public
 
     private void applyFontIfNeeded(String font)
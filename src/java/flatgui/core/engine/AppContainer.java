@@ -3,10 +3,16 @@
  */
 package flatgui.core.engine;
 
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * @author Denis Lebedev
@@ -24,11 +30,55 @@ public class AppContainer<ContainerParser extends Container.IContainerParser, Re
     private Container container_;
 
     private final InputEventParser reasonParser_;
-    private ThreadPoolExecutor evolverExecutorService_;
-    private ThreadPoolExecutor notifierExecutorService_;
+    private SessionScheduler sessionScheduler_;
+    private SessionExecutor evolverExecutorService_;
+    private SessionExecutor notifierExecutorService_;
 
     private boolean active_ = false;
 
+    private volatile Container.EvolveMode evolveMode_ = Container.EvolveMode.Fifo;
+
+    private final Map<Object, IEventCoalescingPolicy<?>> coalescingPolicies_;
+    private final Object coalescingLock_ = new Object();
+    private final Map<SessionExecutor.Lane, CoalescibleEvent> lastCoalescibleEvents_;
+    private volatile long coalescedEventCount_;
+
+    private final Map<String, SessionExecutor.Lane> eventLanes_;
+
+    // Bounds of input event queue. Guarded by coalescingLock_ like the waiting events below
+    private volatile OverloadPolicy overloadPolicy_ = OverloadPolicy.Reject;
+    private volatile int evolverQueueCapacity_ = Integer.MAX_VALUE;
+    private volatile Consumer<Object> overloadListener_;
+    private final Set<String> droppableEventClasses_;
+    private final Map<SessionExecutor.Lane, Deque<FutureTask<?>>> waitingDroppableEvents_;
+    private volatile long droppedEventCount_;
+    private volatile long rejectedEventCount_;
+
+    /**
+     * Defines what happens to input event submitted while evolver queue is full
+     */
+    public enum OverloadPolicy
+    {
+        /**
+         * Event is rejected, and overload listener is notified
+         */
+        Reject,
+
+        /**
+         * The oldest waiting droppable event (see {@link #setEventDroppable}) is dropped to make room for the new
+         * one, and Future of the dropped event is cancelled. If there are no droppable events waiting, new event
+         * is rejected
+         */
+        DropOldest,
+
+        /**
+         * Event is merged into a waiting event it can be coalesced with (see {@link #registerCoalescingPolicy})
+         * if that one is still the last task waiting in its lane, so that press, release and key events are never
+         * reordered. If there is none, new event is rejected
+         */
+        Coalesce
+    }
+
     public AppContainer(String containerId, ContainerParser containerParser, ResultCollector resultCollector, Map<Object, Object> container, Container containerSource)
     {
         containerId_ = containerId;
@@ -39,6 +89,15 @@ public class AppContainer<ContainerParser extends Container.IContainerParser, Re
         containerSource_ = containerSource;
 
         reasonParser_ = new InputEventParser();
+        coalescingPolicies_ = new ConcurrentHashMap<>();
+        lastCoalescibleEvents_ = new EnumMap<>(SessionExecutor.Lane.class);
+        eventLanes_ = new ConcurrentHashMap<>();
+        droppableEventClasses_ = ConcurrentHashMap.newKeySet();
+        waitingDroppableEvents_ = new EnumMap<>(SessionExecutor.Lane.class);
+        for (SessionExecutor.Lane lane : SessionExecutor.Lane.values())
+        {
+            waitingDroppableEvents_.put(lane, new ArrayDeque<>());
+        }
     }
 
     public final String getContainerId()
@@ -46,34 +105,51 @@ public class AppContainer<ContainerParser extends Container.IContainerParser, Re
         return containerId_;
     }
 
+    /**
+     * Sets scheduler to run evolver and consumer notifier tasks of this container. Must be called before
+     * initialization; if not called, {@link SessionScheduler#getDefault()} is used.
+     */
+    public void setSessionScheduler(SessionScheduler sessionScheduler)
+    {
+        sessionScheduler_ = sessionScheduler;
+    }
+
     public void initialize()
     {
-        evolverExecutorService_ = new ThreadPoolExecutor(1, 1,
-                0L, TimeUnit.MILLISECONDS,
-                new LinkedBlockingQueue<>(),
-                new FGExecutorThreadFactory("FlatGUI Evolver ", containerId_));
-        notifierExecutorService_ = new ThreadPoolExecutor(1, 1,
-                0L, TimeUnit.MILLISECONDS,
-                new LinkedBlockingQueue<>(),
-                new FGExecutorThreadFactory("FlatGUI Ev.Notifier ", containerId_));
+        SessionScheduler scheduler = sessionScheduler_ != null ? sessionScheduler_ : SessionScheduler.getDefault();
+        evolverExecutorService_ = scheduler.newEvolverExecutor("FlatGUI Evolver ", containerId_);
+        notifierExecutorService_ = scheduler.newSessionExecutor("FlatGUI Ev.Notifier ", containerId_);
+        evolverExecutorService_.setCapacity(evolverQueueCapacity_);
         Future<Container> containerFuture =
                 evolverExecutorService_.submit(() -> {
+                    Container container;
                     if (containerSource_ != null)
                     {
-                        return new Container(containerSource_, containerId_, containerParser_, resultCollector_, this::submitNotifierTask);
+                        container = new Container(containerSource_, containerId_, containerParser_, resultCollector_, this::submitNotifierTask);
                     }
                     else
                     {
-                        return new Container(containerId_, containerParser_, resultCollector_, containerMap_, this::submitNotifierTask);
+                        container = new Container(containerId_, containerParser_, resultCollector_, containerMap_, this::submitNotifierTask);
                     }
+                    container.setEvolveMode(evolveMode_);
+                    return container;
                 });
         try
         {
-            container_ = containerFuture.get();
+            container_ = SessionScheduler.await(containerFuture);
         }
-        catch (Throwable ex)
+        catch (ExecutionException ex)
         {
-            ex.printStackTrace();
+            evolverExecutorService_.shutdown();
+            notifierExecutorService_.shutdown();
+            throw new IllegalStateException("Failed to initialize container " + containerId_, ex.getCause());
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            evolverExecutorService_.shutdown();
+            notifierExecutorService_.shutdown();
+            throw new IllegalStateException("Interrupted while initializing container " + containerId_, ex);
         }
         active_ = true;
     }
@@ -83,7 +159,7 @@ public class AppContainer<ContainerParser extends Container.IContainerParser, Re
         Future<Container> containerFuture = evolverExecutorService_.submit(() -> {container_.freeze(); return container_;});
         try
         {
-            container_ = containerFuture.get();
+            container_ = SessionScheduler.await(containerFuture);
         }
         catch (Throwable ex)
         {
@@ -96,6 +172,8 @@ public class AppContainer<ContainerParser extends Container.IContainerParser, Re
     public void unInitialize()
     {
         active_ = false;
+        // Notifier is needed until evolver completes waiting tasks, so this goes after them in the lowest lane
+        evolverExecutorService_.execute(SessionExecutor.Lane.Background, notifierExecutorService_::shutdown);
         evolverExecutorService_.shutdown();
     }
 
@@ -104,6 +182,120 @@ public class AppContainer<ContainerParser extends Container.IContainerParser, Re
         return active_;
     }
 
+    /**
+     * Sets evolve mode for the container. May be called either before or after initialization.
+     */
+    public void setEvolveMode(Container.EvolveMode evolveMode)
+    {
+        evolveMode_ = evolveMode;
+        if (container_ != null)
+        {
+            evolverExecutorService_.submit(() -> container_.setEvolveMode(evolveMode));
+        }
+    }
+
+    public Container.EvolveMode getEvolveMode()
+    {
+        return evolveMode_;
+    }
+
+    /**
+     * Registers policy that merges consecutive input events of given class while they are waiting
+     * for evolver thread. Passing null policy turns coalescing off for given class. Events are consecutive
+     * if no other event has been submitted to the same lane (see {@link #setEventLane}) in between.
+     */
+    public <C> void registerCoalescingPolicy(Class<C> reasonClass, IEventCoalescingPolicy<? super C> policy)
+    {
+        if (policy != null)
+        {
+            coalescingPolicies_.put(reasonClass.getName(), policy);
+        }
+        else
+        {
+            coalescingPolicies_.remove(reasonClass.getName());
+        }
+    }
+
+    /**
+     * Sets evolver lane for input events of given class. Events of classes that have no lane set go to
+     * {@link SessionExecutor.Lane#Interactive}. Passing null lane resets it for given class.
+     */
+    public void setEventLane(Class<?> reasonClass, SessionExecutor.Lane lane)
+    {
+        if (lane != null)
+        {
+            eventLanes_.put(reasonClass.getName(), lane);
+        }
+        else
+        {
+            eventLanes_.remove(reasonClass.getName());
+        }
+    }
+
+    /**
+     * Bounds the number of input events waiting for evolver thread. Only input events (see {@link #evolve(Object)})
+     * are bounded; other tasks are always accepted. May be called either before or after initialization.
+     *
+     * @param capacity max number of tasks waiting in each lane, or Integer.MAX_VALUE for unbounded queue
+     * @param policy   what to do with the event that does not fit
+     */
+    public void setEvolverQueueCapacity(int capacity, OverloadPolicy policy)
+    {
+        synchronized (coalescingLock_)
+        {
+            evolverQueueCapacity_ = capacity;
+            overloadPolicy_ = policy;
+            if (evolverExecutorService_ != null)
+            {
+                evolverExecutorService_.setCapacity(capacity);
+            }
+        }
+    }
+
+    /**
+     * Marks input events of given class as ones that may be dropped when evolver queue is full and the policy is
+     * {@link OverloadPolicy#DropOldest}
+     */
+    public void setEventDroppable(Class<?> reasonClass, boolean droppable)
+    {
+        if (droppable)
+        {
+            droppableEventClasses_.add(reasonClass.getName());
+        }
+        else
+        {
+            droppableEventClasses_.remove(reasonClass.getName());
+        }
+    }
+
+    /**
+     * Sets listener to be notified with every input event rejected because evolver queue is full, for example to
+     * let the client know that its input has been lost. Listener is called on the thread that submits the event.
+     */
+    public void setOverloadListener(Consumer<Object> overloadListener)
+    {
+        overloadListener_ = overloadListener;
+    }
+
+    public long getDroppedEventCount()
+    {
+        return droppedEventCount_;
+    }
+
+    public long getRejectedEventCount()
+    {
+        return rejectedEventCount_;
+    }
+
+    /**
+     * @return total number of input events that have been merged into other events waiting in the queue,
+     *         instead of being evolved separately
+     */
+    public long getCoalescedEventCount()
+    {
+        return coalescedEventCount_;
+    }
+
     public final Container.IContainerAccessor getContainerAccessor()
     {
         return container_.getContainerAccessor();
@@ -124,35 +316,75 @@ public class AppContainer<ContainerParser extends Container.IContainerParser, Re
         evolverExecutorService_.submit(() -> container_.evolve(componentUid, evolveReason));
     }
 
+    /**
+     * Evolves the container for given list of (target component uid, evolve reason) pairs in turn, and
+     * post-processes the results once for the whole batch
+     */
+    public Future<?> evolveBatch(List<Map.Entry<Integer, Object>> targetUidToReason)
+    {
+        return evolverExecutorService_.submit(() -> container_.evolveBatch(targetUidToReason));
+    }
+
     public Future<?> evolve(Object evolveReason)
     {
-        return evolverExecutorService_.submit(() -> evolveImpl(evolveReason));
+        return submitCoalescing(evolveReason, reason -> {evolveImpl(reason); return null;});
     }
 
+    /**
+     * Reads property value as of the end of the latest evolve batch, without blocking evolver thread
+     */
     public Object getProperty(List<Object> path, Object property) throws ExecutionException, InterruptedException
     {
-        return getContainer().getPropertyValue(path, property);
+        Container container = getContainer();
+        return container.getValueSnapshot().getPropertyValue(container.getPropertyIndex(path, property));
     }
 
     protected void evolveImpl(Object evolveReason)
     {
-        Map<Object, Integer> eventsToTargetIndex;
-        try
+        evolveBatchImpl(Collections.singletonList(evolveReason));
+    }
+
+    /**
+     * Parses and evolves the container for given input events one after another, so that each event is parsed
+     * against the state previous ones have left, and post-processes the results once for the whole batch
+     */
+    protected void evolveBatchImpl(List<Object> evolveReasons)
+    {
+        boolean evolved = false;
+        for (Object evolveReason : evolveReasons)
         {
-            eventsToTargetIndex = reasonParser_.parseInputEvent(getContainer(), evolveReason);
+            Map<Object, Integer> eventsToTargetIndex;
+            try
+            {
+                eventsToTargetIndex = reasonParser_.parseInputEvent(getContainer(), evolveReason);
+            }
+            catch (Exception ex)
+            {
+                ex.printStackTrace();
+                continue;
+            }
+
+            try
+            {
+                for (Map.Entry<Object, Integer> e : eventsToTargetIndex.entrySet())
+                {
+                    evolved = true;
+                    container_.evolveInBatch(e.getValue(), e.getKey());
+                }
+            }
+            catch (Exception ex)
+            {
+                ex.printStackTrace();
+            }
         }
-        catch (Exception ex)
+
+        if (!evolved)
         {
-            ex.printStackTrace();
-            eventsToTargetIndex = Collections.emptyMap();
+            return;
         }
-
         try
         {
-            for (Object event : eventsToTargetIndex.keySet())
-            {
-                container_.evolve(eventsToTargetIndex.get(event), event);
-            }
+            container_.finishBatch();
         }
         catch (Exception ex)
         {
@@ -170,7 +402,126 @@ public class AppContainer<ContainerParser extends Container.IContainerParser, Re
         container_.evolve(componentUid, evolveReason);
     }
 
-    protected final ThreadPoolExecutor getEvolverExecutorService()
+    /**
+     * Submits evolve task for given input event to evolver thread. If the last task waiting in the queue
+     * has been submitted for an event that can be coalesced with this one, the events are merged and
+     * the Future of that waiting task is returned instead of submitting a new task.
+     *
+     * If evolver queue is full (see {@link #setEvolverQueueCapacity}), applies overload policy. When event
+     * is rejected, returns Future that fails with RejectedExecutionException.
+     */
+    protected final <T> Future<T> submitCoalescing(Object evolveReason, Function<Object, T> evolveTask)
+    {
+        IEventCoalescingPolicy<Object> policy = evolveReason != null
+                ? uncheckedCast(coalescingPolicies_.get(evolveReason.getClass().getName()))
+                : null;
+        Object key = policy != null ? policy.getCoalescingKey(evolveReason) : null;
+        boolean droppable = evolveReason != null && droppableEventClasses_.contains(evolveReason.getClass().getName());
+        SessionExecutor.Lane lane = getEventLane(evolveReason);
+        synchronized (coalescingLock_)
+        {
+            CoalescibleEvent last = lastCoalescibleEvents_.get(lane);
+            if (key != null && last != null && last.policy_ == policy && key.equals(last.key_)
+                    && evolverExecutorService_.peekLastWaitingTask(lane) == last.future_ && last.coalesce(evolveReason))
+            {
+                coalescedEventCount_++;
+                return uncheckedCast(last.future_);
+            }
+
+            CoalescibleEvent pending = key != null ? new CoalescibleEvent(policy, key, evolveReason) : null;
+            FutureTask<T> future = pending != null
+                    ? new FutureTask<>(() -> evolveTask.apply(pending.take()))
+                    : new FutureTask<>(() -> evolveTask.apply(evolveReason));
+            if (!evolverExecutorService_.offer(lane, future))
+            {
+                if (overloadPolicy_ == OverloadPolicy.Coalesce && key != null)
+                {
+                    CoalescibleEvent waiting = findWaitingCoalescibleEvent(policy, key);
+                    if (waiting != null && waiting.coalesce(evolveReason))
+                    {
+                        coalescedEventCount_++;
+                        return uncheckedCast(waiting.future_);
+                    }
+                }
+                if (overloadPolicy_ != OverloadPolicy.DropOldest || !dropOldestWaitingEvent(lane))
+                {
+                    rejectedEventCount_++;
+                    Consumer<Object> overloadListener = overloadListener_;
+                    if (overloadListener != null)
+                    {
+                        overloadListener.accept(evolveReason);
+                    }
+                    CompletableFuture<T> rejected = new CompletableFuture<>();
+                    rejected.completeExceptionally(new RejectedExecutionException(
+                            "Evolver queue of " + containerId_ + " is full, rejected " + evolveReason));
+                    return rejected;
+                }
+                // Takes the place of the dropped event
+                evolverExecutorService_.execute(lane, future);
+            }
+
+            if (pending != null)
+            {
+                pending.future_ = future;
+                lastCoalescibleEvents_.put(lane, pending);
+            }
+            else
+            {
+                lastCoalescibleEvents_.remove(lane);
+            }
+            if (droppable)
+            {
+                pruneDone(waitingDroppableEvents_.get(lane), f -> f).addLast(future);
+            }
+            return future;
+        }
+    }
+
+    /**
+     * @return number of evolver tasks waiting to be started
+     */
+    public int getEvolverQueueDepth()
+    {
+        return evolverExecutorService_.getQueueDepth();
+    }
+
+    public int getEvolverQueueDepth(SessionExecutor.Lane lane)
+    {
+        return evolverExecutorService_.getQueueDepth(lane);
+    }
+
+    public long getEvolverCompletedTaskCount()
+    {
+        return evolverExecutorService_.getCompletedTaskCount();
+    }
+
+    public long getEvolverCompletedTaskCount(SessionExecutor.Lane lane)
+    {
+        return evolverExecutorService_.getCompletedTaskCount(lane);
+    }
+
+    /**
+     * @return total time started evolver tasks of given lane have been waiting in queue
+     */
+    public long getEvolverQueueWaitNanos(SessionExecutor.Lane lane)
+    {
+        return evolverExecutorService_.getQueueWaitNanos(lane);
+    }
+
+    /**
+     * @return total time evolver tasks of this container have been running
+     */
+    public long getEvolverBusyTimeNanos()
+    {
+        return evolverExecutorService_.getBusyTimeNanos();
+    }
+
+    public long getEvolverMaxTaskTimeNanos()
+    {
+        return evolverExecutorService_.getMaxTaskTimeNanos();
+    }
+
+    protected final SessionExecutor getEvolverExecutorService()
     {
         return evolverExecutorService_;
     }
@@ -195,11 +546,103 @@ public class AppContainer<ContainerParser extends Container.IContainerParser, Re
         return resultCollector_;
     }
 
+    private CoalescibleEvent findWaitingCoalescibleEvent(IEventCoalescingPolicy<Object> policy, Object key)
+    {
+        for (Map.Entry<SessionExecutor.Lane, CoalescibleEvent> e : lastCoalescibleEvents_.entrySet())
+        {
+            CoalescibleEvent waiting = e.getValue();
+            if (waiting.policy_ == policy && key.equals(waiting.key_)
+                    && evolverExecutorService_.peekLastWaitingTask(e.getKey()) == waiting.future_)
+            {
+                return waiting;
+            }
+        }
+        return null;
+    }
+
+    private SessionExecutor.Lane getEventLane(Object evolveReason)
+    {
+        SessionExecutor.Lane lane = evolveReason != null ? eventLanes_.get(evolveReason.getClass().getName()) : null;
+        return lane != null ? lane : SessionExecutor.Lane.Interactive;
+    }
+
+    private boolean dropOldestWaitingEvent(SessionExecutor.Lane lane)
+    {
+        Deque<FutureTask<?>> waitingDroppableEvents = waitingDroppableEvents_.get(lane);
+        FutureTask<?> future;
+        while ((future = waitingDroppableEvents.pollFirst()) != null)
+        {
+            if (evolverExecutorService_.remove(future))
+            {
+                future.cancel(false);
+                droppedEventCount_++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Policies are registered for event classes, and coalesced events share Future of the task they are merged into
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T uncheckedCast(Object o)
+    {
+        return (T) o;
+    }
+
+    /**
+     * Tasks of one lane complete in submission order, so the ones done are at the head
+     */
+    private static <E> Deque<E> pruneDone(Deque<E> deque, Function<E, Future<?>> futureProvider)
+    {
+        while (!deque.isEmpty() && futureProvider.apply(deque.peekFirst()).isDone())
+        {
+            deque.pollFirst();
+        }
+        return deque;
+    }
+
+    private static class CoalescibleEvent
+    {
+        private final IEventCoalescingPolicy<Object> policy_;
+        private final Object key_;
+        private Object event_;
+        private boolean taken_;
+        private Future<?> future_;
+
+        CoalescibleEvent(IEventCoalescingPolicy<Object> policy, Object key, Object event)
+        {
+            policy_ = policy;
+            key_ = key;
+            event_ = event;
+        }
+
+        /**
+         * @return false if evolver thread has already taken the event, so it cannot be coalesced any more
+         */
+        synchronized boolean coalesce(Object newEvent)
+        {
+            if (taken_)
+            {
+                return false;
+            }
+            event_ = policy_.coalesce(event_, newEvent);
+            return true;
+        }
+
+        synchronized Object take()
+        {
+            taken_ = true;
+            return event_;
+        }
+    }
+
     private void submitNotifierTask(Runnable r)
     {
         try
         {
-            notifierExecutorService_.submit(r).get();
+            SessionScheduler.await(notifierExecutorService_.submit(r));
         }
         catch (Exception e)
         {
@@ -0,0 +1,173 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.core.engine;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Log of node value changes by evolve cycle, kept in primitive arrays. Each change is an entry of (node index,
+ * component uid, cycle); cycles never decrease along the log, so changes since given cycle are a suffix of it.
+ * A node changed several times in one cycle is logged once. When the log outgrows its capacity, entries
+ * superseded by later changes of the same node are dropped.
+ *
+ * @author Denis Lebedev
+ */
+class ChangeLog
+{
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final long baseCycle_;
+
+    private int[] nodes_;
+    private int[] components_;
+    private long[] cycles_;
+    private int size_;
+    private int compactionThreshold_;
+
+    // Position of the latest entry of each node, or -1
+    private int[] latestPositions_;
+
+    ChangeLog(long baseCycle)
+    {
+        baseCycle_ = baseCycle;
+        nodes_ = new int[INITIAL_CAPACITY];
+        components_ = new int[INITIAL_CAPACITY];
+        cycles_ = new long[INITIAL_CAPACITY];
+        size_ = 0;
+        compactionThreshold_ = INITIAL_CAPACITY;
+        latestPositions_ = new int[INITIAL_CAPACITY];
+        Arrays.fill(latestPositions_, -1);
+    }
+
+    /**
+     * @return the cycle logging started after; changes of this and earlier cycles are unknown
+     */
+    long getBaseCycle()
+    {
+        return baseCycle_;
+    }
+
+    void nodeChanged(int nodeIndex, int componentUid, long cycle)
+    {
+        if (nodeIndex >= latestPositions_.length)
+        {
+            int oldLength = latestPositions_.length;
+            latestPositions_ = Arrays.copyOf(latestPositions_, Math.max(nodeIndex + 1, oldLength * 2));
+            Arrays.fill(latestPositions_, oldLength, latestPositions_.length, -1);
+        }
+        int latest = latestPositions_[nodeIndex];
+        if (latest >= 0 && cycles_[latest] == cycle && components_[latest] == componentUid)
+        {
+            return;
+        }
+        if (size_ == compactionThreshold_)
+        {
+            compact();
+        }
+        if (size_ == nodes_.length)
+        {
+            int newCapacity = size_ * 2;
+            nodes_ = Arrays.copyOf(nodes_, newCapacity);
+            components_ = Arrays.copyOf(components_, newCapacity);
+            cycles_ = Arrays.copyOf(cycles_, newCapacity);
+        }
+        nodes_[size_] = nodeIndex;
+        components_[size_] = componentUid;
+        cycles_[size_] = cycle;
+        latestPositions_[nodeIndex] = size_;
+        size_++;
+    }
+
+    /**
+     * @return indices of nodes changed in cycles after given one, each index once, in the order of their latest change
+     */
+    int[] getChangedNodesSince(long cycle)
+    {
+        int from = indexOfFirstEntryAfter(cycle);
+        int[] result = new int[size_ - from];
+        int count = 0;
+        for (int i=from; i<size_; i++)
+        {
+            if (latestPositions_[nodes_[i]] == i)
+            {
+                result[count++] = nodes_[i];
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * @return uids of components having nodes changed in cycles after given one, each uid once. May include
+     *         components that have been removed since
+     */
+    int[] getChangedComponentsSince(long cycle)
+    {
+        int from = indexOfFirstEntryAfter(cycle);
+        BitSet seen = new BitSet();
+        int[] result = new int[size_ - from];
+        int count = 0;
+        for (int i=from; i<size_; i++)
+        {
+            int componentUid = components_[i];
+            if (!seen.get(componentUid))
+            {
+                seen.set(componentUid);
+                result[count++] = componentUid;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    int size()
+    {
+        return size_;
+    }
+
+    // Private
+
+    private int indexOfFirstEntryAfter(long cycle)
+    {
+        int low = 0;
+        int high = size_;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (cycles_[mid] <= cycle)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void compact()
+    {
+        int kept = 0;
+        for (int i=0; i<size_; i++)
+        {
+            int nodeIndex = nodes_[i];
+            int latest = latestPositions_[nodeIndex];
+            // Also keep the entries of components that have changed before their node index was reused by another
+            // component, so that changed components stay exact
+            if (latest == i || components_[latest] != components_[i])
+            {
+                nodes_[kept] = nodeIndex;
+                components_[kept] = components_[i];
+                cycles_[kept] = cycles_[i];
+                if (latest == i)
+                {
+                    latestPositions_[nodeIndex] = kept;
+                }
+                kept++;
+            }
+        }
+        size_ = kept;
+        compactionThreshold_ = Math.max(INITIAL_CAPACITY, kept * 2);
+    }
+}
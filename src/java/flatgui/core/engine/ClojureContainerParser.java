@@ -51,6 +51,14 @@ public class ClojureContainerParser implements Container.IContainerParser
 
     private static final Keyword WILDCARD_KEY = Keyword.intern("*");
 
+    private static final List<Keyword> INPUT_CHANNELS = Collections.unmodifiableList(Arrays.asList(
+            Keyword.intern("mouse"),
+            Keyword.intern("mousewheel"),
+            Keyword.intern("keyboard"),
+            Keyword.intern("host"),
+            Keyword.intern("clipboard"),
+            Keyword.intern("timer")));
+
     private static final Map<Class<?>, Keyword> INPUT_EVENT_KEYS;
     static
     {
@@ -66,6 +74,27 @@ public class ClojureContainerParser implements Container.IContainerParser
         INPUT_EVENT_KEYS = Collections.unmodifiableMap(m);
     }
 
+    /**
+     * Input channel of event class is resolved once, by the nearest known superclass; this way subclasses
+     * of known events (like incoming mouse wheel events) get to the right channel
+     */
+    private static final ClassValue<Integer> INPUT_CHANNEL_BY_CLASS = new ClassValue<Integer>()
+    {
+        @Override
+        protected Integer computeValue(Class<?> type)
+        {
+            for (Class<?> c = type; c != null; c = c.getSuperclass())
+            {
+                Keyword kw = INPUT_EVENT_KEYS.get(c);
+                if (kw != null)
+                {
+                    return Integer.valueOf(INPUT_CHANNELS.indexOf(kw));
+                }
+            }
+            return Integer.valueOf(-1);
+        }
+    };
+
     private ObjectMatrix<Object> keys_;
 
     @Override
@@ -175,11 +204,33 @@ public class ClojureContainerParser implements Container.IContainerParser
     }
 
     @Override
-    public boolean isInterestedIn(Collection<Object> inputDependencies, Class<?> evolveReasonClass)
+    public int getInputChannelCount()
     {
-        // For all input channel events (kw != null), check if depends on; otherwise just accept
-        Keyword kw = INPUT_EVENT_KEYS.get(evolveReasonClass);
-        return kw != null ? inputDependencies.contains(kw) : true;
+        return INPUT_CHANNELS.size();
+    }
+
+    @Override
+    public int getInputChannel(Class<?> evolveReasonClass)
+    {
+        return INPUT_CHANNEL_BY_CLASS.get(evolveReasonClass).intValue();
+    }
+
+    @Override
+    public int getInputChannelMask(Collection<Object> inputDependencies)
+    {
+        int mask = 0;
+        if (inputDependencies != null)
+        {
+            for (Object d : inputDependencies)
+            {
+                int channel = INPUT_CHANNELS.indexOf(d);
+                if (channel >= 0)
+                {
+                    mask |= 1 << channel;
+                }
+            }
+        }
+        return mask;
     }
 
     @Override
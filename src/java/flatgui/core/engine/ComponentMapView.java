@@ -0,0 +1,113 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.core.engine;
+
+import clojure.lang.APersistentMap;
+import clojure.lang.IMapEntry;
+import clojure.lang.IPersistentCollection;
+import clojure.lang.IPersistentMap;
+import clojure.lang.ISeq;
+import clojure.lang.MapEntry;
+import clojure.lang.PersistentHashMap;
+
+import java.util.Iterator;
+
+/**
+ * Read-only Clojure map over properties of a component, that resolves keys through the component's property
+ * index instead of copying values into a new map. Operations that need the whole map (iterating, or deriving
+ * another map from this one) copy properties once, on first such call.
+ *
+ * @author Denis Lebedev
+ */
+public class ComponentMapView extends APersistentMap
+{
+    private final Container.IComponent component_;
+
+    private IPersistentMap copy_;
+
+    public ComponentMapView(Container.IComponent component)
+    {
+        component_ = component;
+    }
+
+    public final Container.IComponent getComponent()
+    {
+        return component_;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return component_.getPropertyIndex(key) != null;
+    }
+
+    @Override
+    public IMapEntry entryAt(Object key)
+    {
+        return containsKey(key) ? new MapEntry(key, component_.get(key)) : null;
+    }
+
+    @Override
+    public Object valAt(Object key)
+    {
+        return component_.get(key);
+    }
+
+    @Override
+    public Object valAt(Object key, Object notFound)
+    {
+        return containsKey(key) ? component_.get(key) : notFound;
+    }
+
+    @Override
+    public int count()
+    {
+        return component_.size();
+    }
+
+    @Override
+    public ISeq seq()
+    {
+        return getCopy().seq();
+    }
+
+    @Override
+    public Iterator<?> iterator()
+    {
+        return getCopy().iterator();
+    }
+
+    @Override
+    public IPersistentMap assoc(Object key, Object val)
+    {
+        return getCopy().assoc(key, val);
+    }
+
+    @Override
+    public IPersistentMap assocEx(Object key, Object val)
+    {
+        return getCopy().assocEx(key, val);
+    }
+
+    @Override
+    public IPersistentMap without(Object key)
+    {
+        return getCopy().without(key);
+    }
+
+    @Override
+    public IPersistentCollection empty()
+    {
+        return PersistentHashMap.EMPTY;
+    }
+
+    private IPersistentMap getCopy()
+    {
+        if (copy_ == null)
+        {
+            copy_ = PersistentHashMap.create(component_);
+        }
+        return copy_;
+    }
+}
@@ -13,16 +13,19 @@ import clojure.lang.Keyword;
 import clojure.lang.PersistentHashMap;
 import clojure.lang.PersistentVector;
 import flatgui.core.IFGEvolveConsumer;
-import flatgui.core.awt.FGIncomingMouseWheelEvent;
 import flatgui.util.CompactList;
 import flatgui.util.GrowControlArrayList;
+import flatgui.util.IntFreeList;
+import flatgui.util.IntGraph;
+import flatgui.util.IntPriorityQueue;
 import flatgui.util.ObjectMatrix;
+import flatgui.util.PagedCowList;
 
-import java.awt.event.MouseWheelEvent;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * @author Denis Lebedev
@@ -31,21 +34,53 @@ public class Container
 {
     private final static int INITIAL_REUSABLE_BUFFER_SIZE = 131072;
     private final static int COMPONENT_GROW_FACTOR = 16;
+    private final static int INITIAL_RANKED_QUEUE_SIZE = 1024;
+    private final static int PARALLEL_EVOLVE_MIN_REGION_SIZE = 256;
 
     private final IResultCollector resultCollector_;
 
-    private final Set<Integer> vacantComponentIndices_;
-    private final Set<Integer> vacantNodeIndices_;
+    // Container structure (topology): vacant indices, path maps, nodes, dependency edges and ranks. A container
+    // created from a frozen one shares its topology until it adds or removes components for the first time
+    // (see ensureOwnTopology). Key matrix is append-only and thread-safe, so it is always shared.
+
+    private IntFreeList vacantComponentIndices_;
+    private IntFreeList vacantNodeIndices_;
 
     private final ObjectMatrix<Object> keys_;
 
     private final GrowControlArrayList<ComponentAccessor> components_;
-    private final Map<List<Object>, Integer> componentPathToIndex_;
+    private Map<List<Object>, Integer> componentPathToIndex_;
+
+    private GrowControlArrayList<Node> nodes_;
+    // Dependencies of nodes having wildcard (:*) dependencies, by the component path preceding the first wildcard
+    private Map<List<Object>, List<AmbiguousDependency>> ambiguousDependenciesByAnchor_;
+    // Copy-on-write pages, shared with containers copied from this one (and with the one this has been copied from)
+    private final PagedCowList<Object> values_;
+    // Values as of the end of the latest evolve batch, for reading from threads other than evolver thread
+    private volatile ValueSnapshot valueSnapshot_;
+    private Map<List<Object>, Integer> pathToIndex_;
+
+    /**
+     * Dependency edges in both directions: from a node to nodes depending on it, and from a node to
+     * nodes it depends on. Edge payload is the id of relative path (in relPaths_) by which dependent
+     * references the dependency.
+     */
+    private IntGraph dependents_;
+    private IntGraph dependencies_;
+    private RelPathTable relPaths_;
+
+    /**
+     * Topological ranks by node index: rank of a node is greater than ranks of all nodes it depends on,
+     * unless they belong to the same dependency cycle (in which case ranks are equal)
+     */
+    private int[] nodeRanks_;
 
-    private final GrowControlArrayList<Node> nodes_;
-    private final GrowControlArrayList<Node> nodesWithAmbiguousDependencies_;
-    private final GrowControlArrayList<Object> values_;
-    private final Map<List<Object>, Integer> pathToIndex_;
+    private boolean topologyShared_;
+    private boolean frozen_;
+    private final GrowControlArrayList.GrowFunction nodesGrowFunction_;
+
+    // Per node index; created lazily (see getEvolverWrapper)
+    private EvolverWrapper[] evolverWrappers_;
 
     private final IContainerAccessor containerAccessor_;
     private final IPropertyValueAccessor propertyValueAccessor_;
@@ -54,7 +89,7 @@ public class Container
 
     private final IContainerParser containerParser_;
 
-    private final Function<List<Object>, Object> globalIndexToValueProvider_;
+    private final Function<List<Object>, Integer> globalPathToIndex_;
 
     private GrowControlArrayList<Node> reusableNodeBuffer_;
     private GrowControlArrayList<Object> reusableReasonBuffer_;
@@ -68,11 +103,36 @@ public class Container
 
     private Set<Integer> initializedNodes_;
 
-    // Evolver access TODO should not refer Clojure or ClojureContainerParser directly
-    private final HashMap<Integer, GetPropertyDelegate> delegateByIdMap_;
-    private final HashMap<Integer, Map<List<Object>, GetPropertyDelegate>> delegateByIdAndPathMap_;
-    private final HashMap<Integer, Map<Keyword, GetPropertyDelegate>> delegateByIdAndPropertyMap_;
-    private final HashMap<Integer, Map<List<Object>, Map<Keyword, GetPropertyDelegate>>> delegateByIdPathAndPropertyMap_;
+    private EvolveMode evolveMode_;
+    private boolean ranksValid_;
+    private IntPriorityQueue rankedQueue_;
+    private long[] rankedPendingKeys_;
+    private List<Object>[] rankedPendingReasons_;
+    private final List<Object> rankedCurrentReasons_;
+    private long rankedSequence_;
+    private final Queue<Node> rankUpdateQueue_;
+
+    private long evolverInvocationCount_;
+    private long avoidedEvolverInvocationCount_;
+
+    // Evolver memoization (see setEvolverMemoization). Versions are allocated once memoization is turned on
+    // for the first time, and are maintained from then on, so memos never refer to stale versions
+    private boolean memoizeEvolvers_;
+    private int[] valueVersions_;
+    private long evolverMemoHitCount_;
+    private long evolverMemoMissCount_;
+
+    // Number of the current (or latest) evolve cycle, of the latest completed one, and changes by cycle
+    // (see setChangeTracking). All are guarded by container lock so that they can be queried from other threads
+    private long cycle_;
+    private long completedCycle_;
+    private ChangeLog changeLog_;
+
+    private ForkJoinPool parallelEvolvePool_;
+    private int[] parallelRegionMarks_;
+    private int parallelRegionMark_;
+    private int[] parallelUnionFind_;
+    private long parallelEvolveCycleCount_;
 
     private final String containerId_;
 
@@ -101,19 +161,23 @@ public class Container
 
         components_ = new GrowControlArrayList<>(totalComponentCount, defaultGrowFunction);
         componentPathToIndex_ = new HashMap<>();
-        vacantComponentIndices_ = new HashSet<>();
-        vacantNodeIndices_ = new HashSet<>();
+        vacantComponentIndices_ = new IntFreeList();
+        vacantNodeIndices_ = new IntFreeList();
 
         nodes_ = new GrowControlArrayList<>(totalNodeCount, defaultGrowFunction);
-        nodesWithAmbiguousDependencies_ = new GrowControlArrayList<>(totalNodeCount/4, defaultGrowFunction);
-        values_ = new GrowControlArrayList<>(totalNodeCount, defaultGrowFunction);
+        ambiguousDependenciesByAnchor_ = new HashMap<>();
+        values_ = new PagedCowList<>(totalNodeCount);
         pathToIndex_ = new HashMap<>();
+        dependents_ = new IntGraph(totalNodeCount);
+        dependencies_ = new IntGraph(totalNodeCount);
+        relPaths_ = new RelPathTable(this::createDependencyReason);
+        nodeRanks_ = new int[totalNodeCount];
+        topologyShared_ = false;
+        frozen_ = false;
+        nodesGrowFunction_ = defaultGrowFunction;
+        evolverWrappers_ = new EvolverWrapper[totalNodeCount];
         nodeIndicesToNotifyConsumers_ = new LinkedHashSet<>();
 
-        delegateByIdMap_ = new HashMap<>();
-        delegateByIdAndPathMap_ = new HashMap<>();
-        delegateByIdAndPropertyMap_ = new HashMap<>();
-        delegateByIdPathAndPropertyMap_ = new HashMap<>();
 
         GrowControlArrayList.GrowFunction incGrowFunction = (o, i) -> o+1;
         reusableNodeBuffer_ = new GrowControlArrayList<>(INITIAL_REUSABLE_BUFFER_SIZE, incGrowFunction);
@@ -125,11 +189,22 @@ public class Container
         propertyValueAccessor_ = this::getPropertyValue;
         evolverAccess_ = new ConainerEvolverAccess(this);
         containerMutator_ = (nodeIndex, newValue) ->
-            {synchronized (Container.this) {values_.set(nodeIndex, newValue);}};
+            {synchronized (Container.this) {values_.set(nodeIndex, newValue); valueChanged(nodeIndex);}};
 
         consumerNotifier_  = consumerNotifier;
 
-        globalIndexToValueProvider_ = path -> getPropertyValue(indexOfPathStrict(path));
+        globalPathToIndex_ = this::indexOfPathStrict;
+
+        evolveMode_ = EvolveMode.Fifo;
+        ranksValid_ = false;
+        rankedQueue_ = new IntPriorityQueue(INITIAL_RANKED_QUEUE_SIZE);
+        rankedPendingKeys_ = new long[totalNodeCount];
+        rankedPendingReasons_ = newReasonListArray(totalNodeCount);
+        rankedCurrentReasons_ = new ArrayList<>();
+        rankUpdateQueue_ = new ArrayDeque<>();
+        parallelEvolvePool_ = ForkJoinPool.commonPool();
+        parallelRegionMarks_ = new int[0];
+        parallelUnionFind_ = new int[0];
 
         addContainer(null, Collections.emptyList(), container, null);
         finishContainerIndexing();
@@ -137,7 +212,15 @@ public class Container
         initializeContainer();
     }
 
-    // TODO light copy: assuming no components will be added/removed during container lifecycle
+    /**
+     * Creates a copy of given container, e.g. for a new session of an application, or a speculative fork
+     * of a session. Values are kept in copy-on-write pages, so both containers share all values and copy
+     * only the pages they write to afterwards. Topology (nodes, path maps, dependency edges) is shared
+     * as well, until either container adds or removes components for the first time. A frozen source (see
+     * {@link #freeze()}) never changes its topology, so it keeps sharing it with all copies.
+     *
+     * Source container must not be evolved or modified while copying.
+     */
     public Container(Container source,
             String containerId, IContainerParser containerParser, IResultCollector resultCollector, Consumer<Runnable> consumerNotifier)
     {
@@ -145,43 +228,47 @@ public class Container
         int estComponentSize = source.getComponent(0).size();
         GrowControlArrayList.GrowFunction addNodesFn = (o, i) -> o + Math.max(COMPONENT_GROW_FACTOR*estComponentSize, i);
 
-        values_ = new GrowControlArrayList<>(source.values_, addNodesFn);
-        globalIndexToValueProvider_ = path -> getPropertyValue(indexOfPathStrict(path));
+        values_ = new PagedCowList<>(source.values_);
+        globalPathToIndex_ = this::indexOfPathStrict;
         evolverAccess_ = new ConainerEvolverAccess(this);
 
         containerId_ = containerId;
 
-        keys_ = new ObjectMatrix<>(source.keys_);
+        keys_ = source.keys_;
         containerParser_ = containerParser;
         containerParser_.setKeyMatrix(keys_);
         resultCollector_ = resultCollector;
 
         components_ = new GrowControlArrayList<>(source.components_.size(), addFn);
-        components_.addAll(source.components_.stream()
-                .map(sourceComponentAccessor -> new ComponentAccessor(sourceComponentAccessor, values_, globalIndexToValueProvider_))
-                .collect(Collectors.toList()));
-
-        componentPathToIndex_ = new HashMap<>(source.componentPathToIndex_);
-        vacantComponentIndices_ = new HashSet<>(source.vacantComponentIndices_);
-        vacantNodeIndices_ = new HashSet<>(source.vacantNodeIndices_);
-
-        nodes_ = new GrowControlArrayList<>(source.nodes_.size(), addNodesFn);
-        nodes_.addAll(source.nodes_.stream()
-                .map(n -> n instanceof EvolvingNode ? new EvolvingNode((EvolvingNode) n, evolverAccess_) : new Node(n))
-                .collect(Collectors.toList()));
-        nodesWithAmbiguousDependencies_ = new GrowControlArrayList<>(source.nodesWithAmbiguousDependencies_.size(), addFn);
-        nodesWithAmbiguousDependencies_.addAll(nodes_.stream()
-                .filter(n -> n.isHasAmbiguousDependencies())
-                .collect(Collectors.toList()));
-
-        //values_ = new ArrayList<>();
-        pathToIndex_ = new HashMap<>(source.pathToIndex_);
-        nodeIndicesToNotifyConsumers_ = new LinkedHashSet<>(source.nodeIndicesToNotifyConsumers_);
-
-        delegateByIdMap_ = new HashMap<>();
-        delegateByIdAndPathMap_ = new HashMap<>();
-        delegateByIdAndPropertyMap_ = new HashMap<>();
-        delegateByIdPathAndPropertyMap_ = new HashMap<>();
+        for (int i=0; i<source.components_.size(); i++)
+        {
+            ComponentAccessor sourceComponentAccessor = source.components_.get(i);
+            components_.add(sourceComponentAccessor != null
+                    ? new ComponentAccessor(sourceComponentAccessor, values_, globalPathToIndex_)
+                    : null);
+        }
+
+        componentPathToIndex_ = source.componentPathToIndex_;
+        vacantComponentIndices_ = source.vacantComponentIndices_;
+        vacantNodeIndices_ = source.vacantNodeIndices_;
+        nodes_ = source.nodes_;
+        ambiguousDependenciesByAnchor_ = source.ambiguousDependenciesByAnchor_;
+        pathToIndex_ = source.pathToIndex_;
+        dependents_ = source.dependents_;
+        dependencies_ = source.dependencies_;
+        relPaths_ = source.relPaths_;
+        nodeRanks_ = source.nodeRanks_;
+        topologyShared_ = true;
+        frozen_ = false;
+        nodesGrowFunction_ = addNodesFn;
+        if (!source.frozen_)
+        {
+            source.topologyShared_ = true;
+        }
+        evolverWrappers_ = new EvolverWrapper[nodes_.size()];
+
+        nodeIndicesToNotifyConsumers_ = new LinkedHashSet<>();
+
 
         reusableNodeBuffer_ = new GrowControlArrayList<>(source.getMaxIndexBufferSize(), addNodesFn);
         reusableReasonBuffer_ = new GrowControlArrayList<>(source.getMaxIndexBufferSize(), addNodesFn);
@@ -192,9 +279,27 @@ public class Container
         propertyValueAccessor_ = this::getPropertyValue;
         //evolverAccess_ = new ConainerEvolverAccess(this);
         containerMutator_ = (nodeIndex, newValue) ->
-        {synchronized (Container.this) {values_.set(nodeIndex, newValue);}};
+        {synchronized (Container.this) {values_.set(nodeIndex, newValue); valueChanged(nodeIndex);}};
 
         consumerNotifier_  = consumerNotifier;
+
+        evolveMode_ = source.evolveMode_;
+        setEvolverMemoization(source.memoizeEvolvers_);
+        cycle_ = source.cycle_;
+        completedCycle_ = source.completedCycle_;
+        setChangeTracking(source.changeLog_ != null);
+        ranksValid_ = source.ranksValid_;
+        rankedQueue_ = new IntPriorityQueue(INITIAL_RANKED_QUEUE_SIZE);
+        // Ranked state is allocated by the first ranked cycle
+        rankedPendingKeys_ = new long[0];
+        rankedPendingReasons_ = newReasonListArray(0);
+        rankedCurrentReasons_ = new ArrayList<>();
+        rankUpdateQueue_ = new ArrayDeque<>();
+        parallelEvolvePool_ = source.parallelEvolvePool_;
+        parallelRegionMarks_ = new int[0];
+        parallelUnionFind_ = new int[0];
+
+        publishValueSnapshot();
     }
 
     public Integer addComponent(Integer parentComponentUid, List<Object> componentPath, ComponentAccessor component)
@@ -228,23 +333,88 @@ public class Container
     }
 
     public void evolve(Integer componentUid, Object evolveReason)
+    {
+        evolveBatch(Collections.singletonList(new AbstractMap.SimpleImmutableEntry<>(componentUid, evolveReason)));
+    }
+
+    /**
+     * Evolves the container for each of given events in turn, and then post-processes the results once,
+     * as opposed to evolving for each event with {@link #evolve(Integer, Object)}, which post-processes
+     * after each event. Evolve consumers are notified once, after post-processing, with the reason of
+     * the latest event that changed the properties they consume
+     *
+     * @param targetUidToReason list of target component uid - evolve reason pairs, in the order events
+     *                          should be processed
+     */
+    public void evolveBatch(List<Map.Entry<Integer, Object>> targetUidToReason)
+    {
+        for (int i=0; i<targetUidToReason.size(); i++)
+        {
+            Map.Entry<Integer, Object> e = targetUidToReason.get(i);
+            evolveInBatch(e.getKey(), e.getValue());
+        }
+        finishBatch();
+    }
+
+    /**
+     * Evolves the container for given event as a part of a batch, without post-processing the results, so that
+     * caller may prepare next event of the batch against the state this one leaves. Batch is completed with
+     * {@link #finishBatch()}
+     */
+    public void evolveInBatch(Integer componentUid, Object evolveReason)
+    {
+        evolveCycle(componentUid, evolveReason);
+    }
+
+    /**
+     * Post-processes results of the events evolved with {@link #evolveInBatch} since previous batch, and notifies
+     * evolve consumers
+     */
+    public void finishBatch()
+    {
+        resultCollector_.postProcessAfterEvolveCycle(containerAccessor_, containerMutator_);
+
+        if (initializedNodes_ == null)
+        {
+            publishValueSnapshot();
+        }
+
+        notifyEvolverConsumers();
+    }
+
+    private void evolveCycle(Integer componentUid, Object evolveReason)
     {
         long evolveStartTime = System.currentTimeMillis();
+        synchronized (this)
+        {
+            cycle_++;
+        }
+        boolean ranked = evolveMode_ != EvolveMode.Fifo;
+        if (ranked)
+        {
+            prepareRankedCycle();
+        }
         reusableNodeBuffer_.clear();
         reusableReasonBuffer_.clear();
 
         if (debug_) logDebug("----------------Started evolve cycle ---- for reason: " + valueToString(evolveReason));
 
         ComponentAccessor initialComponentAccessor = components_.get(componentUid);
-        Map<Object, Integer> propertyIdToNodeIndex = initialComponentAccessor.getPropertyIdToIndex();
-        for (Object propertyId : propertyIdToNodeIndex.keySet())
+        if (evolveReason == null)
+        {
+            Map<Object, Integer> propertyIdToNodeIndex = initialComponentAccessor.getPropertyIdToIndex();
+            for (Object propertyId : propertyIdToNodeIndex.keySet())
+            {
+                addNodeToReusableBuffer(nodes_.get(propertyIdToNodeIndex.get(propertyId)), null);
+            }
+        }
+        else
         {
-            Integer nodeIndex = propertyIdToNodeIndex.get(propertyId);
-            Node node = nodes_.get(nodeIndex);
-            if (evolveReason == null ||
-                    (node.getEvolver() != null && containerParser_.isInterestedIn(node.getInputDependencies(), evolveReason.getClass())))
+            int[] interestedNodeIndices = initialComponentAccessor.getInterestedNodeIndices(
+                    containerParser_.getInputChannel(evolveReason.getClass()));
+            for (int i=0; i<interestedNodeIndices.length; i++)
             {
-                addNodeToReusableBuffer(node, evolveReason);
+                addNodeToReusableBuffer(nodes_.get(interestedNodeIndices[i]), evolveReason);
             }
         }
 
@@ -255,221 +425,29 @@ public class Container
 
         Set<Integer> addedComponentIds = new HashSet<>();
         currentCycleBufIndex_ = 0;
-        nodeIndicesToNotifyConsumers_.clear();
+        // In ranked mode this buffer holds only the initial nodes, while their dependents go to the ranked queue
         while (currentCycleBufIndex_ < reusableNodeBuffer_.size())
         {
             Node node = reusableNodeBuffer_.get(currentCycleBufIndex_);
-            if (node == null)
+            if (nodes_.get(node.getNodeIndex()) != node)
             {
-                // Component (with all its nodes) has been removed during this cycle, and its nodes have been
-                // removed from reusable buffer to prevent inconsistent calculations
+                // Component (with all its nodes) has been removed during this cycle (and its node index may have been
+                // taken by a new node since), so skip it to prevent inconsistent calculations
                 currentCycleBufIndex_++;
                 continue;
             }
             Object triggeringReason = reusableReasonBuffer_.get(currentCycleBufIndex_);
-            int nodeIndex = node.getNodeIndex();
-            Function<Map<Object, Object>, Object> evolver = node.getEvolver();
-
-            if (triggeringReason != null || initializedNodes_ != null && !initializedNodes_.contains(Integer.valueOf(nodeIndex)))
-            {
-                Object oldValue;
-                Object newValue;
-                ComponentAccessor component = components_.get(node.getComponentUid());
-                if (triggeringReason == null)
-                {
-                    if (evolver == null)
-                    {
-                        oldValue = null;
-                        newValue = values_.get(nodeIndex);
-                    }
-                    else
-                    {
-                        component.setEvolveReason(null);
-                        oldValue = values_.get(nodeIndex);
-                        try
-                        {
-                            newValue = evolver.apply(component);
-                        }
-                        catch (Exception ex)
-                        {
-                            logError(" Error evolving " + node.getNodePath() + " " + node.getPropertyId() + " while initializing ");
-                            ex.printStackTrace();
-                            throw ex;
-                        }
-                    }
-                }
-                else
-                {
-                    component.setEvolveReason(triggeringReason);
-                    oldValue = values_.get(nodeIndex);
-                    try
-                    {
-                        newValue = evolver.apply(component);
-                    }
-                    catch (Exception ex)
-                    {
-                        logError(" Error evolving " + node.getNodePath() + " " + node.getPropertyId() + " for reason: " + triggeringReason);
-                        ex.printStackTrace();
-                        throw ex;
-                    }
-                }
-
-                boolean changeDetected = initializedNodes_ != null && !initializedNodes_.contains(nodeIndex);
-                Set<Object> removedChildIds = null;
-                Set<Object> changedChildIds = null;
-                Set<Object> addedChildIds = null;
-                if (node.isChildrenProperty())
-                {
-                    removedChildIds = new HashSet<>();
-                    changedChildIds = new HashSet<>();
-                    addedChildIds = new HashSet<>();
-
-                    Map<Object, Map<Object, Object>> newValueMap = (Map<Object, Map<Object, Object>>)newValue;
-                    if (newValueMap == null)
-                    {
-                        newValueMap = Collections.emptyMap();
-                    }
-                    newValue = new HashMap<>();
-                    for (Object cid : newValueMap.keySet())
-                    {
-                        // TODO(f) backward compatibility. Non-children maps are there by keys:
-                        // :_flexible-childset-added
-                        // :_flex-target-id-paths-added
-                        if (!cid.toString().contains("_flex"))
-                        {
-                            ((Map<Object, Map<Object, Object>>) newValue).put(cid, newValueMap.get(cid));
-                        }
-                    }
-                    newValue = PersistentHashMap.create((Map)newValue);
-
-                    Map<Object, Map<Object, Object>> children = (Map<Object, Map<Object, Object>>) oldValue;
-                    Map<Object, Map<Object, Object>> oldChildren = children != null ? children : Collections.emptyMap();
-                    Set<Object> allIds = new HashSet<>();
-                    allIds.addAll(oldChildren.keySet());
-                    allIds.addAll(((Map)newValue).keySet());
-                    for (Object id : allIds)
-                    {
-                        if (!oldChildren.containsKey(id))
-                        {
-                            addedChildIds.add(id);
-                        }
-                        else if (!((Map)newValue).containsKey(id))
-                        {
-                            removedChildIds.add(id);
-                        }
-                        else if (!oldChildren.get(id).equals(((Map)newValue).get(id)))
-                        {
-                            changedChildIds.add(id);
-                        }
-                    }
-                    if (!changeDetected)
-                    {
-                        changeDetected = addedChildIds.size() > 0 || removedChildIds.size() > 0 || changedChildIds.size() > 0;
-                    }
-                }
-                else
-                {
-                    try
-                    {
-                        if (!changeDetected)
-                        {
-                            changeDetected = !Objects.equals(oldValue, newValue);
-                        }
-                    }
-                    catch (Exception ex)
-                    {
-                        throw ex;
-                    }
-                }
-
-                if (changeDetected)
-                {
-                    if (debug_) logDebug(" Evolved: " + nodeIndex + " " + node.getNodePath() + " for reason: " + valueToString(triggeringReason) + ": " + valueToString(oldValue) + " -> " + valueToString(newValue));
-                    containerMutator_.setValue(nodeIndex, newValue);
-                    Collection<IFGEvolveConsumer> nodeEvolverConsumers = node.getEvolveConsumers();
-                    if (nodeEvolverConsumers != null)
-                    {
-                        originalReasonForConsumers_ = evolveReason;
-                        nodeIndicesToNotifyConsumers_.add(Integer.valueOf(nodeIndex));
-                    }
-
-                    List<Object> componentPath = component.getComponentPath();
-
-                    addNodeDependentsToEvolvebuffer(node);
-
-                    if (triggeringReason != null && node.isChildrenProperty())
-                    {
-                        if (debug_) logDebug(" Detected children change");
-                        Map<Object, Map<Object, Object>> newChildren = (Map<Object, Map<Object, Object>>) newValue;
-
-                        Set<Object> idsToRemove = new HashSet<>(removedChildIds);
-                        idsToRemove.addAll(changedChildIds);
-                        Set<Object> idsToAdd = new HashSet<>(addedChildIds);
-                        idsToAdd.addAll(changedChildIds);
-
-                        if (debug_) logDebug(" Removing " + removedChildIds.size() + " removed and " + changedChildIds.size() + " changed children...");
-                        Set<Integer> removedChildIndices = new HashSet<>(idsToRemove.size());
-                        for (Object id : idsToRemove)
-                        {
-                            List<Object> childPath = new CompactList<>(keys_, componentPath);
-                            childPath.add(id);
-                            Integer removedChildIndex = getComponentUid(childPath);
-                            removeComponent(removedChildIndex);
-                            removedChildIndices.add(removedChildIndex);
-                            // TODO deep remove
-                            addedComponentIds.remove(removedChildIndex);
-                        }
-
-                        if (debug_) logDebug(" Adding " + changedChildIds.size() + " changed and " + addedChildIds.size() + " added children...");
-                        Set<Integer> newChildIndices = new HashSet<>(idsToAdd.size());
-                        Map<Object, Integer> newChildIdToIndex = new HashMap<>();
-
-                        idsToAdd
-                                .forEach(childId -> {
-                                    Map<Object, Object> child = newChildren.get(childId);
-                                    Collection<Integer> deepIndices = new HashSet<>();
-                                    Integer index = addContainer(node.getComponentUid(), component.getComponentPath(), child, deepIndices);
-                                    deepIndices.forEach(addedComponentIds::add);
-                                    newChildIndices.add(index);
-                                    newChildIdToIndex.put(childId, index);
-                                });
-
-                        component.removeChildIndices(removedChildIndices, removedChildIds);
-                        component.addChildIndices(newChildIndices, newChildIdToIndex);
-                    }
-                    if (node.isChildOrderProperty() && newValue != null)
-                    {
-                        List<Object> newChildIdOrder = (List<Object>) newValue;
-
-                        List<Integer> newChildIndices = new ArrayList<>(newChildIdOrder.size());
-                        for (int i=0; i<newChildIdOrder.size(); i++)
-                        {
-                            List<Object> childPath = new CompactList<>(keys_, componentPath);
-                            childPath.add(newChildIdOrder.get(i));
-                            newChildIndices.add(getComponentUid(childPath));
-                        }
-                        component.changeChildIndicesOrder(newChildIndices);
-                    }
-
-                    resultCollector_.appendResult(node.getParentComponentUid(), componentPath, node, newValue);
-                }
-                else
-                {
-                    if (debug_) logDebug(" Evolved: " + nodeIndex + " " + node.getNodePath() + " for reason: " + valueToString(triggeringReason) + ": no change (" + oldValue + ").");
-                }
-
-                if (initializedNodes_ != null)
-                {
-                    initializedNodes_.add(nodeIndex);
-                }
-            }
-
+            evolveNode(node, triggeringReason, null, evolveReason, addedComponentIds);
             currentCycleBufIndex_++;
         }
-
-        resultCollector_.postProcessAfterEvolveCycle(containerAccessor_, containerMutator_);
-
-        notifyEvolverConsumers();
+        if (evolveMode_ == EvolveMode.Parallel)
+        {
+            evolveParallel(evolveReason);
+        }
+        if (ranked)
+        {
+            evolveRanked(evolveReason, addedComponentIds);
+        }
 
         if (debug_) logDebug("---Ended evolve cycle");
 
@@ -478,13 +456,7 @@ public class Container
             processAllNodesOfComponents(addedComponentIds, this::setupEvolversForNode);
             processAllNodesOfComponents(addedComponentIds, this::resolveDependencyIndicesForNode);
 
-            processAllNodesOfComponents(addedComponentIds, this::markNodeAsDependent);
-
-            for (Node n : nodesWithAmbiguousDependencies_)
-            {
-                Collection<Node.Dependency> newDependencies = n.reevaluateAmbiguousDependencies(components_, containerParser_::isWildcardPathElement);
-                markNodeAsDependent(n, newDependencies);
-            }
+            resolveAmbiguousDependenciesOnAdded(addedComponentIds);
 
             boolean newNodeSet = initializedNodes_ == null;
             if (newNodeSet)
@@ -499,148 +471,412 @@ public class Container
             }
         }
 
+        synchronized (this)
+        {
+            // Cycles of components initialized above have been started and completed after this one
+            completedCycle_ = cycle_;
+        }
+
         long spentEvolving = System.currentTimeMillis() - evolveStartTime;
         //System.out.println("-DLTEMP- Container.evolve spent evolving " + spentEvolving);
     }
 
-    public boolean isInterestedIn(Integer componentUid, Object evolveReason)
+    /**
+     * @param evolveMode {@link EvolveMode#Fifo} (default), {@link EvolveMode#Ranked} or {@link EvolveMode#Parallel}.
+     *                   Takes effect starting from the next evolve cycle; must be called from the evolver thread
+     */
+    public void setEvolveMode(EvolveMode evolveMode)
     {
-        if (evolveReason == null)
-        {
-            throw new IllegalArgumentException();
-        }
-        ComponentAccessor initialComponentAccessor = components_.get(componentUid);
-        Map<Object, Integer> propertyIdToNodeIndex = initialComponentAccessor.getPropertyIdToIndex();
-        for (Object propertyId : propertyIdToNodeIndex.keySet())
-        {
-            Integer nodeIndex = propertyIdToNodeIndex.get(propertyId);
-            Node node = nodes_.get(nodeIndex);
-            Class<?> evolveReasonClass;
-            if (evolveReason instanceof FGIncomingMouseWheelEvent)
-            {
-                // TODO this is a hack
-                evolveReasonClass = MouseWheelEvent.class;
-            }
-            else
-            {
-                evolveReasonClass = evolveReason.getClass();
-            }
-            if (node.getEvolver() != null && containerParser_.isInterestedIn(node.getInputDependencies(), evolveReasonClass))
-            {
-                return true;
-            }
-        }
-        return false;
+        evolveMode_ = Objects.requireNonNull(evolveMode);
     }
 
-    public IContainerAccessor getContainerAccessor()
+    public EvolveMode getEvolveMode()
     {
-        return containerAccessor_;
+        return evolveMode_;
     }
 
-    public IPropertyValueAccessor getPropertyValueAccessor()
+    /**
+     * @param parallelEvolvePool pool to evaluate independent dependency subgraphs on in {@link EvolveMode#Parallel}
+     *                           mode; common pool is used by default
+     */
+    public void setParallelEvolvePool(ForkJoinPool parallelEvolvePool)
     {
-        return propertyValueAccessor_;
+        parallelEvolvePool_ = Objects.requireNonNull(parallelEvolvePool);
     }
 
-    public final Integer getComponentUid(List<Object> componentPath)
+    /**
+     * @return number of evolve cycles (or their parts) that have been evaluated in parallel
+     */
+    public long getParallelEvolveCycleCount()
     {
-        return componentPathToIndex_.get(componentPath);
+        return parallelEvolveCycleCount_;
     }
 
-    public IComponent getRootComponent()
+    /**
+     * @return total number of evolver invocations performed by this container
+     */
+    public long getEvolverInvocationCount()
     {
-        return components_.get(0);
+        return evolverInvocationCount_;
     }
 
-    public IComponent getComponent(Integer componentUid)
+    /**
+     * @return number of evolver invocations avoided in {@link EvolveMode#Ranked} and {@link EvolveMode#Parallel}
+     *         modes because a node was
+     *         triggered again while it was still waiting for evaluation in the same cycle
+     */
+    public long getAvoidedEvolverInvocationCount()
     {
-        return components_.get(componentUid.intValue());
+        return avoidedEvolverInvocationCount_;
     }
 
-    public Node getNode(Integer nodeId)
+    /**
+     * Turns on or off memoization of evolvers. Once turned on, container keeps a version number for each node value,
+     * and records versions of values each evolver reads. Evolver triggered by a change of some node it depends on
+     * is skipped if none of the values it has read last time has changed since, and it has not read its evolve reason
+     * or the reason is the same. Evolvers triggered by input events are always invoked. Memoization assumes evolvers
+     * depend on nothing but property values and reason; it is not applied in {@link EvolveMode#Parallel} mode.
+     * Must be called from the evolver thread
+     */
+    public void setEvolverMemoization(boolean memoizeEvolvers)
     {
-        return nodes_.get(nodeId);
+        if (memoizeEvolvers && valueVersions_ == null)
+        {
+            valueVersions_ = new int[Math.max(nodes_.size(), 1)];
+        }
+        memoizeEvolvers_ = memoizeEvolvers;
     }
 
-    public int getNodeCount()
+    public boolean isEvolverMemoization()
     {
-        return nodes_.size();
+        return memoizeEvolvers_;
     }
 
-    public synchronized <V> V getPropertyValue(Integer index)
+    /**
+     * @return number of evolver invocations skipped because of memoization
+     */
+    public long getEvolverMemoHitCount()
     {
-        return index != null ? (V) values_.get(index.intValue()) : null;
+        return evolverMemoHitCount_;
     }
 
-    public <V> V getPropertyValue(List<Object> path, Object property)
+    /**
+     * @return number of evolver invocations that could have been skipped with memoization but have not been because
+     *         evolver input has changed or evolver has not been memoized
+     */
+    public long getEvolverMemoMissCount()
     {
-        Integer componentUid = getComponentUid(path);
-        if (componentUid == null)
-        {
-            throw new IllegalArgumentException("Component not found for path: " + path);
-        }
-        Container.IComponent component = getComponent(componentUid);
-        Integer propertyIndex = component.getPropertyIndex(property);
-        return getPropertyValue(propertyIndex);
+        return evolverMemoMissCount_;
     }
 
-    public IResultCollector getResultCollector()
+    /**
+     * @return number of the evolve cycle being evaluated, or of the latest one. Each event evolved by
+     *         {@link #evolve(Integer, Object)} or as a part of {@link #evolveBatch(List)} makes one cycle, as well
+     *         as initialization of each component. Copies continue numbering of their source
+     */
+    public synchronized long getCycle()
     {
-        return resultCollector_;
+        return cycle_;
     }
 
-    public Collection<List<Object>> getAllIdPaths()
+    /**
+     * @return number of the latest evolve cycle that has been completed. Unlike {@link #getCycle()}, it is safe
+     *         to pass to {@link #changedNodesSince(long)} and {@link #changedComponentsSince(long)} from a thread
+     *         other than the evolver one: changes the cycle being evaluated has made so far, and will make
+     *         in the rest of it, are reported the next time
+     */
+    public synchronized long getCompletedCycle()
     {
-        return Collections.unmodifiableSet(pathToIndex_.keySet());
+        return completedCycle_;
     }
 
     /**
-     * Adds evolve result consumer to the container. Note: consumer is added to the node,
-     * and if node is removed then consumer is removed as well and is not re-applied in case
-     * new node is added for given path/property
+     * Turns on or off logging which nodes change in which evolve cycle, so that observers can pull changes
+     * with {@link #changedNodesSince(long)} and {@link #changedComponentsSince(long)}. Log is kept in primitive
+     * arrays and keeps at most about two entries per node. Turning tracking off drops the log. Must be called
+     * from the evolver thread
      */
-    public void addEvolveConsumer(IFGEvolveConsumer evolveConsumer)
+    public synchronized void setChangeTracking(boolean trackChanges)
     {
-        List<Object> path = evolveConsumer.getTargetPath();
-        Collection<Object> targetProperties = evolveConsumer.getTargetProperties();
-
-        for (Object property : targetProperties)
+        if (trackChanges && changeLog_ == null)
         {
-            List fullPath = new CompactList(keys_, path);
-            fullPath.add(property);
-
-            Integer nodeIndex = pathToIndex_.get(fullPath);
-            if (nodeIndex != null)
-            {
-                nodes_.get(nodeIndex.intValue()).addEvolveConsumer(evolveConsumer);
-            }
-            else
-            {
-                System.out.println("Error: node for " + path + "/" + property + " is not found.");
-            }
+            changeLog_ = new ChangeLog(cycle_);
+        }
+        else if (!trackChanges)
+        {
+            changeLog_ = null;
         }
     }
 
-    public void freeze()
+    public synchronized boolean isChangeTracking()
     {
-       nodes_.trimCapacity();
-       values_.trimCapacity();
-       nodesWithAmbiguousDependencies_.trimCapacity();
-       components_.trimCapacity();
-       reusableNodeBuffer_ = null;
-       reusableReasonBuffer_ = null;
+        return changeLog_ != null;
     }
 
-    public final int getMaxIndexBufferSize()
+    /**
+     * @param cycle number of a completed cycle as returned by {@link #getCompletedCycle()}
+     * @return indices of nodes whose values have changed in cycles after given one, each index once. Nodes of
+     *         removed components are included (their values are null). If given cycle precedes the moment change
+     *         tracking has been turned on, returns indices of all existing nodes
+     */
+    public synchronized int[] changedNodesSince(long cycle)
     {
-        return maxIndexBufferSize_;
+        ChangeLog changeLog = getChangeLogStrict();
+        if (cycle < changeLog.getBaseCycle())
+        {
+            return getNonNullIndices(nodes_);
+        }
+        return changeLog.getChangedNodesSince(cycle);
     }
 
-    // Private
-
-    private Integer addComponentImpl(Integer parentComponentUid, List<Object> componentPath, ComponentAccessor component)
-    {
+    /**
+     * @param cycle number of a completed cycle as returned by {@link #getCompletedCycle()}
+     * @return uids of components that have any nodes changed in cycles after given one, each uid once. May include
+     *         components removed since. If given cycle precedes the moment change tracking has been turned on,
+     *         returns uids of all existing components
+     */
+    public synchronized int[] changedComponentsSince(long cycle)
+    {
+        ChangeLog changeLog = getChangeLogStrict();
+        if (cycle < changeLog.getBaseCycle())
+        {
+            return getNonNullIndices(components_);
+        }
+        return changeLog.getChangedComponentsSince(cycle);
+    }
+
+    private ChangeLog getChangeLogStrict()
+    {
+        if (changeLog_ == null)
+        {
+            throw new IllegalStateException("Change tracking is not turned on for container " + containerId_);
+        }
+        return changeLog_;
+    }
+
+    private static int[] getNonNullIndices(List<?> list)
+    {
+        int[] indices = new int[list.size()];
+        int count = 0;
+        for (int i=0; i<list.size(); i++)
+        {
+            if (list.get(i) != null)
+            {
+                indices[count++] = i;
+            }
+        }
+        return Arrays.copyOf(indices, count);
+    }
+
+    public boolean isInterestedIn(Integer componentUid, Object evolveReason)
+    {
+        if (evolveReason == null)
+        {
+            throw new IllegalArgumentException();
+        }
+        return components_.get(componentUid).isInterestedIn(containerParser_.getInputChannel(evolveReason.getClass()));
+    }
+
+    public IContainerAccessor getContainerAccessor()
+    {
+        return containerAccessor_;
+    }
+
+    public IPropertyValueAccessor getPropertyValueAccessor()
+    {
+        return propertyValueAccessor_;
+    }
+
+    public final Integer getComponentUid(List<Object> componentPath)
+    {
+        return componentPathToIndex_.get(componentPath);
+    }
+
+    public IComponent getRootComponent()
+    {
+        return components_.get(0);
+    }
+
+    public IComponent getComponent(Integer componentUid)
+    {
+        return components_.get(componentUid.intValue());
+    }
+
+    public Node getNode(Integer nodeId)
+    {
+        return nodes_.get(nodeId);
+    }
+
+    public int getNodeCount()
+    {
+        return nodes_.size();
+    }
+
+    public synchronized <V> V getPropertyValue(Integer index)
+    {
+        return index != null ? (V) values_.get(index.intValue()) : null;
+    }
+
+    /**
+     * @return immutable view of all property values as of the end of the latest evolve batch (or initialization,
+     *         or copying). Unlike {@link #getPropertyValue(Integer)}, reading from the snapshot never blocks or is
+     *         blocked by evolver thread, and never sees values of an evolve batch that is still in progress.
+     */
+    public ValueSnapshot getValueSnapshot()
+    {
+        return valueSnapshot_;
+    }
+
+    public <V> V getPropertyValue(List<Object> path, Object property)
+    {
+        return getPropertyValue(getPropertyIndex(path, property));
+    }
+
+    /**
+     * @return index of the node keeping given property of component at given path, or null if component has no
+     *         such property
+     */
+    public Integer getPropertyIndex(List<Object> path, Object property)
+    {
+        Integer componentUid = getComponentUid(path);
+        if (componentUid == null)
+        {
+            throw new IllegalArgumentException("Component not found for path: " + path);
+        }
+        Container.IComponent component = getComponent(componentUid);
+        return component.getPropertyIndex(property);
+    }
+
+    public IResultCollector getResultCollector()
+    {
+        return resultCollector_;
+    }
+
+    public Collection<List<Object>> getAllIdPaths()
+    {
+        return Collections.unmodifiableSet(pathToIndex_.keySet());
+    }
+
+    /**
+     * Adds evolve result consumer to the container. Note: consumer is added to the node,
+     * and if node is removed then consumer is removed as well and is not re-applied in case
+     * new node is added for given path/property
+     */
+    public void addEvolveConsumer(IFGEvolveConsumer evolveConsumer)
+    {
+        List<Object> path = evolveConsumer.getTargetPath();
+        Collection<Object> targetProperties = evolveConsumer.getTargetProperties();
+
+        for (Object property : targetProperties)
+        {
+            List fullPath = new CompactList(keys_, path);
+            fullPath.add(property);
+
+            Integer nodeIndex = pathToIndex_.get(fullPath);
+            if (nodeIndex != null)
+            {
+                if (!nodes_.get(nodeIndex.intValue()).hasEvolver())
+                {
+                    throw new IllegalStateException("Node for " + path + "/" + property + " declares no evolver");
+                }
+                getEvolverWrapper(nodeIndex.intValue()).addEvolveConsumer(evolveConsumer);
+            }
+            else
+            {
+                System.out.println("Error: node for " + path + "/" + property + " is not found.");
+            }
+        }
+    }
+
+    /**
+     * Makes this container a template for other containers created via copy constructor: after freezing,
+     * the container is not evolved anymore, and its topology is shared with the copies.
+     */
+    public void freeze()
+    {
+       if (!topologyShared_)
+       {
+           nodes_.trimCapacity();
+       }
+       if (!ranksValid_)
+       {
+           computeNodeRanks();
+       }
+       values_.trimCapacity();
+       components_.trimCapacity();
+       reusableNodeBuffer_ = null;
+       reusableReasonBuffer_ = null;
+       frozen_ = true;
+    }
+
+    public boolean isFrozen()
+    {
+        return frozen_;
+    }
+
+    /**
+     * @return true if this container may still share topology with a container it has been created from or
+     *         copied to
+     */
+    public boolean isTopologyShared()
+    {
+        return topologyShared_;
+    }
+
+    public final int getMaxIndexBufferSize()
+    {
+        return maxIndexBufferSize_;
+    }
+
+    // Private
+
+    /**
+     * Copies shared topology before it is changed by this container
+     */
+    private void ensureOwnTopology()
+    {
+        if (frozen_)
+        {
+            throw new IllegalStateException("Container " + containerId_ + " is frozen");
+        }
+        if (topologyShared_)
+        {
+            componentPathToIndex_ = new HashMap<>(componentPathToIndex_);
+            vacantComponentIndices_ = new IntFreeList(vacantComponentIndices_);
+            vacantNodeIndices_ = new IntFreeList(vacantNodeIndices_);
+            nodes_ = new GrowControlArrayList<>(nodes_, nodesGrowFunction_);
+            Map<List<Object>, List<AmbiguousDependency>> ambiguousDependenciesByAnchor = new HashMap<>();
+            ambiguousDependenciesByAnchor_.forEach((a, l) -> ambiguousDependenciesByAnchor.put(a, new ArrayList<>(l)));
+            ambiguousDependenciesByAnchor_ = ambiguousDependenciesByAnchor;
+            pathToIndex_ = new HashMap<>(pathToIndex_);
+            dependents_ = new IntGraph(dependents_);
+            dependencies_ = new IntGraph(dependencies_);
+            relPaths_ = new RelPathTable(relPaths_, this::createDependencyReason);
+            nodeRanks_ = Arrays.copyOf(nodeRanks_, nodeRanks_.length);
+            topologyShared_ = false;
+        }
+    }
+
+    private EvolverWrapper getEvolverWrapper(int nodeIndex)
+    {
+        EvolverWrapper evolverWrapper = evolverWrappers_[nodeIndex];
+        if (evolverWrapper == null)
+        {
+            evolverWrapper = new EvolverWrapper((EvolvingNode) nodes_.get(nodeIndex), this, evolverAccess_);
+            evolverWrappers_[nodeIndex] = evolverWrapper;
+        }
+        return evolverWrapper;
+    }
+
+    private Collection<IFGEvolveConsumer> getEvolveConsumers(int nodeIndex)
+    {
+        EvolverWrapper evolverWrapper = evolverWrappers_[nodeIndex];
+        return evolverWrapper != null ? evolverWrapper.getEvolveConsumers() : null;
+    }
+
+    private Integer addComponentImpl(Integer parentComponentUid, List<Object> componentPath, ComponentAccessor component)
+    {
+        ensureOwnTopology();
         Integer index;
         if (vacantComponentIndices_.isEmpty())
         {
@@ -649,8 +885,7 @@ public class Container
         }
         else
         {
-            index = vacantComponentIndices_.stream().findAny().get();
-            vacantComponentIndices_.remove(index);
+            index = Integer.valueOf(vacantComponentIndices_.allocate());
             components_.set(index, component);
         }
         componentPathToIndex_.put(componentPath, index);
@@ -660,57 +895,112 @@ public class Container
         return index;
     }
 
-    private void removeComponent(Integer componentUid)
+    /**
+     * Removes given components with all their descendants in one pass: nodes are released first, and then path maps
+     * and dependency edges of remaining nodes are cleaned up once per affected map or node. Nodes that are waiting
+     * for evaluation in current cycle are skipped once they are found removed, so nothing is scanned here for them.
+     */
+    private void removeComponents(Collection<Integer> componentUids)
     {
-        if (componentUid.intValue() >= components_.size())
+        List<ComponentAccessor> removedComponents = new ArrayList<>();
+        Deque<ComponentAccessor> stack = new ArrayDeque<>();
+        for (Integer componentUid : componentUids)
         {
-            throw new IllegalArgumentException("Component does not exist: " + componentUid);
-        }
-        ComponentAccessor c = components_.get(componentUid.intValue());
-        if (c == null)
-        {
-            throw new IllegalArgumentException("Component already removed: " + componentUid);
-        }
-
-        Collection<Integer> propertyIndices = c.getPropertyIndices();
-        propertyIndices.forEach(i -> {
-            vacantNodeIndices_.add(i);
-            Node node = nodes_.set(i.intValue(), null);
-            nodesWithAmbiguousDependencies_.remove(node);//TODO there should be indices, not nodes
-            containerMutator_.setValue(i.intValue(), null);
-            pathToIndex_.remove(node.getNodePath());
-            unMarkNodeAsDependent(node, node.getDependencyIndices());
-            for (Integer dependentIndex : node.getDependentIndices().keySet())
+            if (componentUid.intValue() >= components_.size())
+            {
+                throw new IllegalArgumentException("Component does not exist: " + componentUid);
+            }
+            ComponentAccessor c = components_.get(componentUid.intValue());
+            if (c == null)
+            {
+                throw new IllegalArgumentException("Component already removed: " + componentUid);
+            }
+            // Parents go before their children, as if removed recursively
+            stack.push(c);
+            while (!stack.isEmpty())
             {
-                Node dependentNode = nodes_.get(dependentIndex.intValue());
-                if (dependentNode != null)
+                ComponentAccessor next = stack.pop();
+                removedComponents.add(next);
+                List<Integer> children = next.getChildIndices();
+                if (children != null)
                 {
-                    dependentNode.forgetDependency(i);
+                    for (int i=children.size()-1; i>=0; i--)
+                    {
+                        stack.push(components_.get(children.get(i).intValue()));
+                    }
                 }
             }
-            if (initializedNodes_ != null)
+        }
+        ensureOwnTopology();
+
+        BitSet removedNodes = new BitSet();
+        int removedNodeCount = 0;
+        for (int c=0; c<removedComponents.size(); c++)
+        {
+            for (Integer i : removedComponents.get(c).getPropertyIndices())
             {
-                initializedNodes_.remove(i);
+                removedNodes.set(i.intValue());
+                removedNodeCount++;
             }
-            for (int r=currentCycleBufIndex_; r < reusableNodeBuffer_.size(); r++)
+        }
+        // Rebuilding path maps in one pass is cheaper than removing many paths one by one, each hashed again
+        boolean filterPathMaps = removedNodeCount * 4 > pathToIndex_.size();
+
+        boolean ambiguousNodesRemoved = false;
+        BitSet nodesToFilterDependents = new BitSet();
+        BitSet nodesToFilterDependencies = new BitSet();
+        for (int c=0; c<removedComponents.size(); c++)
+        {
+            ComponentAccessor component = removedComponents.get(c);
+            for (Integer i : component.getPropertyIndices())
             {
-                if (reusableNodeBuffer_.get(r) == node)
+                int nodeIndex = i.intValue();
+                vacantNodeIndices_.release(nodeIndex);
+                containerMutator_.setValue(nodeIndex, null);
+                Node node = nodes_.set(nodeIndex, null);
+                ambiguousNodesRemoved |= node.isHasAmbiguousDependencies();
+                if (!filterPathMaps)
+                {
+                    pathToIndex_.remove(node.getNodePath());
+                }
+                releaseDependencyEdges(nodeIndex, removedNodes, nodesToFilterDependents, nodesToFilterDependencies);
+                evolverWrappers_[nodeIndex] = null;
+                if (initializedNodes_ != null)
                 {
-                    reusableNodeBuffer_.set(r, null);
+                    initializedNodes_.remove(i);
                 }
+                removeNodeFromRankedQueue(nodeIndex);
             }
-        });
-
-        components_.set(componentUid.intValue(), null);
-        componentPathToIndex_.remove(c.getComponentPath());
 
-        vacantComponentIndices_.add(componentUid);
-        resultCollector_.componentRemoved(componentUid);
+            Integer componentUid = component.getComponentUid();
+            components_.set(componentUid.intValue(), null);
+            if (!filterPathMaps)
+            {
+                componentPathToIndex_.remove(component.getComponentPath());
+            }
+            vacantComponentIndices_.release(componentUid.intValue());
+            resultCollector_.componentRemoved(componentUid);
+        }
 
-        List<Integer> children = c.getChildIndices();
-        if (children != null)
+        for (int v = nodesToFilterDependents.nextSetBit(0); v >= 0; v = nodesToFilterDependents.nextSetBit(v+1))
+        {
+            dependents_.removeEdges(v, removedNodes::get);
+        }
+        for (int v = nodesToFilterDependencies.nextSetBit(0); v >= 0; v = nodesToFilterDependencies.nextSetBit(v+1))
+        {
+            dependencies_.removeEdges(v, removedNodes::get);
+        }
+        if (filterPathMaps)
+        {
+            pathToIndex_.values().removeIf(i -> removedNodes.get(i.intValue()));
+            componentPathToIndex_.values().removeIf(i -> components_.get(i.intValue()) == null);
+        }
+        if (ambiguousNodesRemoved)
         {
-            children.forEach(this::removeComponent);
+            ambiguousDependenciesByAnchor_.values().removeIf(l -> {
+                l.removeIf(a -> removedNodes.get(a.dependent_.getNodeIndex()));
+                return l.isEmpty();
+            });
         }
     }
 
@@ -724,7 +1014,7 @@ public class Container
         componentPath.add(containerParser_.getComponentId(container));
 
         ComponentAccessor component = new ComponentAccessor(
-                componentPath, values_, globalIndexToValueProvider_);
+                componentPath, values_, globalPathToIndex_);
         Integer componentUid = addComponent(parentComponentUid, componentPath, component);
         component.setComponentUid(componentUid);
         if (addedIndicesCollector != null)
@@ -739,6 +1029,7 @@ public class Container
             if (debug_) logDebug("Indexing " + componentPath + " node " + node.getNodePath() + ": " + nodeIndex);
             component.putPropertyIndex(node.getPropertyId(), nodeIndex);
         }
+        indexInputChannels(component);
 
         containerParser_.processComponentAfterIndexing(component);
 
@@ -760,6 +1051,68 @@ public class Container
         return componentUid;
     }
 
+    /**
+     * Builds per-channel arrays of component's node indices interested in input events, so that
+     * selecting nodes to evolve for an input event does not need to scan component properties
+     */
+    private void indexInputChannels(ComponentAccessor component)
+    {
+        int channelCount = containerParser_.getInputChannelCount();
+        int[] channelNodeCounts = new int[channelCount];
+        int[] nodeChannelMasks = new int[component.size()];
+        int evolvingNodeCount = 0;
+        int inputChannelMask = 0;
+        int k = 0;
+        Map<Object, Integer> propertyIdToNodeIndex = component.getPropertyIdToIndex();
+        for (Object propertyId : propertyIdToNodeIndex.keySet())
+        {
+            Node node = nodes_.get(propertyIdToNodeIndex.get(propertyId).intValue());
+            if (node.hasEvolver())
+            {
+                int mask = containerParser_.getInputChannelMask(node.getInputDependencies());
+                nodeChannelMasks[k] = mask;
+                inputChannelMask |= mask;
+                evolvingNodeCount++;
+                for (int c=0; c<channelCount; c++)
+                {
+                    if ((mask & (1 << c)) != 0)
+                    {
+                        channelNodeCounts[c]++;
+                    }
+                }
+            }
+            k++;
+        }
+
+        int[] evolvingNodeIndices = new int[evolvingNodeCount];
+        int[][] channelNodeIndices = new int[channelCount][];
+        for (int c=0; c<channelCount; c++)
+        {
+            channelNodeIndices[c] = new int[channelNodeCounts[c]];
+            channelNodeCounts[c] = 0;
+        }
+        evolvingNodeCount = 0;
+        k = 0;
+        for (Object propertyId : propertyIdToNodeIndex.keySet())
+        {
+            int nodeIndex = propertyIdToNodeIndex.get(propertyId).intValue();
+            if (nodes_.get(nodeIndex).hasEvolver())
+            {
+                evolvingNodeIndices[evolvingNodeCount++] = nodeIndex;
+                for (int c=0; c<channelCount; c++)
+                {
+                    if ((nodeChannelMasks[k] & (1 << c)) != 0)
+                    {
+                        channelNodeIndices[c][channelNodeCounts[c]++] = nodeIndex;
+                    }
+                }
+            }
+            k++;
+        }
+
+        component.setInputChannelIndex(evolvingNodeIndices, channelNodeIndices, inputChannelMask);
+    }
+
     private void processAllNodesOfComponents(Collection<Integer> addedComponentIds, Consumer<Node> nodeProcessor)
     {
         for (Integer uid : addedComponentIds)
@@ -784,7 +1137,7 @@ public class Container
             return;
         }
 
-        evolve(componentUid, null);
+        evolveCycle(componentUid, null);
     }
 
     private List<Object> dropLast(List<Object> path)
@@ -805,101 +1158,1084 @@ public class Container
 
     private void resolveDependencyIndicesForNode(Node n)
     {
-        n.resolveDependencyIndices(components_, containerParser_::isWildcardPathElement);
-    }
-
-    private void markNodeAsDependent(Node n)
-    {
-        markNodeAsDependent(n, n.getDependencyIndices());
+        markNodeAsDependent(n, n.resolveDependencyIndices(components_, containerParser_::isWildcardPathElement));
     }
 
     private void markNodeAsDependent(Node n, Collection<Node.Dependency> dependencies)
     {
-        dependencies
-            .forEach(d -> nodes_.get(d.getNodeIndex()).addDependent(Integer.valueOf(n.getNodeIndex()), n.getNodePath(), d.getRelPath(), keys_));
+        ensureOwnTopology();
+        int dependentIndex = n.getNodeIndex();
+        for (Node.Dependency d : dependencies)
+        {
+            int dependencyIndex = d.getNodeIndex();
+            Node dependency = nodes_.get(dependencyIndex);
+            List<Object> actualRef = dependency.createDependentReference(n.getNodePath(), d.getRelPath(), keys_);
+            if (debug_) logDebug(dependencyIndex + " " + dependency.getNodePath() + " added dependent: " + dependentIndex + " " + n.getNodePath() + " referenced as " + d.getRelPath() + " actual ref " + actualRef);
+
+            int edgeIndex = dependents_.indexOfEdge(dependencyIndex, dependentIndex);
+            if (edgeIndex >= 0)
+            {
+                int oldRelPathId = dependents_.getPayload(dependencyIndex, edgeIndex);
+                if (!relPaths_.get(oldRelPathId).equals(actualRef))
+                {
+                    int relPathId = relPaths_.acquire(actualRef);
+                    dependents_.setPayload(dependencyIndex, edgeIndex, relPathId);
+                    dependencies_.setPayload(dependentIndex, dependencies_.indexOfEdge(dependentIndex, dependencyIndex), relPathId);
+                    relPaths_.release(oldRelPathId);
+                }
+            }
+            else
+            {
+                int relPathId = relPaths_.acquire(actualRef);
+                dependents_.addEdge(dependencyIndex, dependentIndex, relPathId);
+                dependencies_.addEdge(dependentIndex, dependencyIndex, relPathId);
+                updateRanksForNewDependent(dependency, n);
+            }
+        }
     }
 
-    private void unMarkNodeAsDependent(Node n, Collection<Node.Dependency> dependencies)
+    /**
+     * Clears dependency edges of a node being removed. Each dependency is referenced by a pair of edges (one in
+     * dependencies_, one in dependents_) holding one reference to the relative path; it is released by the
+     * dependent's side if the dependent is removed as well. Edges that remaining nodes have to removed nodes are
+     * left for the caller to filter: the nodes are marked in given sets.
+     */
+    private void releaseDependencyEdges(int v, BitSet removedNodes, BitSet nodesToFilterDependents, BitSet nodesToFilterDependencies)
     {
-        dependencies
-                .forEach(dependencyTuple -> {
-                    // May be null - if node belonged to the component being removed
-                    Node dn = nodes_.get(dependencyTuple.getNodeIndex());
-                    if (dn != null)
-                    {
-                        dn.removeDependent(Integer.valueOf(n.getNodeIndex()));
-                    }
-                });
+        for (int e=0; e<dependencies_.getDegree(v); e++)
+        {
+            int dependencyIndex = dependencies_.getTarget(v, e);
+            relPaths_.release(dependencies_.getPayload(v, e));
+            if (!removedNodes.get(dependencyIndex))
+            {
+                nodesToFilterDependents.set(dependencyIndex);
+            }
+        }
+        dependencies_.clearVertex(v);
+
+        for (int e=0; e<dependents_.getDegree(v); e++)
+        {
+            int dependentIndex = dependents_.getTarget(v, e);
+            if (!removedNodes.get(dependentIndex))
+            {
+                EvolverWrapper dependentEvolverWrapper = evolverWrappers_[dependentIndex];
+                if (dependentEvolverWrapper != null)
+                {
+                    dependentEvolverWrapper.unlinkAllDelegates();
+                }
+                relPaths_.release(dependents_.getPayload(v, e));
+                nodesToFilterDependencies.set(dependentIndex);
+            }
+        }
+        dependents_.clearVertex(v);
     }
 
-    private void finishContainerIndexing()
+    private void indexAmbiguousDependencies(Node node)
+    {
+        for (DependencyInfo d : node.getRelAndAbsDependencyPaths())
+        {
+            List<Object> absPath = d.getAbsPath();
+            int componentPathSize = absPath.size() - 1;
+            if (componentPathSize > 0)
+            {
+                int anchorSize = 1;
+                while (anchorSize < componentPathSize && !containerParser_.isWildcardPathElement(absPath.get(anchorSize)))
+                {
+                    anchorSize++;
+                }
+                List<Object> anchor = new ArrayList<>(absPath.subList(0, anchorSize));
+                ambiguousDependenciesByAnchor_.computeIfAbsent(anchor, a -> new ArrayList<>()).add(new AmbiguousDependency(node, d));
+            }
+        }
+    }
+
+    /**
+     * Links nodes having wildcard dependencies to the matching properties of added components. Each added component
+     * is checked only against dependencies anchored at its path or at one of its ancestors' paths. Added components
+     * include all descendants of added components, so it is enough to look for the components matching whole
+     * dependency path.
+     */
+    private void resolveAmbiguousDependenciesOnAdded(Set<Integer> addedComponentIds)
+    {
+        if (ambiguousDependenciesByAnchor_.isEmpty())
+        {
+            return;
+        }
+        Map<Node, Collection<Node.Dependency>> newDependencies = new LinkedHashMap<>();
+        for (Integer componentUid : addedComponentIds)
+        {
+            ComponentAccessor component = components_.get(componentUid.intValue());
+            if (component == null)
+            {
+                continue;
+            }
+            List<Object> componentPath = component.getComponentPath();
+            int componentPathSize = componentPath.size();
+            for (int anchorSize=1; anchorSize<=componentPathSize; anchorSize++)
+            {
+                List<AmbiguousDependency> candidates = ambiguousDependenciesByAnchor_.get(componentPath.subList(0, anchorSize));
+                if (candidates == null)
+                {
+                    continue;
+                }
+                for (int c=0; c<candidates.size(); c++)
+                {
+                    AmbiguousDependency candidate = candidates.get(c);
+                    List<Object> absPath = candidate.dependency_.getAbsPath();
+                    if (absPath.size() - 1 == componentPathSize && matchesPattern(componentPath, absPath, anchorSize))
+                    {
+                        Integer propertyIndex = component.getPropertyIndex(absPath.get(componentPathSize));
+                        if (propertyIndex != null)
+                        {
+                            newDependencies.computeIfAbsent(candidate.dependent_, n -> new ArrayList<>())
+                                    .add(new Node.Dependency(propertyIndex.intValue(), candidate.dependency_.getRelPath()));
+                        }
+                    }
+                }
+            }
+        }
+        newDependencies.forEach(this::markNodeAsDependent);
+    }
+
+    private boolean matchesPattern(List<Object> componentPath, List<Object> pattern, int from)
+    {
+        for (int i=from; i<componentPath.size(); i++)
+        {
+            Object e = pattern.get(i);
+            if (!containerParser_.isWildcardPathElement(e) && !e.equals(componentPath.get(i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void finishContainerIndexing()
     {
         nodes_.forEach(this::setupEvolversForNode);
 
-        // and resolve dependency indices for each property
+        // Resolve dependency indices for each property, and for each property N, mark properties N depends on
+        // that they have N as a dependent
 
         nodes_.forEach(this::resolveDependencyIndicesForNode);
 
-        // For each component N, take its dependencies and mark that components that they have N as a dependent
+        // Topological ranks for ranked evolve mode
+
+        computeNodeRanks();
+
+        // TODO Optimize:
+        // remove dependents covered by longer chains. Maybe not remove but just hide since longer chains may be provided
+        // by components that may be removed
+    }
+
+    private Integer addNode(Integer parentComponentUid, Integer componentUid, SourceNode sourceNode, Object initialValue)
+    {
+        ensureOwnTopology();
+        Integer index;
+        if (vacantNodeIndices_.isEmpty())
+        {
+             index = nodes_.size();
+        }
+        else
+        {
+            index = Integer.valueOf(vacantNodeIndices_.allocate());
+        }
+        Node node;
+        if (sourceNode.getEvolverCode() != null)
+        {
+            node = new EvolvingNode(
+                    componentUid,
+                    parentComponentUid != null ? parentComponentUid.intValue() : -1,
+                    sourceNode,
+                    index,
+                    keys_);
+        }
+        else
+        {
+            node = new Node(
+                    componentUid,
+                    parentComponentUid != null ? parentComponentUid.intValue() : -1,
+                    sourceNode,
+                    index);
+        }
+        int indexInt = index.intValue();
+        if (indexInt >= nodeRanks_.length)
+        {
+            nodeRanks_ = Arrays.copyOf(nodeRanks_, Math.max(indexInt + 1, nodeRanks_.length * 2));
+        }
+        nodeRanks_[indexInt] = 0;
+        if (valueVersions_ != null && indexInt >= valueVersions_.length)
+        {
+            valueVersions_ = Arrays.copyOf(valueVersions_, Math.max(indexInt + 1, valueVersions_.length * 2));
+        }
+        if (indexInt >= evolverWrappers_.length)
+        {
+            evolverWrappers_ = Arrays.copyOf(evolverWrappers_, Math.max(indexInt + 1, evolverWrappers_.length * 2));
+        }
+        evolverWrappers_[indexInt] = null;
+        if (index < nodes_.size())
+        {
+            nodes_.set(indexInt, node);
+            containerMutator_.setValue(indexInt, initialValue);
+        }
+        else
+        {
+            nodes_.add(node);
+            synchronized (this)
+            {
+                values_.add(initialValue);
+                valueChanged(indexInt);
+            }
+        }
+        if (node.isHasAmbiguousDependencies())
+        {
+            indexAmbiguousDependencies(node);
+        }
+
+        pathToIndex_.put(sourceNode.getNodePath(), index);
+        return index;
+    }
+
+    private void evolveNode(Node node, Object triggeringReason, List<Object> allTriggeringReasons, Object evolveReason, Set<Integer> addedComponentIds)
+    {
+        int nodeIndex = node.getNodeIndex();
+        boolean hasEvolver = node.hasEvolver();
+
+        if (triggeringReason != null || initializedNodes_ != null && !initializedNodes_.contains(Integer.valueOf(nodeIndex)))
+        {
+            Object oldValue;
+            Object newValue;
+            ComponentAccessor component = components_.get(node.getComponentUid());
+            if (triggeringReason == null)
+            {
+                if (!hasEvolver)
+                {
+                    oldValue = null;
+                    newValue = values_.get(nodeIndex);
+                }
+                else
+                {
+                    oldValue = values_.get(nodeIndex);
+                    evolverInvocationCount_++;
+                    newValue = applyEvolverRecording(node, component, null, allTriggeringReasons);
+                }
+            }
+            else
+            {
+                oldValue = values_.get(nodeIndex);
+                // Evolve reason is the original one for the nodes targeted by input event, and
+                // a dependency reason for the nodes triggered by their dependencies
+                if (memoizeEvolvers_ && triggeringReason != evolveReason && initializedNodes_ == null)
+                {
+                    if (getEvolverWrapper(nodeIndex).isMemoized(triggeringReason, valueVersions_))
+                    {
+                        if (debug_) logDebug(" Skipped memoized evolver: " + nodeIndex + " " + node.getNodePath() + " for reason: " + valueToString(triggeringReason));
+                        evolverMemoHitCount_++;
+                        return;
+                    }
+                    evolverMemoMissCount_++;
+                }
+                evolverInvocationCount_++;
+                newValue = applyEvolverRecording(node, component, triggeringReason, allTriggeringReasons);
+            }
+
+            boolean changeDetected = initializedNodes_ != null && !initializedNodes_.contains(nodeIndex);
+            Set<Object> removedChildIds = null;
+            Set<Object> changedChildIds = null;
+            Set<Object> addedChildIds = null;
+            if (node.isChildrenProperty())
+            {
+                removedChildIds = new HashSet<>();
+                changedChildIds = new HashSet<>();
+                addedChildIds = new HashSet<>();
+
+                Map<Object, Map<Object, Object>> newValueMap = (Map<Object, Map<Object, Object>>)newValue;
+                if (newValueMap == null)
+                {
+                    newValueMap = Collections.emptyMap();
+                }
+                newValue = new HashMap<>();
+                for (Object cid : newValueMap.keySet())
+                {
+                    // TODO(f) backward compatibility. Non-children maps are there by keys:
+                    // :_flexible-childset-added
+                    // :_flex-target-id-paths-added
+                    if (!cid.toString().contains("_flex"))
+                    {
+                        ((Map<Object, Map<Object, Object>>) newValue).put(cid, newValueMap.get(cid));
+                    }
+                }
+                newValue = PersistentHashMap.create((Map)newValue);
+
+                Map<Object, Map<Object, Object>> children = (Map<Object, Map<Object, Object>>) oldValue;
+                Map<Object, Map<Object, Object>> oldChildren = children != null ? children : Collections.emptyMap();
+                Set<Object> allIds = new HashSet<>();
+                allIds.addAll(oldChildren.keySet());
+                allIds.addAll(((Map)newValue).keySet());
+                for (Object id : allIds)
+                {
+                    if (!oldChildren.containsKey(id))
+                    {
+                        addedChildIds.add(id);
+                    }
+                    else if (!((Map)newValue).containsKey(id))
+                    {
+                        removedChildIds.add(id);
+                    }
+                    else if (!oldChildren.get(id).equals(((Map)newValue).get(id)))
+                    {
+                        changedChildIds.add(id);
+                    }
+                }
+                if (!changeDetected)
+                {
+                    changeDetected = addedChildIds.size() > 0 || removedChildIds.size() > 0 || changedChildIds.size() > 0;
+                }
+            }
+            else
+            {
+                try
+                {
+                    if (!changeDetected)
+                    {
+                        changeDetected = !Objects.equals(oldValue, newValue);
+                    }
+                }
+                catch (Exception ex)
+                {
+                    throw ex;
+                }
+            }
+
+            if (changeDetected)
+            {
+                if (debug_) logDebug(" Evolved: " + nodeIndex + " " + node.getNodePath() + " for reason: " + valueToString(triggeringReason) + ": " + valueToString(oldValue) + " -> " + valueToString(newValue));
+                containerMutator_.setValue(nodeIndex, newValue);
+                if (getEvolveConsumers(nodeIndex) != null)
+                {
+                    originalReasonForConsumers_ = evolveReason;
+                    nodeIndicesToNotifyConsumers_.add(Integer.valueOf(nodeIndex));
+                }
+
+                List<Object> componentPath = component.getComponentPath();
+
+                addNodeDependentsToEvolvebuffer(node);
+
+                if (triggeringReason != null && node.isChildrenProperty())
+                {
+                    if (debug_) logDebug(" Detected children change");
+                    Map<Object, Map<Object, Object>> newChildren = (Map<Object, Map<Object, Object>>) newValue;
+
+                    Set<Object> idsToRemove = new HashSet<>(removedChildIds);
+                    idsToRemove.addAll(changedChildIds);
+                    Set<Object> idsToAdd = new HashSet<>(addedChildIds);
+                    idsToAdd.addAll(changedChildIds);
+
+                    if (debug_) logDebug(" Removing " + removedChildIds.size() + " removed and " + changedChildIds.size() + " changed children...");
+                    Set<Integer> removedChildIndices = new HashSet<>(idsToRemove.size());
+                    for (Object id : idsToRemove)
+                    {
+                        List<Object> childPath = new CompactList<>(keys_, componentPath);
+                        childPath.add(id);
+                        removedChildIndices.add(getComponentUid(childPath));
+                    }
+                    if (!removedChildIndices.isEmpty())
+                    {
+                        removeComponents(removedChildIndices);
+                        // Includes descendants of removed children
+                        addedComponentIds.removeIf(uid -> components_.get(uid.intValue()) == null);
+                    }
+
+                    if (debug_) logDebug(" Adding " + changedChildIds.size() + " changed and " + addedChildIds.size() + " added children...");
+                    Set<Integer> newChildIndices = new HashSet<>(idsToAdd.size());
+                    Map<Object, Integer> newChildIdToIndex = new HashMap<>();
+
+                    idsToAdd
+                            .forEach(childId -> {
+                                Map<Object, Object> child = newChildren.get(childId);
+                                Collection<Integer> deepIndices = new HashSet<>();
+                                Integer index = addContainer(node.getComponentUid(), component.getComponentPath(), child, deepIndices);
+                                deepIndices.forEach(addedComponentIds::add);
+                                newChildIndices.add(index);
+                                newChildIdToIndex.put(childId, index);
+                            });
+
+                    component.removeChildIndices(removedChildIndices, removedChildIds);
+                    component.addChildIndices(newChildIndices, newChildIdToIndex);
+                }
+                if (node.isChildOrderProperty() && newValue != null)
+                {
+                    List<Object> newChildIdOrder = (List<Object>) newValue;
+
+                    List<Integer> newChildIndices = new ArrayList<>(newChildIdOrder.size());
+                    for (int i=0; i<newChildIdOrder.size(); i++)
+                    {
+                        List<Object> childPath = new CompactList<>(keys_, componentPath);
+                        childPath.add(newChildIdOrder.get(i));
+                        newChildIndices.add(getComponentUid(childPath));
+                    }
+                    component.changeChildIndicesOrder(newChildIndices);
+                }
 
-        nodes_.forEach(this::markNodeAsDependent);
+                resultCollector_.appendResult(node.getParentComponentUid(), componentPath, node, newValue);
+            }
+            else
+            {
+                if (debug_) logDebug(" Evolved: " + nodeIndex + " " + node.getNodePath() + " for reason: " + valueToString(triggeringReason) + ": no change (" + oldValue + ").");
+            }
+
+            if (initializedNodes_ != null)
+            {
+                initializedNodes_.add(nodeIndex);
+            }
+        }
+    }
+
+    private Object applyEvolverRecording(Node node, ComponentAccessor component, Object reason, List<Object> allReasons)
+    {
+        if (!memoizeEvolvers_)
+        {
+            return applyEvolver(node, component, reason, allReasons);
+        }
+        EvolverWrapper evolverWrapper = getEvolverWrapper(node.getNodeIndex());
+        evolverWrapper.beginRecording();
+        try
+        {
+            Object newValue = applyEvolver(node, component, reason, allReasons);
+            evolverWrapper.endRecording(!component.isAllReasonsRead(), component.isReasonRead(), reason);
+            return newValue;
+        }
+        finally
+        {
+            evolverWrapper.stopRecording();
+        }
+    }
+
+    /**
+     * Reads value of given node for given evolver, which is the evolver context of the component being evolved.
+     * Read is recorded in the evolver if it is being memoized. An evolver invoked by a parallel evolve task sees
+     * values written by that task.
+     *
+     * Reads are not locked: values are written by the thread evolving the container only, and parallel evolve
+     * tasks keep what they write to themselves until all of them complete.
+     */
+    Object readValue(EvolverWrapper reader, Integer nodeIndex)
+    {
+        if (nodeIndex == null)
+        {
+            // Evolver refers a node that does not exist (yet)
+            reader.recordMissingRead();
+            return null;
+        }
+        Map<Integer, Object> taskValues = reader.getTaskValues();
+        if (taskValues != null && taskValues.containsKey(nodeIndex))
+        {
+            return taskValues.get(nodeIndex);
+        }
+        int i = nodeIndex.intValue();
+        if (reader.isRecording())
+        {
+            reader.recordRead(i, valueVersions_[i]);
+        }
+        return values_.get(i);
+    }
+
+    // Called under lock
+    private void valueChanged(int nodeIndex)
+    {
+        if (valueVersions_ != null)
+        {
+            valueVersions_[nodeIndex]++;
+        }
+        if (changeLog_ != null)
+        {
+            changeLog_.nodeChanged(nodeIndex, nodes_.get(nodeIndex).getComponentUid(), cycle_);
+        }
+    }
+
+    private Object applyEvolver(Node node, ComponentAccessor component, Object reason, List<Object> allReasons)
+    {
+        component.setEvolveReason(reason, allReasons);
+        try
+        {
+            return getEvolverWrapper(node.getNodeIndex()).apply(component);
+        }
+        catch (Exception ex)
+        {
+            if (reason == null)
+            {
+                logError(" Error evolving " + node.getNodePath() + " " + node.getPropertyId() + " while initializing ");
+            }
+            else
+            {
+                logError(" Error evolving " + node.getNodePath() + " " + node.getPropertyId() + " for reason: " + reason);
+            }
+            ex.printStackTrace();
+            throw ex;
+        }
+    }
+
+    // Ranked evolve mode
+
+    private void prepareRankedCycle()
+    {
+        if (!ranksValid_)
+        {
+            computeNodeRanks();
+        }
+        rankedQueue_.clear();
+        rankedSequence_ = 0;
+        ensureRankedStateCapacity(nodes_.size());
+    }
+
+    private void evolveRanked(Object evolveReason, Set<Integer> addedComponentIds)
+    {
+        while (!rankedQueue_.isEmpty())
+        {
+            long key = rankedQueue_.peekPriority();
+            int nodeIndex = rankedQueue_.poll();
+            if (rankedPendingKeys_[nodeIndex] != key)
+            {
+                // Node has been removed during this cycle
+                continue;
+            }
+            rankedPendingKeys_[nodeIndex] = 0;
+
+            List<Object> pendingReasons = rankedPendingReasons_[nodeIndex];
+            rankedCurrentReasons_.clear();
+            rankedCurrentReasons_.addAll(pendingReasons);
+            pendingReasons.clear();
+
+            // Pick the reason first FIFO entry would have been evaluated for
+            boolean needsInitialization = initializedNodes_ != null && !initializedNodes_.contains(Integer.valueOf(nodeIndex));
+            for (int i=0; i<rankedCurrentReasons_.size(); i++)
+            {
+                Object reason = rankedCurrentReasons_.get(i);
+                if (reason != null || needsInitialization)
+                {
+                    evolveNode(nodes_.get(nodeIndex), reason, rankedCurrentReasons_, evolveReason, addedComponentIds);
+                    break;
+                }
+            }
+        }
+        rankedCurrentReasons_.clear();
+    }
+
+    private void addNodeToRankedQueue(Node node, Object reason)
+    {
+        ensureRankedStateCapacity(node.getNodeIndex() + 1);
+        if (addNodeToRankedQueue(rankedQueue_, node, reason, rankedSequence_ + 1))
+        {
+            rankedSequence_++;
+        }
+        else
+        {
+            avoidedEvolverInvocationCount_++;
+        }
+    }
+
+    /**
+     * @return true if node has been added to the queue with given sequence number; false if it is already pending
+     *         and given reason has been just added to its pending reasons
+     */
+    private boolean addNodeToRankedQueue(IntPriorityQueue queue, Node node, Object reason, long sequence)
+    {
+        int nodeIndex = node.getNodeIndex();
+        List<Object> pendingReasons = rankedPendingReasons_[nodeIndex];
+        if (pendingReasons == null)
+        {
+            pendingReasons = new ArrayList<>(2);
+            rankedPendingReasons_[nodeIndex] = pendingReasons;
+        }
+        pendingReasons.add(reason);
+        if (rankedPendingKeys_[nodeIndex] != 0)
+        {
+            if (debug_) logDebug("    Already pending: " + node.getNodePath() + " for " + pendingReasons.size() + " reasons");
+            return false;
+        }
+        long key = ((long) nodeRanks_[nodeIndex] << 32) | sequence;
+        rankedPendingKeys_[nodeIndex] = key;
+        queue.add(nodeIndex, key);
+        return true;
+    }
+
+    private void removeNodeFromRankedQueue(int nodeIndex)
+    {
+        if (nodeIndex < rankedPendingKeys_.length)
+        {
+            rankedPendingKeys_[nodeIndex] = 0;
+            if (rankedPendingReasons_[nodeIndex] != null)
+            {
+                rankedPendingReasons_[nodeIndex].clear();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object>[] newReasonListArray(int length)
+    {
+        return (List<Object>[]) new List<?>[length];
+    }
+
+    private void ensureRankedStateCapacity(int nodeCount)
+    {
+        if (rankedPendingKeys_.length < nodeCount)
+        {
+            int newLength = Math.max(nodeCount, rankedPendingKeys_.length * 2);
+            rankedPendingKeys_ = Arrays.copyOf(rankedPendingKeys_, newLength);
+            rankedPendingReasons_ = Arrays.copyOf(rankedPendingReasons_, newLength);
+        }
+    }
+
+    // Parallel evolve mode
+
+    /**
+     * Evaluates pending ranked queue on the parallel evolve pool if it splits into several independent groups
+     * of nodes. Two nodes belong to the same group if there is a dependency path between them (within the region
+     * reachable from the pending nodes) or if they are properties of the same component. Falls back to leaving the
+     * queue for sequential evaluation if the region is small, if it has a single group, or if it contains nodes
+     * that may change container structure.
+     */
+    private void evolveParallel(Object evolveReason)
+    {
+        if (initializedNodes_ != null || rankedQueue_.isEmpty())
+        {
+            return;
+        }
+
+        // Pending nodes in the order they would be evaluated sequentially
+        int[] frontier = new int[rankedQueue_.size()];
+        long[] frontierKeys = new long[rankedQueue_.size()];
+        int frontierSize = 0;
+        while (!rankedQueue_.isEmpty())
+        {
+            long key = rankedQueue_.peekPriority();
+            int nodeIndex = rankedQueue_.poll();
+            if (rankedPendingKeys_[nodeIndex] == key)
+            {
+                frontier[frontierSize] = nodeIndex;
+                frontierKeys[frontierSize] = key;
+                frontierSize++;
+            }
+        }
+
+        List<ParallelEvolveTask> tasks = splitIntoParallelTasks(frontier, frontierKeys, frontierSize);
+        if (tasks == null)
+        {
+            for (int i=0; i<frontierSize; i++)
+            {
+                rankedQueue_.add(frontier[i], frontierKeys[i]);
+            }
+            return;
+        }
+
+        if (debug_) logDebug(" Evaluating " + frontierSize + " pending nodes in " + tasks.size() + " parallel groups");
+        parallelEvolvePool_.invoke(new RecursiveAction()
+        {
+            @Override
+            protected void compute()
+            {
+                invokeAll(tasks);
+            }
+        });
+        parallelEvolveCycleCount_++;
+
+        // Merge in deterministic order: by group, and within a group in evaluation order
+        RuntimeException error = null;
+        for (ParallelEvolveTask task : tasks)
+        {
+            evolverInvocationCount_ += task.invocationCount_;
+            avoidedEvolverInvocationCount_ += task.avoidedInvocationCount_;
+            rankedSequence_ = Math.max(rankedSequence_, task.sequence_);
+            for (int i=0; i<task.changedNodes_.size(); i++)
+            {
+                Node node = task.changedNodes_.get(i);
+                containerMutator_.setValue(node.getNodeIndex(), task.changedValues_.get(i));
+                if (getEvolveConsumers(node.getNodeIndex()) != null)
+                {
+                    originalReasonForConsumers_ = evolveReason;
+                    nodeIndicesToNotifyConsumers_.add(Integer.valueOf(node.getNodeIndex()));
+                }
+                resultCollector_.appendResult(node.getParentComponentUid(),
+                        components_.get(node.getComponentUid()).getComponentPath(), node, task.changedValues_.get(i));
+            }
+            if (error == null)
+            {
+                error = task.error_;
+            }
+        }
+        if (error != null)
+        {
+            throw error;
+        }
+    }
+
+    private List<ParallelEvolveTask> splitIntoParallelTasks(int[] frontier, long[] frontierKeys, int frontierSize)
+    {
+        int nodeCount = nodes_.size();
+        if (parallelRegionMarks_.length < nodeCount)
+        {
+            parallelRegionMarks_ = new int[Math.max(nodeCount, parallelRegionMarks_.length * 2)];
+            parallelUnionFind_ = new int[parallelRegionMarks_.length];
+            parallelRegionMark_ = 0;
+        }
+        parallelRegionMark_++;
+        int mark = parallelRegionMark_;
+
+        // Collect the region reachable from pending nodes
+        int[] region = new int[Math.max(frontierSize, 16)];
+        int regionSize = 0;
+        for (int i=0; i<frontierSize; i++)
+        {
+            if (parallelRegionMarks_[frontier[i]] != mark)
+            {
+                parallelRegionMarks_[frontier[i]] = mark;
+                parallelUnionFind_[frontier[i]] = frontier[i];
+                region[regionSize++] = frontier[i];
+            }
+        }
+        for (int r=0; r<regionSize; r++)
+        {
+            Node node = nodes_.get(region[r]);
+            if (node.isChildrenProperty() || node.isChildOrderProperty())
+            {
+                return null;
+            }
+            for (int e=0; e<dependents_.getDegree(region[r]); e++)
+            {
+                int dependent = dependents_.getTarget(region[r], e);
+                if (parallelRegionMarks_[dependent] != mark)
+                {
+                    parallelRegionMarks_[dependent] = mark;
+                    parallelUnionFind_[dependent] = dependent;
+                    if (regionSize == region.length)
+                    {
+                        region = Arrays.copyOf(region, regionSize * 2);
+                    }
+                    region[regionSize++] = dependent;
+                }
+            }
+        }
+        if (regionSize < PARALLEL_EVOLVE_MIN_REGION_SIZE)
+        {
+            return null;
+        }
+
+        // Union nodes connected by dependencies and nodes of the same component
+        Map<Integer, Integer> componentToRegionNode = new HashMap<>();
+        for (int r=0; r<regionSize; r++)
+        {
+            Node node = nodes_.get(region[r]);
+            for (int e=0; e<dependents_.getDegree(region[r]); e++)
+            {
+                union(region[r], dependents_.getTarget(region[r], e));
+            }
+            Integer sameComponentNode = componentToRegionNode.putIfAbsent(node.getComponentUid(), Integer.valueOf(region[r]));
+            if (sameComponentNode != null)
+            {
+                union(region[r], sameComponentNode.intValue());
+            }
+        }
 
-        // TODO Optimize:
-        // remove dependents covered by longer chains. Maybe not remove but just hide since longer chains may be provided
-        // by components that may be removed
+        // Distribute pending nodes between groups
+        Map<Integer, ParallelEvolveTask> rootToTask = new HashMap<>();
+        List<ParallelEvolveTask> tasks = new ArrayList<>();
+        for (int i=0; i<frontierSize; i++)
+        {
+            Integer root = Integer.valueOf(find(frontier[i]));
+            ParallelEvolveTask task = rootToTask.get(root);
+            if (task == null)
+            {
+                task = new ParallelEvolveTask(rankedSequence_);
+                rootToTask.put(root, task);
+                tasks.add(task);
+            }
+            task.queue_.add(frontier[i], frontierKeys[i]);
+        }
+        return tasks.size() > 1 ? tasks : null;
     }
 
-    private Integer addNode(Integer parentComponentUid, Integer componentUid, SourceNode sourceNode, Object initialValue)
+    private int find(int nodeIndex)
     {
-        Integer index;
-        if (vacantNodeIndices_.isEmpty())
+        int root = nodeIndex;
+        while (parallelUnionFind_[root] != root)
         {
-             index = nodes_.size();
+            root = parallelUnionFind_[root];
         }
-        else
+        while (parallelUnionFind_[nodeIndex] != root)
         {
-            index = vacantNodeIndices_.stream().findAny().get();
-            vacantNodeIndices_.remove(index);
+            int next = parallelUnionFind_[nodeIndex];
+            parallelUnionFind_[nodeIndex] = root;
+            nodeIndex = next;
         }
-        Node node;
-        if (sourceNode.getEvolverCode() != null)
+        return root;
+    }
+
+    private void union(int a, int b)
+    {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA != rootB)
         {
-            node = new EvolvingNode(
-                    componentUid,
-                    parentComponentUid != null ? parentComponentUid.intValue() : -1,
-                    sourceNode,
-                    index,
-                    evolverAccess_);
+            parallelUnionFind_[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
         }
-        else
+    }
+
+    /**
+     * Evaluates one independent group of nodes. Touches only state of nodes and components of its group (shared
+     * per-node arrays are sized before the tasks start). Values it evaluates are kept in the task, and are written
+     * to the container, as well as passed to result collector and consumers, after all tasks complete.
+     */
+    private class ParallelEvolveTask extends RecursiveAction
+    {
+        private final IntPriorityQueue queue_;
+        private final List<Object> currentReasons_;
+        private final List<Node> changedNodes_;
+        private final List<Object> changedValues_;
+        // Latest values of changed nodes, as seen by evolvers of this task
+        private final Map<Integer, Object> taskValues_;
+        private long sequence_;
+        private long invocationCount_;
+        private long avoidedInvocationCount_;
+        private RuntimeException error_;
+
+        ParallelEvolveTask(long sequence)
+        {
+            queue_ = new IntPriorityQueue(16);
+            currentReasons_ = new ArrayList<>();
+            changedNodes_ = new ArrayList<>();
+            changedValues_ = new ArrayList<>();
+            taskValues_ = new HashMap<>();
+            sequence_ = sequence;
+        }
+
+        @Override
+        protected void compute()
         {
-            node = new Node(
-                    componentUid,
-                    parentComponentUid != null ? parentComponentUid.intValue() : -1,
-                    sourceNode,
-                    index);
+            try
+            {
+                while (!queue_.isEmpty())
+                {
+                    long key = queue_.peekPriority();
+                    int nodeIndex = queue_.poll();
+                    if (rankedPendingKeys_[nodeIndex] != key)
+                    {
+                        continue;
+                    }
+                    rankedPendingKeys_[nodeIndex] = 0;
+
+                    List<Object> pendingReasons = rankedPendingReasons_[nodeIndex];
+                    currentReasons_.clear();
+                    currentReasons_.addAll(pendingReasons);
+                    pendingReasons.clear();
+
+                    Node node = nodes_.get(nodeIndex);
+                    ComponentAccessor component = components_.get(node.getComponentUid());
+                    Integer index = Integer.valueOf(nodeIndex);
+                    Object oldValue = taskValues_.containsKey(index) ? taskValues_.get(index) : values_.get(nodeIndex);
+                    invocationCount_++;
+                    EvolverWrapper evolverWrapper = getEvolverWrapper(nodeIndex);
+                    Object newValue;
+                    evolverWrapper.setTaskValues(taskValues_);
+                    try
+                    {
+                        newValue = applyEvolver(node, component, currentReasons_.get(0), currentReasons_);
+                    }
+                    finally
+                    {
+                        evolverWrapper.setTaskValues(null);
+                    }
+                    if (!Objects.equals(oldValue, newValue))
+                    {
+                        if (debug_) logDebug(" Evolved in parallel: " + nodeIndex + " " + node.getNodePath() + ": " + valueToString(oldValue) + " -> " + valueToString(newValue));
+                        taskValues_.put(index, newValue);
+                        changedNodes_.add(node);
+                        changedValues_.add(newValue);
+
+                        for (int e=0; e<dependents_.getDegree(nodeIndex); e++)
+                        {
+                            Node dependent = nodes_.get(dependents_.getTarget(nodeIndex, e));
+                            Object reason = relPaths_.getReason(dependents_.getPayload(nodeIndex, e));
+                            if (addNodeToRankedQueue(queue_, dependent, reason, sequence_ + 1))
+                            {
+                                sequence_++;
+                            }
+                            else
+                            {
+                                avoidedInvocationCount_++;
+                            }
+                        }
+                    }
+                }
+            }
+            catch (RuntimeException ex)
+            {
+                error_ = ex;
+            }
+            currentReasons_.clear();
         }
-        int indexInt = index.intValue();
-        if (index < nodes_.size())
+    }
+
+    /**
+     * Assigns topological ranks to all nodes. Nodes of one dependency cycle (strongly connected component)
+     * share the same rank; any other node gets a rank greater than ranks of all nodes it depends on.
+     */
+    private void computeNodeRanks()
+    {
+        ensureOwnTopology();
+        int nodeCount = nodes_.size();
+        int[][] dependents = new int[nodeCount][];
+        for (int i=0; i<nodeCount; i++)
         {
-            nodes_.set(indexInt, node);
-            containerMutator_.setValue(indexInt, initialValue);
+            Node node = nodes_.get(i);
+            if (node != null)
+            {
+                int[] a = new int[dependents_.getDegree(i)];
+                for (int e=0; e<a.length; e++)
+                {
+                    a[e] = dependents_.getTarget(i, e);
+                }
+                dependents[i] = a;
+                nodeRanks_[i] = 0;
+            }
         }
-        else
+
+        // Iterative Tarjan's algorithm. Strongly connected components are emitted in reverse topological order
+        int[] order = new int[nodeCount];
+        int[] lowLink = new int[nodeCount];
+        boolean[] onStack = new boolean[nodeCount];
+        int[] stack = new int[nodeCount];
+        int stackSize = 0;
+        int[] callStack = new int[nodeCount];
+        int[] edgePositions = new int[nodeCount];
+        int[] sccNodes = new int[nodeCount];
+        int[] sccStarts = new int[nodeCount + 1];
+        int[] sccOfNode = new int[nodeCount];
+        int sccCount = 0;
+        int sccNodeCount = 0;
+        int counter = 0;
+        Arrays.fill(order, -1);
+        for (int root=0; root<nodeCount; root++)
+        {
+            if (dependents[root] == null || order[root] >= 0)
+            {
+                continue;
+            }
+            int callDepth = 0;
+            callStack[callDepth++] = root;
+            edgePositions[root] = 0;
+            order[root] = lowLink[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (callDepth > 0)
+            {
+                int v = callStack[callDepth-1];
+                if (edgePositions[v] < dependents[v].length)
+                {
+                    int w = dependents[v][edgePositions[v]++];
+                    if (dependents[w] == null)
+                    {
+                        continue;
+                    }
+                    if (order[w] < 0)
+                    {
+                        order[w] = lowLink[w] = counter++;
+                        edgePositions[w] = 0;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        callStack[callDepth++] = w;
+                    }
+                    else if (onStack[w])
+                    {
+                        lowLink[v] = Math.min(lowLink[v], order[w]);
+                    }
+                }
+                else
+                {
+                    callDepth--;
+                    if (callDepth > 0)
+                    {
+                        int parent = callStack[callDepth-1];
+                        lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                    }
+                    if (lowLink[v] == order[v])
+                    {
+                        sccStarts[sccCount++] = sccNodeCount;
+                        int w;
+                        do
+                        {
+                            w = stack[--stackSize];
+                            onStack[w] = false;
+                            sccOfNode[w] = sccCount-1;
+                            sccNodes[sccNodeCount++] = w;
+                        }
+                        while (w != v);
+                    }
+                }
+            }
+        }
+        sccStarts[sccCount] = sccNodeCount;
+
+        // Walk components in topological order pushing ranks forward
+        for (int c=sccCount-1; c>=0; c--)
         {
-            nodes_.add(node);
-            synchronized (this)
+            int rank = 0;
+            for (int k=sccStarts[c]; k<sccStarts[c+1]; k++)
             {
-                values_.add(initialValue);
+                rank = Math.max(rank, nodeRanks_[sccNodes[k]]);
             }
-            if (node.isHasAmbiguousDependencies())
+            for (int k=sccStarts[c]; k<sccStarts[c+1]; k++)
             {
-                nodesWithAmbiguousDependencies_.add(node);
+                nodeRanks_[sccNodes[k]] = rank;
+            }
+            for (int k=sccStarts[c]; k<sccStarts[c+1]; k++)
+            {
+                for (int w : dependents[sccNodes[k]])
+                {
+                    if (nodes_.get(w) != null && sccOfNode[w] != c && nodeRanks_[w] <= rank)
+                    {
+                        nodeRanks_[w] = rank + 1;
+                    }
+                }
             }
         }
 
-        pathToIndex_.put(sourceNode.getNodePath(), index);
-        return index;
+        ranksValid_ = true;
+    }
+
+    /**
+     * Keeps ranks consistent when a new dependency edge is added. Falls back to full recomputation (done lazily
+     * before next ranked cycle) if the new edge closes a cycle or if too many ranks have to be adjusted.
+     */
+    private void updateRanksForNewDependent(Node dependency, Node dependent)
+    {
+        if (!ranksValid_ || dependency == dependent || nodeRanks_[dependent.getNodeIndex()] > nodeRanks_[dependency.getNodeIndex()])
+        {
+            return;
+        }
+        rankUpdateQueue_.clear();
+        nodeRanks_[dependent.getNodeIndex()] = nodeRanks_[dependency.getNodeIndex()] + 1;
+        rankUpdateQueue_.add(dependent);
+        int budget = nodes_.size();
+        while (!rankUpdateQueue_.isEmpty())
+        {
+            Node n = rankUpdateQueue_.poll();
+            for (int e=0; e<dependents_.getDegree(n.getNodeIndex()); e++)
+            {
+                Node d = nodes_.get(dependents_.getTarget(n.getNodeIndex(), e));
+                if (d == dependency || --budget < 0)
+                {
+                    ranksValid_ = false;
+                    rankUpdateQueue_.clear();
+                    return;
+                }
+                if (d != null && nodeRanks_[d.getNodeIndex()] <= nodeRanks_[n.getNodeIndex()])
+                {
+                    nodeRanks_[d.getNodeIndex()] = nodeRanks_[n.getNodeIndex()] + 1;
+                    rankUpdateQueue_.add(d);
+                }
+            }
+        }
     }
 
     private void addNodeToReusableBuffer(Node node, Object evolveReason)
@@ -921,28 +2257,43 @@ public class Container
     {
         // TODO do not add if it already there for the same reason?
 
-        Map<Integer, List<Object>> dependents = node.getDependentIndices();
-        int dependentCollSize = dependents.size();
-        ensureIndexBufferSize(reusableNodeBuffer_.size() + dependentCollSize);
-        for (Integer i : dependents.keySet())
+        int nodeIndex = node.getNodeIndex();
+        int dependentCount = dependents_.getDegree(nodeIndex);
+        boolean ranked = evolveMode_ != EvolveMode.Fifo;
+        if (!ranked)
         {
-            Node dependent = nodes_.get(i.intValue());
-            List<Object> invokerRefRelPath = new CompactList<>(keys_, dependents.get(i));
-            // By convention, do not include property into what (get-reason) returns
-            invokerRefRelPath.remove(invokerRefRelPath.size()-1);
-
-            // TODO delegate reference to Clojure to parser
-            invokerRefRelPath = PersistentVector.create(invokerRefRelPath);
-
-            reusableNodeBuffer_.add(dependent);
-            reusableReasonBuffer_.add(invokerRefRelPath);
+            ensureIndexBufferSize(reusableNodeBuffer_.size() + dependentCount);
+        }
+        for (int e=0; e<dependentCount; e++)
+        {
+            Node dependent = nodes_.get(dependents_.getTarget(nodeIndex, e));
+            Object invokerRefRelPath = relPaths_.getReason(dependents_.getPayload(nodeIndex, e));
 
             if (debug_) logDebug("    Triggered dependent: " + dependent.getNodePath() + " referenced as " + invokerRefRelPath);
 
-            recordIndexBufferSize();
+            if (ranked)
+            {
+                addNodeToRankedQueue(dependent, invokerRefRelPath);
+            }
+            else
+            {
+                reusableNodeBuffer_.add(dependent);
+                reusableReasonBuffer_.add(invokerRefRelPath);
+                recordIndexBufferSize();
+            }
         }
     }
 
+    private Object createDependencyReason(List<Object> dependentRefRelPath)
+    {
+        List<Object> invokerRefRelPath = new CompactList<>(keys_, dependentRefRelPath);
+        // By convention, do not include property into what (get-reason) returns
+        invokerRefRelPath.remove(invokerRefRelPath.size()-1);
+
+        // TODO delegate reference to Clojure to parser
+        return PersistentVector.create(invokerRefRelPath);
+    }
+
     private void ensureIndexBufferSize(int requestedSize)
     {
         reusableNodeBuffer_.ensureCapacity(requestedSize);
@@ -963,6 +2314,18 @@ public class Container
         if (debug_) logDebug("=====Ended initialization cycle");
         initializedNodes_.clear();
         initializedNodes_ = null;
+        publishValueSnapshot();
+    }
+
+    private void publishValueSnapshot()
+    {
+        ValueSnapshot previous = valueSnapshot_;
+        PagedCowList<Object> values;
+        synchronized (this)
+        {
+            values = new PagedCowList<>(values_);
+        }
+        valueSnapshot_ = new ValueSnapshot(previous != null ? previous.getEpoch() + 1 : 0, values);
     }
 
     static void logDebug(String message)
@@ -1023,7 +2386,13 @@ public class Container
         for (Integer nodeIndex : nodeIndicesToNotifyConsumers_)
         {
             Node node = nodes_.get(nodeIndex.intValue());
-            for (IFGEvolveConsumer evolveConsumer : node.getEvolveConsumers())
+            Collection<IFGEvolveConsumer> evolveConsumers = getEvolveConsumers(nodeIndex.intValue());
+            if (node == null || evolveConsumers == null)
+            {
+                // Node has been removed after it had changed
+                continue;
+            }
+            for (IFGEvolveConsumer evolveConsumer : evolveConsumers)
             {
                 // This copy is safe to let consumer notifier thread read from it
                 Map<Object, Object> componentCopy = Collections.unmodifiableMap(getComponent(node.getComponentUid()));
@@ -1035,6 +2404,48 @@ public class Container
 
     // // //
 
+    /**
+     * Defines the order nodes are evaluated in within one evolve cycle
+     */
+    public enum EvolveMode
+    {
+        /**
+         * Nodes are evaluated in the order they are triggered; a node reachable from the changed one via
+         * several dependency paths is evaluated once per path
+         */
+        Fifo,
+
+        /**
+         * Nodes interested in the evolve reason itself are evaluated first, in the same order as in {@link #Fifo}
+         * mode. Nodes triggered by dependencies then are evaluated in topological rank order, each dirty node at
+         * most once per cycle (unless it belongs to a dependency cycle), so that it never observes partially
+         * updated dependencies. All reasons a node has been triggered for are collected and available
+         * via {@link ComponentAccessor#getEvolveReasons()}; (get-reason) returns the first one.
+         */
+        Ranked,
+
+        /**
+         * Same as {@link #Ranked}, but when nodes triggered by dependencies form several independent subgraphs
+         * that are large enough, those are evaluated concurrently (see {@link #setParallelEvolvePool}). Values
+         * each task evaluates are kept in the task, and are written to the container after all tasks complete;
+         * result collector is notified then in deterministic order. Evolvers are expected to read other
+         * components only via (get-property ...).
+         */
+        Parallel
+    }
+
+    private static final class AmbiguousDependency
+    {
+        private final Node dependent_;
+        private final DependencyInfo dependency_;
+
+        AmbiguousDependency(Node dependent, DependencyInfo dependency)
+        {
+            dependent_ = dependent;
+            dependency_ = dependency;
+        }
+    }
+
     public static class DependencyInfo
     {
         private final List<Object> relPath_;
@@ -1179,13 +2590,23 @@ public class Container
         void processComponentAfterIndexing(IComponent component);
 
         /**
-         * @param inputDependencies
+         * @return number of input channels known to this parser; input channels are numbered from 0, and there
+         *         may not be more than 32 of them
+         */
+        int getInputChannelCount();
+
+        /**
          * @param evolveReasonClass
-         * @return true if given inputDependencies list explicitly declares dependency on given class of evolveReason,
-         *         or if it is not known; false only if it is known that given inputDependencies does NOT
-         *         depend on given class of evolveReason
+         * @return number of input channel events of given class come from, or -1 if given class of evolveReason
+         *         does not belong to any input channel (in which case all evolvers are interested in it)
+         */
+        int getInputChannel(Class<?> evolveReasonClass);
+
+        /**
+         * @param inputDependencies
+         * @return bit mask of input channels given inputDependencies list explicitly declares dependency on
          */
-        boolean isInterestedIn(Collection<Object> inputDependencies, Class<?> evolveReasonClass);
+        int getInputChannelMask(Collection<Object> inputDependencies);
 
         boolean isWildcardPathElement(Object e);
 
@@ -1223,14 +2644,6 @@ public class Container
     {
         Integer indexOfPath(List<Object> path);
 
-        Map<Integer, GetPropertyDelegate> getDelegateByIdMap();
-
-        Map<Integer, Map<List<Object>, GetPropertyDelegate>> getDelegateByIdAndPathMap();
-
-        Map<Integer, Map<Keyword, GetPropertyDelegate>> getDelegateByIdAndPropertyMap();
-
-        Map<Integer, Map<List<Object>, Map<Keyword, GetPropertyDelegate>>> getDelegateByIdPathAndPropertyMap();
-
         ObjectMatrix<Object> getKeyMatrix();
     }
 
@@ -1239,6 +2652,43 @@ public class Container
         void setValue(int nodeIndex, Object newValue);
     }
 
+    /**
+     * Property values of a container published by evolver thread at the end of an evolve batch. Shares
+     * copy-on-write pages with the container, so publishing costs O(nodeCount/128), and evolver copies
+     * only the pages it writes to in the next batch.
+     */
+    public static final class ValueSnapshot implements IPropertyValueAccessor
+    {
+        private final long epoch_;
+        private final PagedCowList<Object> values_;
+
+        ValueSnapshot(long epoch, PagedCowList<Object> values)
+        {
+            epoch_ = epoch;
+            values_ = values;
+        }
+
+        /**
+         * @return number of the snapshot: 0 for the one published after initialization, increasing by one
+         *         with each evolve batch
+         */
+        public long getEpoch()
+        {
+            return epoch_;
+        }
+
+        public int size()
+        {
+            return values_.size();
+        }
+
+        @Override
+        public Object getPropertyValue(Integer index)
+        {
+            return index != null && index.intValue() < values_.size() ? values_.get(index.intValue()) : null;
+        }
+    }
+
     public static class ComponentAccessor implements IComponent
     {
         private final List<Object> componentPath_;
@@ -1246,35 +2696,52 @@ public class Container
         private final List<Object> values_;
         private List<Integer> childIndices_;
         private Map<Object, Integer> childIdToIndex_;
+        // Child indices may be shared with the component accessor this one has been copied from
+        private boolean childIndicesShared_;
 
         private Integer componentUid_;
 
-        private final Function<List<Object>, Object> globalIndexToValueProvider_;
+        private final Function<List<Object>, Integer> globalPathToIndex_;
 
         private Object currentEvolveReason_;
+        private List<Object> currentEvolveReasons_;
+        private boolean reasonRead_;
+        private boolean allReasonsRead_;
+        // Evolver being invoked for this component, for get-property calls to find their delegates
+        private IEvolverWrapper evolverContext_;
 
         private Object customData_;
 
-        public ComponentAccessor(List<Object> componentPath, List<Object> values, Function<List<Object>, Object> globalIndexToValueProvider)
+        private int[] evolvingNodeIndices_;
+        private int[][] inputChannelNodeIndices_;
+        private int inputChannelMask_;
+
+        public ComponentAccessor(List<Object> componentPath, List<Object> values, Function<List<Object>, Integer> globalPathToIndex)
         {
             componentPath_ = Collections.unmodifiableList(componentPath);
             propertyIdToIndex_ = new HashMap<>();
             values_ = Collections.unmodifiableList(values);
-            globalIndexToValueProvider_ = globalIndexToValueProvider;
+            globalPathToIndex_ = globalPathToIndex;
         }
 
-        ComponentAccessor(ComponentAccessor source, List<Object> values, Function<List<Object>, Object> globalIndexToValueProvider)
+        ComponentAccessor(ComponentAccessor source, List<Object> values, Function<List<Object>, Integer> globalPathToIndex)
         {
             componentPath_ = source.getComponentPath();
             propertyIdToIndex_ = source.getPropertyIdToIndex();
             values_ = Collections.unmodifiableList(values);
-            childIndices_ = new ArrayList<>(source.childIndices_);
-            childIdToIndex_ = new HashMap<>(source.childIdToIndex_);
+            childIndices_ = source.childIndices_;
+            childIdToIndex_ = source.childIdToIndex_;
+            childIndicesShared_ = true;
+            source.childIndicesShared_ = true;
             componentUid_ = source.componentUid_;
 
             customData_ = source.customData_;
 
-            globalIndexToValueProvider_ = globalIndexToValueProvider;
+            evolvingNodeIndices_ = source.evolvingNodeIndices_;
+            inputChannelNodeIndices_ = source.inputChannelNodeIndices_;
+            inputChannelMask_ = source.inputChannelMask_;
+
+            globalPathToIndex_ = globalPathToIndex;
         }
 
         public Object getId()
@@ -1282,11 +2749,32 @@ public class Container
             return componentPath_.get(componentPath_.size()-1);
         }
 
+        /**
+         * @param inputChannel input channel number as returned by {@link IContainerParser#getInputChannel(Class)}
+         * @return indices of this component's nodes that evolve for events of given input channel
+         */
+        int[] getInterestedNodeIndices(int inputChannel)
+        {
+            return inputChannel >= 0 ? inputChannelNodeIndices_[inputChannel] : evolvingNodeIndices_;
+        }
+
+        boolean isInterestedIn(int inputChannel)
+        {
+            return inputChannel >= 0 ? (inputChannelMask_ & (1 << inputChannel)) != 0 : evolvingNodeIndices_.length > 0;
+        }
+
+        void setInputChannelIndex(int[] evolvingNodeIndices, int[][] inputChannelNodeIndices, int inputChannelMask)
+        {
+            evolvingNodeIndices_ = evolvingNodeIndices;
+            inputChannelNodeIndices_ = inputChannelNodeIndices;
+            inputChannelMask_ = inputChannelMask;
+        }
+
         @Override
         public Object get(Object key)
         {
             Integer index = getPropertyIndex(key);
-            return index != null ? values_.get(index.intValue()) : null;
+            return index != null ? getValue(index) : null;
         }
 
         @Override
@@ -1437,6 +2925,7 @@ public class Container
         {
             childIndices_ = childIndices;
             childIdToIndex_ = childIdToIndex;
+            childIndicesShared_ = false;
         }
 
         void changeChildIndicesOrder(Collection<Integer> childIndices)
@@ -1455,12 +2944,14 @@ public class Container
 
         void addChildIndices(Collection<Integer> childIndices, Map<Object, Integer> childIdToIndex)
         {
+            ensureOwnChildIndices();
             childIndices_.addAll(childIndices);
             childIdToIndex_.putAll(childIdToIndex);
         }
 
         void removeChildIndices(Collection<Integer> childIndices, Collection<Object> childIds)
         {
+            ensureOwnChildIndices();
             childIndices_.removeAll(childIndices);
             for (Object id : childIds)
             {
@@ -1468,26 +2959,87 @@ public class Container
             }
         }
 
-        void setEvolveReason(Object reason)
+        private void ensureOwnChildIndices()
+        {
+            if (childIndicesShared_)
+            {
+                childIndices_ = new ArrayList<>(childIndices_);
+                childIdToIndex_ = new HashMap<>(childIdToIndex_);
+                childIndicesShared_ = false;
+            }
+        }
+
+        void setEvolveReason(Object reason, List<Object> allReasons)
         {
             currentEvolveReason_ = reason;
+            currentEvolveReasons_ = allReasons;
+            reasonRead_ = false;
+            allReasonsRead_ = false;
+        }
+
+        void setEvolverContext(IEvolverWrapper evolverContext)
+        {
+            evolverContext_ = evolverContext;
+        }
+
+        boolean isReasonRead()
+        {
+            return reasonRead_;
+        }
+
+        boolean isAllReasonsRead()
+        {
+            return allReasonsRead_;
         }
 
         // Methods immediately available for evolvers to implement get-property and get-reason
 
+        public IEvolverWrapper getEvolverContext()
+        {
+            return evolverContext_;
+        }
+
         public Object getNodeValueByIndex(Integer index)
         {
-            return values_.get(index);
+            return getValue(index);
         }
 
         public Object getEvolveReason()
         {
+            reasonRead_ = true;
             return currentEvolveReason_;
         }
 
+        /**
+         * @return all reasons current evolver has been triggered for in this cycle. Contains more than one
+         *         element only in {@link EvolveMode#Ranked} mode
+         */
+        public List<Object> getEvolveReasons()
+        {
+            allReasonsRead_ = true;
+            if (currentEvolveReasons_ != null)
+            {
+                return Collections.unmodifiableList(currentEvolveReasons_);
+            }
+            return Collections.singletonList(currentEvolveReason_);
+        }
+
         public Object getValueByAbsPath(List<Object> asbPath)
         {
-            return globalIndexToValueProvider_.apply(asbPath);
+            return getValue(globalPathToIndex_.apply(asbPath));
+        }
+
+        /**
+         * Reads through evolver context, if any, so that evolver being memoized records what it reads
+         */
+        private Object getValue(Integer index)
+        {
+            IEvolverWrapper evolverContext = evolverContext_;
+            if (evolverContext != null)
+            {
+                return evolverContext.getPropertyValue(index);
+            }
+            return index != null ? values_.get(index.intValue()) : null;
         }
     }
 
@@ -1512,30 +3064,6 @@ public class Container
             return container_.getPropertyValue(index);
         }
 
-        @Override
-        public Map<Integer, GetPropertyDelegate> getDelegateByIdMap()
-        {
-            return container_.delegateByIdMap_;
-        }
-
-        @Override
-        public Map<Integer, Map<List<Object>, GetPropertyDelegate>> getDelegateByIdAndPathMap()
-        {
-            return container_.delegateByIdAndPathMap_;
-        }
-
-        @Override
-        public Map<Integer, Map<Keyword, GetPropertyDelegate>> getDelegateByIdAndPropertyMap()
-        {
-            return container_.delegateByIdAndPropertyMap_;
-        }
-
-        @Override
-        public Map<Integer, Map<List<Object>, Map<Keyword, GetPropertyDelegate>>> getDelegateByIdPathAndPropertyMap()
-        {
-            return container_.delegateByIdPathAndPropertyMap_;
-        }
-
         @Override
         public ObjectMatrix<Object> getKeyMatrix()
         {
@@ -0,0 +1,315 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.core.engine;
+
+import clojure.lang.IFn;
+import clojure.lang.Keyword;
+import flatgui.core.IFGEvolveConsumer;
+
+import java.util.*;
+
+/**
+ * Evolver of a node as run by one container. Nodes are shared by containers created from one frozen
+ * template, so get-property delegates (that keep indices of accessed properties resolved in particular
+ * container) and evolve consumers are kept here. Delegates are in a flat table indexed by the slot of the getter
+ * within its evolver, so that a static getter finds its delegate with an array load. Container creates wrappers
+ * lazily, once node is evolved or consumed for the first time.
+ *
+ * @author Denis Lebedev
+ */
+class EvolverWrapper implements IEvolverWrapper
+{
+    private static final Object[] EMPTY_SLOT_ENTRIES = new Object[0];
+    private static final int[] EMPTY_SLOT_GETTER_IDS = new int[0];
+
+    private final EvolvingNode node_;
+    private final Container container_;
+    private final Container.IEvolverAccess evolverAccess_;
+
+    private final Set<GetPropertyDelegate> allDelegates_;
+
+    // Delegates by getter slot (see GetPropertyClojureFn), along with ids of the getters owning the slots. Getters
+    // that have no slot or find their slot taken by a getter of another function are kept in the map by getter id
+    private Object[] slotEntries_;
+    private int[] slotGetterIds_;
+    private Map<Integer, Object> otherGetterEntries_;
+    private Set<IFGEvolveConsumer> evolveConsumers_;
+
+    // Read set of the latest evolver invocation, recorded when container memoizes evolvers
+    private boolean recording_;
+    private boolean recordingMemoizable_;
+    private int[] readIndices_;
+    private int[] readVersions_;
+    private int readCount_;
+    private boolean memoValid_;
+    private boolean memoDependsOnReason_;
+    private Object memoReason_;
+
+    // Values written by the parallel evolve task that is invoking this evolver, not in container yet
+    private Map<Integer, Object> taskValues_;
+
+    EvolverWrapper(EvolvingNode node, Container container, Container.IEvolverAccess evolverAccess)
+    {
+        node_ = node;
+        container_ = container;
+        evolverAccess_ = evolverAccess;
+        allDelegates_ = new HashSet<>();
+        slotEntries_ = EMPTY_SLOT_ENTRIES;
+        slotGetterIds_ = EMPTY_SLOT_GETTER_IDS;
+    }
+
+    /**
+     * Evolver reads go through this wrapper only while evolver is running; other reads of the component
+     * (looks, consumers) read container values directly
+     */
+    Object apply(Container.ComponentAccessor component)
+    {
+        component.setEvolverContext(this);
+        try
+        {
+            return ((IFn)node_.getEvolverCode()).invoke(component);
+        }
+        finally
+        {
+            component.setEvolverContext(null);
+        }
+    }
+
+    /**
+     * Starts recording property values evolver reads. Memo is invalid until recording is finished
+     */
+    void beginRecording()
+    {
+        if (readIndices_ == null)
+        {
+            readIndices_ = new int[4];
+            readVersions_ = new int[4];
+        }
+        readCount_ = 0;
+        memoValid_ = false;
+        recording_ = true;
+        recordingMemoizable_ = true;
+    }
+
+    void setTaskValues(Map<Integer, Object> taskValues)
+    {
+        taskValues_ = taskValues;
+    }
+
+    Map<Integer, Object> getTaskValues()
+    {
+        return taskValues_;
+    }
+
+    boolean isRecording()
+    {
+        return recording_;
+    }
+
+    /**
+     * Records that evolver has referred a node that does not exist (yet), which memo cannot capture
+     */
+    void recordMissingRead()
+    {
+        recordingMemoizable_ = false;
+    }
+
+    void recordRead(int nodeIndex, int version)
+    {
+        if (readCount_ > 0 && readIndices_[readCount_-1] == nodeIndex)
+        {
+            return;
+        }
+        if (readCount_ == readIndices_.length)
+        {
+            readIndices_ = Arrays.copyOf(readIndices_, readCount_ * 2);
+            readVersions_ = Arrays.copyOf(readVersions_, readCount_ * 2);
+        }
+        readIndices_[readCount_] = nodeIndex;
+        readVersions_[readCount_] = version;
+        readCount_++;
+    }
+
+    /**
+     * @param memoizable false if evolver read something memo cannot capture, like all reasons of a ranked cycle
+     * @param reasonRead true if evolver read its evolve reason, so that memo is valid for the same reason only
+     */
+    void endRecording(boolean memoizable, boolean reasonRead, Object reason)
+    {
+        memoValid_ = memoizable && recordingMemoizable_;
+        memoDependsOnReason_ = reasonRead;
+        memoReason_ = reasonRead ? reason : null;
+        recording_ = false;
+    }
+
+    /**
+     * Stops recording without making memo valid, if recording has not been ended (e.g. evolver has failed)
+     */
+    void stopRecording()
+    {
+        recording_ = false;
+    }
+
+    /**
+     * @return true if evolver has been already invoked with exactly same input as it would get now for given reason,
+     *         so that it would evaluate to the value it has
+     */
+    boolean isMemoized(Object reason, int[] versions)
+    {
+        if (!memoValid_ || memoDependsOnReason_ && reason != memoReason_)
+        {
+            return false;
+        }
+        for (int i=0; i<readCount_; i++)
+        {
+            if (versions[readIndices_[i]] != readVersions_[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Object getPropertyValue(Integer index)
+    {
+        return container_.readValue(this, index);
+    }
+
+    void unlinkAllDelegates()
+    {
+        allDelegates_.forEach(d -> d.unlink());
+    }
+
+    void addEvolveConsumer(IFGEvolveConsumer evolveConsumer)
+    {
+        if (evolveConsumers_ == null)
+        {
+            evolveConsumers_ = new HashSet<>();
+        }
+        evolveConsumers_.add(evolveConsumer);
+    }
+
+    Collection<IFGEvolveConsumer> getEvolveConsumers()
+    {
+        return evolveConsumers_;
+    }
+
+    @Override
+    public GetPropertyDelegate getDelegateById(int getterSlot, int getterId)
+    {
+        GetPropertyDelegate delegate = getGetterEntry(getterSlot, getterId);
+        if (delegate == null)
+        {
+            delegate = createDelegate();
+            putGetterEntry(getterSlot, getterId, delegate);
+        }
+        return delegate;
+    }
+
+    @Override
+    public GetPropertyDelegate getDelegateByIdAndPath(int getterSlot, int getterId, List<Object> path)
+    {
+        Map<List<Object>, GetPropertyDelegate> pathToDelegate = getGetterEntry(getterSlot, getterId);
+        if (pathToDelegate == null)
+        {
+            pathToDelegate = new HashMap<>();
+            putGetterEntry(getterSlot, getterId, pathToDelegate);
+        }
+        GetPropertyDelegate delegate = pathToDelegate.get(path);
+        if (delegate == null)
+        {
+            delegate = createDelegate();
+            pathToDelegate.put(path, delegate);
+        }
+        return delegate;
+    }
+
+    @Override
+    public GetPropertyDelegate getDelegateByIdAndProperty(int getterSlot, int getterId, Keyword property)
+    {
+        Map<Keyword, GetPropertyDelegate> propertyToDelegate = getGetterEntry(getterSlot, getterId);
+        if (propertyToDelegate == null)
+        {
+            propertyToDelegate = new HashMap<>();
+            putGetterEntry(getterSlot, getterId, propertyToDelegate);
+        }
+        GetPropertyDelegate delegate = propertyToDelegate.get(property);
+        if (delegate == null)
+        {
+            delegate = createDelegate();
+            propertyToDelegate.put(property, delegate);
+        }
+        return delegate;
+    }
+
+    @Override
+    public GetPropertyDelegate getDelegateByIdPathAndProperty(int getterSlot, int getterId, List<Object> path, Keyword property)
+    {
+        Map<List<Object>, Map<Keyword, GetPropertyDelegate>> mapByPath = getGetterEntry(getterSlot, getterId);
+        if (mapByPath == null)
+        {
+            mapByPath = new HashMap<>();
+            putGetterEntry(getterSlot, getterId, mapByPath);
+        }
+        Map<Keyword, GetPropertyDelegate> propertyToDelegate = mapByPath.get(path);
+        if (propertyToDelegate == null)
+        {
+            propertyToDelegate = new HashMap<>();
+            mapByPath.put(path, propertyToDelegate);
+        }
+        GetPropertyDelegate delegate = propertyToDelegate.get(property);
+        if (delegate == null)
+        {
+            delegate = createDelegate();
+            propertyToDelegate.put(property, delegate);
+        }
+        return delegate;
+    }
+
+    private GetPropertyDelegate createDelegate()
+    {
+        GetPropertyDelegate delegate = new GetPropertyDelegate(node_.getEvolvedComponentPath(), evolverAccess_);
+        allDelegates_.add(delegate);
+        return delegate;
+    }
+
+    /**
+     * @return delegate (or map of delegates for dynamic getters) of given getter, or null if there is none yet
+     */
+    @SuppressWarnings("unchecked")
+    private <E> E getGetterEntry(int getterSlot, int getterId)
+    {
+        if (getterSlot >= 0 && getterSlot < slotEntries_.length && slotGetterIds_[getterSlot] == getterId)
+        {
+            return (E) slotEntries_[getterSlot];
+        }
+        return otherGetterEntries_ != null ? (E) otherGetterEntries_.get(Integer.valueOf(getterId)) : null;
+    }
+
+    private void putGetterEntry(int getterSlot, int getterId, Object entry)
+    {
+        if (getterSlot >= 0)
+        {
+            if (getterSlot >= slotEntries_.length)
+            {
+                int newLength = Math.max(getterSlot + 1, slotEntries_.length * 2);
+                slotEntries_ = Arrays.copyOf(slotEntries_, newLength);
+                slotGetterIds_ = Arrays.copyOf(slotGetterIds_, newLength);
+            }
+            if (slotEntries_[getterSlot] == null)
+            {
+                slotEntries_[getterSlot] = entry;
+                slotGetterIds_[getterSlot] = getterId;
+                return;
+            }
+        }
+        // Getter of unknown slot, or of a function that evolver calls (accessor or another evolver) having same slot
+        if (otherGetterEntries_ == null)
+        {
+            otherGetterEntries_ = new HashMap<>();
+        }
+        otherGetterEntries_.put(Integer.valueOf(getterId), entry);
+    }
+}
@@ -3,52 +3,25 @@
  */
 package flatgui.core.engine;
 
-import clojure.lang.IFn;
-import clojure.lang.Keyword;
-import flatgui.core.IFGEvolveConsumer;
 import flatgui.util.CompactList;
+import flatgui.util.ObjectMatrix;
 
 import java.util.*;
 import java.util.function.Consumer;
-import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
  * @author Denis Lebedev
  */
-public class EvolvingNode extends Node implements Function<Map<Object, Object>, Object>, IEvolverWrapper
+public class EvolvingNode extends Node
 {
-    private List<Dependency> dependencyIndices_;
-    private Set<IFGEvolveConsumer> evolveConsumers_;
-
     private final List<Object> evolvedComponentPath_;
 
-    private final Set<GetPropertyDelegate> allDelegates_;
-    private final Container.IEvolverAccess evolverAccess_;
-
-    public EvolvingNode(Integer componentUid, int parentComponentUid, Container.SourceNode sourceNode, int nodeUid, Container.IEvolverAccess evolverAccess)
+    public EvolvingNode(Integer componentUid, int parentComponentUid, Container.SourceNode sourceNode, int nodeUid, ObjectMatrix<Object> keyMatrix)
     {
         super(componentUid, parentComponentUid, sourceNode, nodeUid);
 
-        allDelegates_ = new HashSet<>();
-        evolverAccess_ = evolverAccess;
-
-        evolvedComponentPath_ = dropLast(sourceNode.getNodePath());
-    }
-
-    EvolvingNode(EvolvingNode source, Container.IEvolverAccess evolverAccess)
-    {
-        super(source);
-
-        dependencyIndices_ = new ArrayList<>(source.dependencyIndices_.size());
-        dependencyIndices_.addAll(source.dependencyIndices_.stream()
-                .collect(Collectors.toList()));
-
-        evolvedComponentPath_ = source.evolvedComponentPath_;
-
-        allDelegates_ = new HashSet<>();
-        evolverAccess_ = evolverAccess;
+        evolvedComponentPath_ = dropLast(keyMatrix, sourceNode.getNodePath());
     }
 
     @Override
@@ -65,7 +38,7 @@ public class EvolvingNode extends Node implements Function<Map<Object, Object>,
 
     private void findNodeIndices(Container.ComponentAccessor c, int pathIndex, Container.DependencyInfo d,
                                  List<Container.ComponentAccessor> components, Predicate<Object> isWildcard,
-                                 Consumer<Dependency> dependencyPostprocessor)
+                                 Consumer<Dependency> dependencyCollector)
     {
         List<Object> absPath = d.getAbsPath();
         int absPathSize = absPath.size();
@@ -81,7 +54,7 @@ public class EvolvingNode extends Node implements Function<Map<Object, Object>,
                 List<Integer> allChildIndices = c.getChildIndices();
                 for (Integer childIndex : allChildIndices)
                 {
-                    findNodeIndices(components.get(childIndex), pathIndex+1, d, components, isWildcard, dependencyPostprocessor);
+                    findNodeIndices(components.get(childIndex), pathIndex+1, d, components, isWildcard, dependencyCollector);
                 }
             }
             else
@@ -89,7 +62,7 @@ public class EvolvingNode extends Node implements Function<Map<Object, Object>,
                 Integer childIndex = c.getChildIndex(e);
                 if (childIndex != null)
                 {
-                    findNodeIndices(components.get(childIndex), pathIndex+1, d, components, isWildcard, dependencyPostprocessor);
+                    findNodeIndices(components.get(childIndex), pathIndex+1, d, components, isWildcard, dependencyCollector);
                 }
             }
         }
@@ -98,42 +71,21 @@ public class EvolvingNode extends Node implements Function<Map<Object, Object>,
             Integer propertyIndex = c.getPropertyIndex(e);
             if (propertyIndex != null)
             {
-                Dependency dependency = new Dependency(propertyIndex, d.getRelPath());
-                dependencyIndices_.add(dependency);
-                if (dependencyPostprocessor != null)
-                {
-                    dependencyPostprocessor.accept(dependency);
-                }
+                dependencyCollector.accept(new Dependency(propertyIndex, d.getRelPath()));
             }
         }
     }
 
     @Override
-    public void resolveDependencyIndices(List<Container.ComponentAccessor> components, Predicate<Object> isWildCard)
+    public Collection<Dependency> resolveDependencyIndices(List<Container.ComponentAccessor> components, Predicate<Object> isWildCard)
     {
         Collection<Container.DependencyInfo> relAndAbsDependencyPaths = sourceNode_.getRelAndAbsDependencyPaths();
-        dependencyIndices_ = new ArrayList<>(relAndAbsDependencyPaths.size());
+        Collection<Dependency> dependencies = new ArrayList<>(relAndAbsDependencyPaths.size());
         for (Container.DependencyInfo d : relAndAbsDependencyPaths)
         {
-            findNodeIndices(components.get(0), 1, d, components, isWildCard, null);
+            findNodeIndices(components.get(0), 1, d, components, isWildCard, dependencies::add);
         }
-    }
-
-    @Override
-    public Collection<Dependency> reevaluateAmbiguousDependencies(List<Container.ComponentAccessor> components, Predicate<Object> isWildCard)
-    {
-        Collection<Dependency> newlyAddedDependencies = new ArrayList<>();
-        for (Container.DependencyInfo d : sourceNode_.getRelAndAbsDependencyPaths())
-        {
-            findNodeIndices(components.get(0), 1, d, components, isWildCard, newlyAddedDependencies::add);
-        }
-        return newlyAddedDependencies;
-    }
-
-    @Override
-    public Collection<Dependency> getDependencyIndices()
-    {
-        return dependencyIndices_;
+        return dependencies;
     }
 
     @Override
@@ -143,144 +95,19 @@ public class EvolvingNode extends Node implements Function<Map<Object, Object>,
     }
 
     @Override
-    public Function<Map<Object, Object>, Object> getEvolver()
-    {
-        return this;
-    }
-
-    @Override
-    void forgetDependency(Integer nodeIndex)
-    {
-        for (int i=0; i<dependencyIndices_.size(); i++)
-        {
-            if (dependencyIndices_.get(i).getNodeIndex() == nodeIndex)
-            {
-                dependencyIndices_.remove(i);
-                break;
-            }
-        }
-
-        unlinkAllDelegates();
-    }
-
-    @Override
-    void addEvolveConsumer(IFGEvolveConsumer evolveConsumer)
-    {
-        if (evolveConsumers_ == null)
-        {
-            evolveConsumers_ = new HashSet<>();
-        }
-        evolveConsumers_.add(evolveConsumer);
-    }
-
-    @Override
-    Collection<IFGEvolveConsumer> getEvolveConsumers()
-    {
-        return evolveConsumers_;
-    }
-
-    // Evolver fn functionality
-
-    @Override
-    public Object apply(Map<Object, Object> component)
-    {
-        GetPropertyStaticClojureFn.visit(this);
-        return ((IFn)getEvolverCode()).invoke(component);
-    }
-
-    @Override
-    public GetPropertyDelegate getDelegateById(int getterId)
-    {
-        GetPropertyDelegate delegate = evolverAccess_.getDelegateByIdMap().get(getDelegateKey(getterId));
-        if (delegate == null)
-        {
-            delegate = createDelegate();
-            evolverAccess_.getDelegateByIdMap().put(getDelegateKey(getterId), delegate);
-        }
-        return delegate;
-    }
-
-    @Override
-    public GetPropertyDelegate getDelegateByIdAndPath(int getterId, List<Object> path)
-    {
-        Map<List<Object>, GetPropertyDelegate> pathToDelegate = evolverAccess_.getDelegateByIdAndPathMap().get(getDelegateKey(getterId));
-        if (pathToDelegate == null)
-        {
-            pathToDelegate = new HashMap<>();
-            evolverAccess_.getDelegateByIdAndPathMap().put(getDelegateKey(getterId), pathToDelegate);
-        }
-        GetPropertyDelegate delegate = pathToDelegate.get(path);
-        if (delegate == null)
-        {
-            delegate = createDelegate();
-            pathToDelegate.put(path, delegate);
-        }
-        return delegate;
-    }
-
-    @Override
-    public GetPropertyDelegate getDelegateByIdAndProperty(int getterId, Keyword property)
-    {
-        Map<Keyword, GetPropertyDelegate> propertyToDelegate = evolverAccess_.getDelegateByIdAndPropertyMap().get(getDelegateKey(getterId));
-        if (propertyToDelegate == null)
-        {
-            propertyToDelegate = new HashMap<>();
-            evolverAccess_.getDelegateByIdAndPropertyMap().put(getDelegateKey(getterId), propertyToDelegate);
-        }
-        GetPropertyDelegate delegate = propertyToDelegate.get(property);
-        if (delegate == null)
-        {
-            delegate = createDelegate();
-            propertyToDelegate.put(property, delegate);
-        }
-        return delegate;
-    }
-
-    @Override
-    public GetPropertyDelegate getDelegateByIdPathAndProperty(int getterId, List<Object> path, Keyword property)
-    {
-        Map<List<Object>, Map<Keyword, GetPropertyDelegate>> mapByPath = evolverAccess_.getDelegateByIdPathAndPropertyMap().get(getDelegateKey(getterId));
-        if (mapByPath == null)
-        {
-            mapByPath = new HashMap<>();
-            evolverAccess_.getDelegateByIdPathAndPropertyMap().put(getDelegateKey(getterId), mapByPath);
-        }
-        Map<Keyword, GetPropertyDelegate> propertyToDelegate = mapByPath.get(path);
-        if (propertyToDelegate == null)
-        {
-            propertyToDelegate = new HashMap<>();
-            mapByPath.put(path, propertyToDelegate);
-        }
-        GetPropertyDelegate delegate = propertyToDelegate.get(property);
-        if (delegate == null)
-        {
-            delegate = createDelegate();
-            propertyToDelegate.put(property, delegate);
-        }
-        return delegate;
-    }
-
-    void unlinkAllDelegates()
-    {
-        allDelegates_.forEach(d -> d.unlink());
-    }
-
-    private GetPropertyDelegate createDelegate()
+    public boolean hasEvolver()
     {
-        GetPropertyDelegate delegate = new GetPropertyDelegate(evolvedComponentPath_, evolverAccess_);
-        allDelegates_.add(delegate);
-        return delegate;
+        return true;
     }
 
-    private Integer getDelegateKey(int getterId)
+    List<Object> getEvolvedComponentPath()
     {
-        // TODO review number and add check
-        return Integer.valueOf((getNodeIndex() << 14) + getterId);
+        return evolvedComponentPath_;
     }
 
-    private List<Object> dropLast(List<Object> path)
+    private static List<Object> dropLast(ObjectMatrix<Object> keyMatrix, List<Object> path)
     {
-        List<Object> list  = new CompactList<>(evolverAccess_.getKeyMatrix(), path);
+        List<Object> list  = new CompactList<>(keyMatrix, path);
         list.remove(list.size()-1);
         return list;
     }
@@ -12,9 +12,18 @@ import clojure.lang.Keyword;
  */
 public class GetDynPropertyClojureFn extends GetPropertyClojureFn
 {
+    public GetDynPropertyClojureFn()
+    {
+    }
+
+    public GetDynPropertyClojureFn(int getterSlot)
+    {
+        super(getterSlot);
+    }
+
     @Override
-    protected GetPropertyDelegate getDelegate(Object path, Object property)
+    protected GetPropertyDelegate getDelegate(IEvolverWrapper evolverContext, Object path, Object property)
     {
-        return currentEvolverWrapper_.get().getDelegateByIdAndProperty(getterId_, (Keyword) property);
+        return evolverContext.getDelegateByIdAndProperty(getterSlot_, getterId_, (Keyword) property);
     }
 }
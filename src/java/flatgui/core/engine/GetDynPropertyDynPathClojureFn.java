@@ -14,9 +14,18 @@ import java.util.List;
  */
 public class GetDynPropertyDynPathClojureFn extends GetPropertyClojureFn
 {
+    public GetDynPropertyDynPathClojureFn()
+    {
+    }
+
+    public GetDynPropertyDynPathClojureFn(int getterSlot)
+    {
+        super(getterSlot);
+    }
+
     @Override
-    protected GetPropertyDelegate getDelegate(Object path, Object property)
+    protected GetPropertyDelegate getDelegate(IEvolverWrapper evolverContext, Object path, Object property)
     {
-        return currentEvolverWrapper_.get().getDelegateByIdPathAndProperty(getterId_, (List<Object>) path, (Keyword) property);
+        return evolverContext.getDelegateByIdPathAndProperty(getterSlot_, getterId_, (List<Object>) path, (Keyword) property);
     }
 }
@@ -17,33 +17,36 @@ public abstract class GetPropertyClojureFn extends AFunction
 
     protected final int getterId_;
 
-    protected static final ThreadLocal<IEvolverWrapper> currentEvolverWrapper_ = new ThreadLocal<>();
+    // Position of this getter among the getters of the evolver that contains it, assigned when evolver is compiled;
+    // -1 if not known
+    protected final int getterSlot_;
 
     public GetPropertyClojureFn()
+    {
+        this(-1);
+    }
+
+    public GetPropertyClojureFn(int getterSlot)
     {
         getterId_ = getNewId();
+        getterSlot_ = getterSlot;
     }
 
+    /**
+     * @param component accessor of the component being evolved; its evolver context tells which evolver invocation
+     *                  this getter is a part of, so there is no thread-bound state and evolvers of any container
+     *                  may run on any thread
+     */
     @Override
-    public Object invoke(Object path, Object property)
+    public Object invoke(Object component, Object path, Object property)
     {
-        GetPropertyDelegate delegate = getDelegate(path, property);
+        IEvolverWrapper evolverContext = ((Container.ComponentAccessor) component).getEvolverContext();
+        GetPropertyDelegate delegate = getDelegate(evolverContext, path, property);
         if (!delegate.isLinked())
         {
             delegate.link((List<Object>) path, property);
         }
-        return delegate.getProperty();
-    }
-
-    @Override
-    public Object invoke(Object component, Object path, Object property)
-    {
-        return invoke(path, property);
-    }
-
-    static void visit(IEvolverWrapper evolverWrapper)
-    {
-        currentEvolverWrapper_.set(evolverWrapper);
+        return delegate.getProperty(evolverContext);
     }
 
     private static int getNewId()
@@ -51,5 +54,5 @@ public abstract class GetPropertyClojureFn extends AFunction
         return counter_.incrementAndGet();
     }
 
-    protected abstract GetPropertyDelegate getDelegate(Object path, Object property);
+    protected abstract GetPropertyDelegate getDelegate(IEvolverWrapper evolverContext, Object path, Object property);
 }
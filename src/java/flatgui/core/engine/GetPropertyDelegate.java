@@ -25,9 +25,9 @@ public class GetPropertyDelegate
         evolverAccess_ = evolverAccess;
     }
 
-    Object getProperty()
+    Object getProperty(IEvolverWrapper evolverContext)
     {
-        return evolverAccess_.getPropertyValue(accessedPropertyIndex_);
+        return evolverContext.getPropertyValue(accessedPropertyIndex_);
     }
 
     boolean isLinked()
@@ -12,9 +12,18 @@ import java.util.List;
  */
 public class GetPropertyDynPathClojureFn extends GetPropertyClojureFn
 {
+    public GetPropertyDynPathClojureFn()
+    {
+    }
+
+    public GetPropertyDynPathClojureFn(int getterSlot)
+    {
+        super(getterSlot);
+    }
+
     @Override
-    protected GetPropertyDelegate getDelegate(Object path, Object property)
+    protected GetPropertyDelegate getDelegate(IEvolverWrapper evolverContext, Object path, Object property)
     {
-        return currentEvolverWrapper_.get().getDelegateByIdAndPath(getterId_, (List<Object>) path);
+        return evolverContext.getDelegateByIdAndPath(getterSlot_, getterId_, (List<Object>) path);
     }
 }
@@ -10,9 +10,18 @@ package flatgui.core.engine;
  */
 public class GetPropertyStaticClojureFn extends GetPropertyClojureFn
 {
+    public GetPropertyStaticClojureFn()
+    {
+    }
+
+    public GetPropertyStaticClojureFn(int getterSlot)
+    {
+        super(getterSlot);
+    }
+
     @Override
-    protected GetPropertyDelegate getDelegate(Object path, Object property)
+    protected GetPropertyDelegate getDelegate(IEvolverWrapper evolverContext, Object path, Object property)
     {
-        return currentEvolverWrapper_.get().getDelegateById(getterId_);
+        return evolverContext.getDelegateById(getterSlot_, getterId_);
     }
 }
@@ -0,0 +1,25 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.core.engine;
+
+/**
+ * Defines which input events may be merged together while they are waiting for evolver thread,
+ * and how. Only an event that is the last one in evolver queue may be merged with the next one,
+ * so coalescing never reorders events.
+ *
+ * @author Denis Lebedev
+ */
+public interface IEventCoalescingPolicy<E>
+{
+    /**
+     * @return key such that two consecutive events having equal keys may be coalesced, or null
+     *         if given event must be evolved as is
+     */
+    Object getCoalescingKey(E event);
+
+    /**
+     * @return event to evolve instead of queuedEvent and newEvent
+     */
+    E coalesce(E queuedEvent, E newEvent);
+}
@@ -12,11 +12,17 @@ import java.util.List;
  */
 public interface IEvolverWrapper
 {
-    GetPropertyDelegate getDelegateById(int getterId);
+    GetPropertyDelegate getDelegateById(int getterSlot, int getterId);
 
-    GetPropertyDelegate getDelegateByIdAndPath(int getterId, List<Object> path);
+    GetPropertyDelegate getDelegateByIdAndPath(int getterSlot, int getterId, List<Object> path);
 
-    GetPropertyDelegate getDelegateByIdAndProperty(int getterId, Keyword property);
+    GetPropertyDelegate getDelegateByIdAndProperty(int getterSlot, int getterId, Keyword property);
 
-    GetPropertyDelegate getDelegateByIdPathAndProperty(int getterId, List<Object> path, Keyword property);
+    GetPropertyDelegate getDelegateByIdPathAndProperty(int getterSlot, int getterId, List<Object> path, Keyword property);
+
+    /**
+     * @param index index of the node to read, or null if it does not exist
+     * @return value of given node as read by this evolver
+     */
+    Object getPropertyValue(Integer index);
 }
@@ -3,22 +3,19 @@
  */
 package flatgui.core.engine;
 
-import flatgui.core.IFGEvolveConsumer;
 import flatgui.util.CompactList;
 import flatgui.util.ObjectMatrix;
 
 import java.util.*;
-import java.util.function.Function;
 import java.util.function.Predicate;
 
 /**
- * Represents a property of a component (internal indexed)
+ * Represents a property of a component (internal indexed). Nodes are immutable so that containers created
+ * from one frozen template may share them; state that differs between containers (rank, get-property
+ * delegates, evolve consumers) is kept by the container.
  */
 public class Node
 {
-    private static final String NO_EVOLVER_MSG = "Should not be called since this node declares no evolver/dependencies";
-
-    // TODO most places that call getComponentUid will be good with primitive, revisit
     private final int componentUid_;
 
     private final int parentComponentUid_;
@@ -28,11 +25,6 @@ public class Node
     // TODO It should be enough to have /*done 1 instance of SourceNode per app (not for container)*/ and per cell prototype, not for each cell
     protected final Container.SourceNode sourceNode_;
 
-    // TODO Optimize:
-    // remove dependents covered by longer chains. Maybe not remove but just hide since longer chains may be provided
-    // by components that may be removed
-    private final Map<Integer, List<Object>> dependentIndexToRelPath_;
-
     // TODO closed sessions do not seem to be removed from memory
 
     public Node(
@@ -45,19 +37,9 @@ public class Node
         parentComponentUid_ = parentComponentUid;
         sourceNode_ = sourceNode;
         nodeUid_ = nodeUid;
-        dependentIndexToRelPath_ = new HashMap<>();
     }
 
-    Node(Node source)
-    {
-        componentUid_ = source.componentUid_;
-        parentComponentUid_ = source.parentComponentUid_;
-        sourceNode_ = source.sourceNode_;
-        nodeUid_ = source.nodeUid_;
-        dependentIndexToRelPath_ = new HashMap<>(source.dependentIndexToRelPath_);
-    }
-
-    public Integer getComponentUid()
+    public int getComponentUid()
     {
         return componentUid_;
     }
@@ -93,16 +75,15 @@ public class Node
     }
 
 
-    public Map<Integer, List<Object>> getDependentIndices()
-    {
-        return dependentIndexToRelPath_;
-    }
-
-    public void addDependent(Integer nodeIndex, List<Object> nodeAbsPath, List<Object> relPath, ObjectMatrix<Object> keyMatrix)
+    /**
+     * @return reference to this node as seen by given dependent: relative path it is referenced by,
+     *         with wildcards (:*) replaced by actual ids
+     */
+    public List<Object> createDependentReference(List<Object> dependentAbsPath, List<Object> relPath, ObjectMatrix<Object> keyMatrix)
     {
         List<Object> actualRef = new CompactList<>(keyMatrix, relPath);
         int nodePathSize = sourceNode_.getNodePath().size();
-        if (nodeAbsPath.size() < nodePathSize)
+        if (dependentAbsPath.size() < nodePathSize)
         {
             // Replace wildcards (:*) with actual child ids. Start from 1 not to replace *this
             for (int i=1; i<relPath.size(); i++)
@@ -110,14 +91,7 @@ public class Node
                 actualRef.set(i, sourceNode_.getNodePath().get(nodePathSize - relPath.size() + i));
             }
         }
-
-        if (Container.debug_) Container.logDebug(nodeUid_ + " " + sourceNode_.getNodePath() + " added dependent: " + nodeIndex + " " + nodeAbsPath + " referenced as " + relPath + " actual ref " + actualRef);
-        dependentIndexToRelPath_.put(nodeIndex, actualRef);
-    }
-
-    public void removeDependent(Integer nodeIndex)
-    {
-        dependentIndexToRelPath_.remove(nodeIndex);
+        return actualRef;
     }
 
     public Collection<Object> getInputDependencies()
@@ -130,18 +104,14 @@ public class Node
         return false;
     }
 
-    public void resolveDependencyIndices(List<Container.ComponentAccessor> components, Predicate<Object> isWildCard)
+    public Collection<Container.DependencyInfo> getRelAndAbsDependencyPaths()
     {
-        // No dependencies here, so do nothing
+        return sourceNode_.getRelAndAbsDependencyPaths();
     }
 
-    public Collection<Dependency> reevaluateAmbiguousDependencies(List<Container.ComponentAccessor> components, Predicate<Object> isWildCard)
-    {
-        throw new IllegalStateException(NO_EVOLVER_MSG);
-    }
-
-    public Collection<Dependency> getDependencyIndices()
+    public Collection<Dependency> resolveDependencyIndices(List<Container.ComponentAccessor> components, Predicate<Object> isWildCard)
     {
+        // No dependencies here
         return Collections.emptyList();
     }
 
@@ -150,24 +120,9 @@ public class Node
         return null;
     }
 
-    public Function<Map<Object, Object>, Object> getEvolver()
+    public boolean hasEvolver()
     {
-        return null;
-    }
-
-    void forgetDependency(Integer nodeIndex)
-    {
-        throw new IllegalStateException(NO_EVOLVER_MSG);
-    }
-
-    void addEvolveConsumer(IFGEvolveConsumer evolveConsumer)
-    {
-        throw new IllegalStateException(NO_EVOLVER_MSG);
-    }
-
-    Collection<IFGEvolveConsumer> getEvolveConsumers()
-    {
-        return Collections.emptyList();
+        return false;
     }
 
     public static class Dependency
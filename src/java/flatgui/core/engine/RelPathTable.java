@@ -0,0 +1,124 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.core.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Interned relative paths dependency edges are referenced by. Equal paths share one id; ids are
+ * reference counted and reused once all edges referencing the path are removed.
+ *
+ * Along with each path, the table keeps the evolve reason a dependent is triggered with when the node
+ * it references changes. The reason is created once when the path is interned, so propagating a change
+ * along an edge does not allocate.
+ *
+ * @author Denis Lebedev
+ */
+class RelPathTable
+{
+    private final Function<List<Object>, Object> reasonFactory_;
+    private final List<List<Object>> relPaths_;
+    private final List<Object> reasons_;
+    private final Map<List<Object>, Integer> relPathToId_;
+    private int[] refCounts_;
+    private int[] vacantIds_;
+    private int vacantIdCount_;
+
+    RelPathTable(Function<List<Object>, Object> reasonFactory)
+    {
+        reasonFactory_ = reasonFactory;
+        relPaths_ = new ArrayList<>();
+        reasons_ = new ArrayList<>();
+        relPathToId_ = new HashMap<>();
+        refCounts_ = new int[16];
+        vacantIds_ = new int[16];
+        vacantIdCount_ = 0;
+    }
+
+    RelPathTable(RelPathTable source, Function<List<Object>, Object> reasonFactory)
+    {
+        reasonFactory_ = reasonFactory;
+        relPaths_ = new ArrayList<>(source.relPaths_);
+        reasons_ = new ArrayList<>(source.reasons_);
+        relPathToId_ = new HashMap<>(source.relPathToId_);
+        refCounts_ = Arrays.copyOf(source.refCounts_, source.refCounts_.length);
+        vacantIds_ = Arrays.copyOf(source.vacantIds_, source.vacantIds_.length);
+        vacantIdCount_ = source.vacantIdCount_;
+    }
+
+    /**
+     * @return id of given path, incrementing its reference count
+     */
+    int acquire(List<Object> relPath)
+    {
+        Integer id = relPathToId_.get(relPath);
+        int i;
+        if (id != null)
+        {
+            i = id.intValue();
+        }
+        else
+        {
+            if (vacantIdCount_ > 0)
+            {
+                vacantIdCount_--;
+                i = vacantIds_[vacantIdCount_];
+                relPaths_.set(i, relPath);
+                reasons_.set(i, reasonFactory_.apply(relPath));
+            }
+            else
+            {
+                i = relPaths_.size();
+                relPaths_.add(relPath);
+                reasons_.add(reasonFactory_.apply(relPath));
+                if (i == refCounts_.length)
+                {
+                    refCounts_ = Arrays.copyOf(refCounts_, i * 2);
+                }
+            }
+            relPathToId_.put(relPath, Integer.valueOf(i));
+        }
+        refCounts_[i]++;
+        return i;
+    }
+
+    void release(int id)
+    {
+        refCounts_[id]--;
+        if (refCounts_[id] == 0)
+        {
+            relPathToId_.remove(relPaths_.get(id));
+            relPaths_.set(id, null);
+            reasons_.set(id, null);
+            if (vacantIdCount_ == vacantIds_.length)
+            {
+                vacantIds_ = Arrays.copyOf(vacantIds_, vacantIdCount_ * 2);
+            }
+            vacantIds_[vacantIdCount_++] = id;
+        }
+    }
+
+    List<Object> get(int id)
+    {
+        return relPaths_.get(id);
+    }
+
+    /**
+     * @return evolve reason dependents referencing a node by path with given id are triggered with
+     */
+    Object getReason(int id)
+    {
+        return reasons_.get(id);
+    }
+
+    int size()
+    {
+        return relPathToId_.size();
+    }
+}
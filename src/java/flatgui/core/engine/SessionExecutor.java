@@ -0,0 +1,550 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.core.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Executes tasks of one session one at a time in submission order, on threads of an executor that may be shared
+ * by many sessions (see {@link SessionScheduler}). Session has no thread of its own: while it has tasks it occupies
+ * one carrier thread for up to {@link #MAX_TASKS_PER_RUN} tasks and then yields it to other sessions.
+ *
+ * Tasks of a session see effects of all tasks started before them, same as with a single-thread executor.
+ *
+ * Each task waits in one of the {@link Lane}s. Lanes are served in priority order, and tasks of one lane are
+ * started in submission order. To keep lower lanes from starving, a task that has been waiting longer than
+ * starvation threshold (see {@link #setStarvationThresholdMillis}) is started before tasks of higher lanes that
+ * have been submitted after it. Tasks submitted without lane go to {@link Lane#Interactive}.
+ *
+ * Queue is unbounded for {@link #execute}, while {@link #offer} respects capacity of the lane (see
+ * {@link #setCapacity}), so callers may bound the tasks they can afford to shed, and still submit tasks that must
+ * not be lost.
+ *
+ * @author Denis Lebedev
+ */
+public class SessionExecutor extends AbstractExecutorService
+{
+    static final int MAX_TASKS_PER_RUN = 64;
+
+    static final long DFLT_STARVATION_THRESHOLD_MILLIS = 100;
+
+    /**
+     * Waiting lanes, from the highest priority to the lowest
+     */
+    public enum Lane
+    {
+        /**
+         * Input of the user, and tasks that keep session state consistent with it
+         */
+        Interactive,
+
+        /**
+         * Timer events like caret blinking
+         */
+        Timer,
+
+        /**
+         * Bulk updates pushed by server code or API, that may wait while the user is typing
+         */
+        Background
+    }
+
+    private static final Lane[] LANES = Lane.values();
+
+    private final String name_;
+    private final Executor carrier_;
+    private final Runnable terminationHook_;
+
+    // Indexed by lane ordinal
+    private final List<ConcurrentLinkedDeque<QueuedTask>> queues_;
+    private final AtomicInteger[] queueDepths_;
+    private volatile int capacity_;
+    private volatile long starvationThresholdNanos_;
+    private final AtomicBoolean scheduled_;
+    private final Runnable runTask_;
+
+    private volatile boolean shutdown_;
+    private final AtomicBoolean terminating_;
+    private final Object terminationLock_ = new Object();
+    private volatile boolean terminated_;
+
+    private final AtomicLong taskCount_;
+    private volatile long completedTaskCount_;
+    // Written by the task running thread only, which is one at a time
+    private volatile long busyTimeNanos_;
+    private volatile long maxTaskTimeNanos_;
+    private final AtomicLongArray laneQueueWaitNanos_;
+    private final AtomicLongArray laneCompletedTaskCounts_;
+
+    /**
+     * @param terminationHook invoked once executor has terminated, or null
+     */
+    SessionExecutor(String name, Executor carrier, Runnable terminationHook)
+    {
+        name_ = name;
+        carrier_ = carrier;
+        terminationHook_ = terminationHook;
+        queues_ = new ArrayList<>(LANES.length);
+        queueDepths_ = new AtomicInteger[LANES.length];
+        for (int i=0; i<LANES.length; i++)
+        {
+            queues_.add(new ConcurrentLinkedDeque<>());
+            queueDepths_[i] = new AtomicInteger();
+        }
+        capacity_ = Integer.MAX_VALUE;
+        starvationThresholdNanos_ = TimeUnit.MILLISECONDS.toNanos(DFLT_STARVATION_THRESHOLD_MILLIS);
+        scheduled_ = new AtomicBoolean();
+        terminating_ = new AtomicBoolean();
+        runTask_ = this::runTasks;
+        taskCount_ = new AtomicLong();
+        laneQueueWaitNanos_ = new AtomicLongArray(LANES.length);
+        laneCompletedTaskCounts_ = new AtomicLongArray(LANES.length);
+    }
+
+    public String getName()
+    {
+        return name_;
+    }
+
+    @Override
+    public void execute(Runnable task)
+    {
+        execute(Lane.Interactive, task);
+    }
+
+    public void execute(Lane lane, Runnable task)
+    {
+        if (task == null)
+        {
+            throw new NullPointerException();
+        }
+        queueDepths_[lane.ordinal()].incrementAndGet();
+        enqueue(lane, task);
+    }
+
+    public <T> Future<T> submit(Lane lane, Callable<T> task)
+    {
+        RunnableFuture<T> future = newTaskFor(task);
+        execute(lane, future);
+        return future;
+    }
+
+    /**
+     * Submits task to {@link Lane#Interactive} unless the number of tasks waiting there has reached capacity
+     *
+     * @return false if task has not been submitted because queue is full
+     */
+    public boolean offer(Runnable task)
+    {
+        return offer(Lane.Interactive, task);
+    }
+
+    /**
+     * Submits task for execution unless the number of tasks waiting in given lane has reached capacity
+     *
+     * @return false if task has not been submitted because lane is full
+     */
+    public boolean offer(Lane lane, Runnable task)
+    {
+        if (task == null)
+        {
+            throw new NullPointerException();
+        }
+        AtomicInteger queueDepth = queueDepths_[lane.ordinal()];
+        int depth;
+        do
+        {
+            depth = queueDepth.get();
+            if (depth >= capacity_)
+            {
+                return false;
+            }
+        }
+        while (!queueDepth.compareAndSet(depth, depth + 1));
+        enqueue(lane, task);
+        return true;
+    }
+
+    /**
+     * Removes given task if it is still waiting
+     *
+     * @return true if task has been removed, so it will not run
+     */
+    public boolean remove(Runnable task)
+    {
+        for (int i=0; i<LANES.length; i++)
+        {
+            for (QueuedTask queuedTask : queues_.get(i))
+            {
+                if (queuedTask.task_ == task)
+                {
+                    if (queues_.get(i).remove(queuedTask))
+                    {
+                        queueDepths_[i].decrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the number of tasks waiting in a lane beyond which {@link #offer} refuses new tasks for that lane
+     */
+    public void setCapacity(int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        capacity_ = capacity;
+    }
+
+    public int getCapacity()
+    {
+        return capacity_;
+    }
+
+    /**
+     * Sets how long a task may wait while tasks of higher lanes submitted after it are started first
+     */
+    public void setStarvationThresholdMillis(long thresholdMillis)
+    {
+        if (thresholdMillis < 0)
+        {
+            throw new IllegalArgumentException("Negative starvation threshold: " + thresholdMillis);
+        }
+        starvationThresholdNanos_ = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * @return the task submitted to given lane last if it has not been started yet, otherwise null
+     */
+    Runnable peekLastWaitingTask(Lane lane)
+    {
+        QueuedTask last = queues_.get(lane.ordinal()).peekLast();
+        return last != null ? last.task_ : null;
+    }
+
+    @Override
+    public void shutdown()
+    {
+        shutdown_ = true;
+        terminateIfIdle();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        shutdown_ = true;
+        List<Runnable> waitingTasks = new ArrayList<>();
+        for (int i=0; i<LANES.length; i++)
+        {
+            QueuedTask queuedTask;
+            while ((queuedTask = queues_.get(i).pollFirst()) != null)
+            {
+                queueDepths_[i].decrementAndGet();
+                waitingTasks.add(queuedTask.task_);
+            }
+        }
+        terminateIfIdle();
+        return waitingTasks;
+    }
+
+    @Override
+    public boolean isShutdown()
+    {
+        return shutdown_;
+    }
+
+    @Override
+    public boolean isTerminated()
+    {
+        return terminated_;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (terminationLock_)
+        {
+            while (!terminated_)
+            {
+                long nanosLeft = deadline - System.nanoTime();
+                if (nanosLeft <= 0)
+                {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(terminationLock_, nanosLeft);
+            }
+            return true;
+        }
+    }
+
+    // Metrics
+
+    /**
+     * @return number of tasks waiting to be started
+     */
+    public int getQueueDepth()
+    {
+        int depth = 0;
+        for (AtomicInteger queueDepth : queueDepths_)
+        {
+            depth += queueDepth.get();
+        }
+        return depth;
+    }
+
+    public int getQueueDepth(Lane lane)
+    {
+        return queueDepths_[lane.ordinal()].get();
+    }
+
+    /**
+     * @return how long the oldest of the tasks waiting to be started has been waiting, or 0 if there are none
+     */
+    public long getOldestWaitNanos()
+    {
+        long oldestWait = 0;
+        for (Lane lane : LANES)
+        {
+            oldestWait = Math.max(oldestWait, getOldestWaitNanos(lane));
+        }
+        return oldestWait;
+    }
+
+    public long getOldestWaitNanos(Lane lane)
+    {
+        QueuedTask first = queues_.get(lane.ordinal()).peekFirst();
+        return first != null ? Math.max(System.nanoTime() - first.enqueuedNanos_, 0) : 0;
+    }
+
+    /**
+     * @return total time started tasks have been waiting in queue
+     */
+    public long getQueueWaitNanos()
+    {
+        long queueWait = 0;
+        for (Lane lane : LANES)
+        {
+            queueWait += getQueueWaitNanos(lane);
+        }
+        return queueWait;
+    }
+
+    /**
+     * @return total time started tasks of given lane have been waiting in queue; together with
+     *         {@link #getCompletedTaskCount(Lane)} gives average latency of the lane
+     */
+    public long getQueueWaitNanos(Lane lane)
+    {
+        return laneQueueWaitNanos_.get(lane.ordinal());
+    }
+
+    /**
+     * @return number of tasks submitted since executor has been created
+     */
+    public long getTaskCount()
+    {
+        return taskCount_.get();
+    }
+
+    public long getCompletedTaskCount()
+    {
+        return completedTaskCount_;
+    }
+
+    public long getCompletedTaskCount(Lane lane)
+    {
+        return laneCompletedTaskCounts_.get(lane.ordinal());
+    }
+
+    /**
+     * @return total time spent running tasks
+     */
+    public long getBusyTimeNanos()
+    {
+        return busyTimeNanos_;
+    }
+
+    /**
+     * @return run time of the longest task so far
+     */
+    public long getMaxTaskTimeNanos()
+    {
+        return maxTaskTimeNanos_;
+    }
+
+    // Private
+
+    private void enqueue(Lane lane, Runnable task)
+    {
+        ConcurrentLinkedDeque<QueuedTask> queue = queues_.get(lane.ordinal());
+        AtomicInteger queueDepth = queueDepths_[lane.ordinal()];
+        if (shutdown_)
+        {
+            queueDepth.decrementAndGet();
+            throw new RejectedExecutionException(name_ + " has been shut down");
+        }
+        QueuedTask queuedTask = new QueuedTask(task, System.nanoTime());
+        queue.addLast(queuedTask);
+        if (terminating_.get() && queue.removeLastOccurrence(queuedTask))
+        {
+            // Executor has terminated concurrently with this call
+            queueDepth.decrementAndGet();
+            throw new RejectedExecutionException(name_ + " has been shut down");
+        }
+        taskCount_.incrementAndGet();
+        schedule();
+    }
+
+    private void schedule()
+    {
+        if (scheduled_.compareAndSet(false, true))
+        {
+            try
+            {
+                carrier_.execute(runTask_);
+            }
+            catch (RejectedExecutionException ex)
+            {
+                scheduled_.set(false);
+                throw ex;
+            }
+        }
+    }
+
+    private boolean hasWaitingTasks()
+    {
+        for (ConcurrentLinkedDeque<QueuedTask> queue : queues_)
+        {
+            if (!queue.isEmpty())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return ordinal of the lane to take next task from: the highest lane that has tasks, unless a lower lane
+     *         has a task that is starving and has been submitted before; -1 if there are no tasks
+     */
+    private int selectLane()
+    {
+        int selected = -1;
+        long selectedEnqueuedNanos = 0;
+        long starvingSince = System.nanoTime() - starvationThresholdNanos_;
+        for (int i=0; i<LANES.length; i++)
+        {
+            QueuedTask first = queues_.get(i).peekFirst();
+            if (first != null)
+            {
+                if (selected < 0)
+                {
+                    selected = i;
+                    selectedEnqueuedNanos = first.enqueuedNanos_;
+                }
+                else if (first.enqueuedNanos_ - starvingSince < 0 && first.enqueuedNanos_ - selectedEnqueuedNanos < 0)
+                {
+                    selected = i;
+                    selectedEnqueuedNanos = first.enqueuedNanos_;
+                }
+            }
+        }
+        return selected;
+    }
+
+    private void runTasks()
+    {
+        int lane;
+        int count = 0;
+        while (count < MAX_TASKS_PER_RUN && (lane = selectLane()) >= 0)
+        {
+            // Task may have been removed after lane has been selected
+            QueuedTask queuedTask = queues_.get(lane).pollFirst();
+            if (queuedTask == null)
+            {
+                continue;
+            }
+            queueDepths_[lane].decrementAndGet();
+            long start = System.nanoTime();
+            laneQueueWaitNanos_.addAndGet(lane, start - queuedTask.enqueuedNanos_);
+            try
+            {
+                queuedTask.task_.run();
+            }
+            catch (Throwable ex)
+            {
+                ex.printStackTrace();
+            }
+            finally
+            {
+                long taskTime = System.nanoTime() - start;
+                busyTimeNanos_ += taskTime;
+                if (taskTime > maxTaskTimeNanos_)
+                {
+                    maxTaskTimeNanos_ = taskTime;
+                }
+                completedTaskCount_++;
+                laneCompletedTaskCounts_.incrementAndGet(lane);
+            }
+            count++;
+        }
+        scheduled_.set(false);
+        if (hasWaitingTasks())
+        {
+            schedule();
+        }
+        else
+        {
+            terminateIfIdle();
+        }
+    }
+
+    private void terminateIfIdle()
+    {
+        if (shutdown_ && !scheduled_.get() && !hasWaitingTasks() && terminating_.compareAndSet(false, true))
+        {
+            if (terminationHook_ != null)
+            {
+                terminationHook_.run();
+            }
+            synchronized (terminationLock_)
+            {
+                terminated_ = true;
+                terminationLock_.notifyAll();
+            }
+        }
+    }
+
+    private static final class QueuedTask
+    {
+        private final Runnable task_;
+        private final long enqueuedNanos_;
+
+        QueuedTask(Runnable task, long enqueuedNanos)
+        {
+            task_ = task;
+            enqueuedNanos_ = enqueuedNanos;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.core.engine;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates {@link SessionExecutor}s that run tasks of application sessions (evolver, consumer notifier, transport).
+ * By default all sessions run on one work-stealing pool sized to the number of cores, so an idle session costs
+ * no thread. Alternatively, sessions may run on virtual threads where the runtime has them, or on dedicated
+ * threads like before.
+ *
+ * @author Denis Lebedev
+ */
+public class SessionScheduler
+{
+    private static final Object defaultLock_ = new Object();
+    private static volatile SessionScheduler default_;
+
+    // Null if each session gets a dedicated thread
+    private final Executor sharedExecutor_;
+
+    private final Set<SessionExecutor> sessionExecutors_;
+    private final Set<SessionExecutor> evolverExecutors_;
+
+    /**
+     * @param sharedExecutor executor to run sessions on. It is expected to have a thread available for each
+     *                       session that has tasks, or to compensate threads blocked by sessions waiting for one
+     *                       another (like ForkJoinPool does for {@link #await})
+     */
+    public SessionScheduler(Executor sharedExecutor)
+    {
+        sharedExecutor_ = Objects.requireNonNull(sharedExecutor);
+        sessionExecutors_ = ConcurrentHashMap.newKeySet();
+        evolverExecutors_ = ConcurrentHashMap.newKeySet();
+    }
+
+    private SessionScheduler()
+    {
+        sharedExecutor_ = null;
+        sessionExecutors_ = ConcurrentHashMap.newKeySet();
+        evolverExecutors_ = ConcurrentHashMap.newKeySet();
+    }
+
+    public static SessionScheduler createSharedPool(int parallelism)
+    {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ForkJoinPool pool = new ForkJoinPool(
+                parallelism,
+                p -> {
+                    ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                    t.setName("FlatGUI Session Worker " + threadNumber.getAndIncrement());
+                    return t;
+                },
+                null,
+                true);
+        return new SessionScheduler(pool);
+    }
+
+    /**
+     * @throws UnsupportedOperationException if runtime has no virtual threads
+     */
+    public static SessionScheduler createVirtualThreads()
+    {
+        try
+        {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new SessionScheduler((Executor) factory.invoke(null));
+        }
+        catch (ReflectiveOperationException ex)
+        {
+            throw new UnsupportedOperationException("Virtual threads are not available in this runtime", ex);
+        }
+    }
+
+    /**
+     * Creates scheduler that gives each session executor a thread of its own
+     */
+    public static SessionScheduler createDedicatedThreads()
+    {
+        return new SessionScheduler();
+    }
+
+    /**
+     * @return scheduler used by sessions that have not been given another one; shared pool sized to the number
+     *         of cores unless set otherwise with {@link #setDefault}
+     */
+    public static SessionScheduler getDefault()
+    {
+        SessionScheduler scheduler = default_;
+        if (scheduler == null)
+        {
+            synchronized (defaultLock_)
+            {
+                if (default_ == null)
+                {
+                    default_ = createSharedPool(Runtime.getRuntime().availableProcessors());
+                }
+                scheduler = default_;
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Sets scheduler for sessions created afterwards
+     */
+    public static void setDefault(SessionScheduler scheduler)
+    {
+        synchronized (defaultLock_)
+        {
+            default_ = scheduler;
+        }
+    }
+
+    /**
+     * @param namePrefix  used to name the executor (and its thread if it has one) together with session id
+     */
+    public SessionExecutor newSessionExecutor(String namePrefix, String sessionId)
+    {
+        return newSessionExecutor(namePrefix, sessionId, false);
+    }
+
+    /**
+     * Creates executor for evolver of a session. Unlike other executors of the session, its queue latency
+     * is what {@link #getMaxEvolverOldestWaitNanos} reports.
+     *
+     * @param namePrefix  used to name the executor (and its thread if it has one) together with session id
+     */
+    public SessionExecutor newEvolverExecutor(String namePrefix, String sessionId)
+    {
+        return newSessionExecutor(namePrefix, sessionId, true);
+    }
+
+    private SessionExecutor newSessionExecutor(String namePrefix, String sessionId, boolean evolver)
+    {
+        SessionExecutor[] executor = new SessionExecutor[1];
+        Runnable unregister = () -> {sessionExecutors_.remove(executor[0]); evolverExecutors_.remove(executor[0]);};
+        Runnable onTerminated;
+        Executor carrier;
+        if (sharedExecutor_ != null)
+        {
+            carrier = sharedExecutor_;
+            onTerminated = unregister;
+        }
+        else
+        {
+            ThreadPoolExecutor thread = new ThreadPoolExecutor(1, 1,
+                    0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(),
+                    new FGExecutorThreadFactory(namePrefix, sessionId));
+            carrier = thread;
+            onTerminated = () -> {unregister.run(); thread.shutdown();};
+        }
+        executor[0] = new SessionExecutor(namePrefix + sessionId, carrier, onTerminated);
+        sessionExecutors_.add(executor[0]);
+        if (evolver)
+        {
+            evolverExecutors_.add(executor[0]);
+        }
+        return executor[0];
+    }
+
+    /**
+     * @return executors of this scheduler that have not terminated yet
+     */
+    public Collection<SessionExecutor> getSessionExecutors()
+    {
+        return Collections.unmodifiableSet(sessionExecutors_);
+    }
+
+    /**
+     * @return number of tasks waiting in all executors of this scheduler
+     */
+    public int getTotalQueueDepth()
+    {
+        int depth = 0;
+        for (SessionExecutor e : sessionExecutors_)
+        {
+            depth += e.getQueueDepth();
+        }
+        return depth;
+    }
+
+    /**
+     * @return evolver queue latency of the worst session of this scheduler: how long the oldest waiting task
+     *         of any evolver executor (see {@link #newEvolverExecutor}) has been waiting. Taking the maximum
+     *         rather than the average keeps one stalled session visible among any number of idle ones
+     */
+    public long getMaxEvolverOldestWaitNanos()
+    {
+        long oldestWait = 0;
+        for (SessionExecutor e : evolverExecutors_)
+        {
+            oldestWait = Math.max(oldestWait, e.getOldestWaitNanos());
+        }
+        return oldestWait;
+    }
+
+    /**
+     * Waits for given task of another session. When called on a shared pool thread, lets the pool add a thread
+     * while this one is blocked, so that sessions waiting for one another cannot exhaust the pool.
+     */
+    public static <T> T await(Future<T> future) throws ExecutionException, InterruptedException
+    {
+        if (!future.isDone())
+        {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker()
+            {
+                @Override
+                public boolean block() throws InterruptedException
+                {
+                    try
+                    {
+                        future.get();
+                    }
+                    catch (ExecutionException ex)
+                    {
+                        // Rethrown below
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable()
+                {
+                    return future.isDone();
+                }
+            });
+        }
+        return future.get();
+    }
+}
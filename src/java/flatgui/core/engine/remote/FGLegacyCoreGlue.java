@@ -144,6 +144,18 @@ public class FGLegacyCoreGlue implements IFGContainer, IFGModule
         return container_.evolveRemote(targetCellIdPath, evolveReason);
     }
 
+    @Override
+    public Future<FGEvolveResultData> feedEvents(List<Object> evolveReasons)
+    {
+        return container_.evolveRemoteBatch(evolveReasons);
+    }
+
+    @Override
+    public Future<FGEvolveResultData> feedTargetedEvents(List<Keyword> targetCellIdPath, List<Object> evolveReasons)
+    {
+        return container_.evolveRemoteBatch(targetCellIdPath, evolveReasons);
+    }
+
     @Override
     public <T> Future<T> submitTask(Callable<T> callable)
     {
@@ -165,6 +177,12 @@ public class FGLegacyCoreGlue implements IFGContainer, IFGModule
 
     }
 
+    @Override
+    public long getCoalescedEventCount()
+    {
+        return container_.getCoalescedEventCount();
+    }
+
     @Override
     public void initialize()
     {
@@ -82,7 +82,8 @@ public class FGAWTAppContainer extends FGAppContainer<FGWebInteropUtil>
     public final void paintAllFromRoot(Consumer<List<Object>> primitivePainter) throws NoninvertibleTransformException
     {
         Container.IContainerAccessor containerAccessor = getContainer().getContainerAccessor();
-        Container.IPropertyValueAccessor propertyValueAccessor = getContainer().getPropertyValueAccessor();
+        // Paint on EDT must neither wait for evolver thread nor see a partially evolved state
+        Container.IPropertyValueAccessor propertyValueAccessor = getContainer().getValueSnapshot();
         getResultCollector().paintComponentWithChildren(
                 primitivePainter,
                 containerAccessor,
@@ -7,12 +7,14 @@ import clojure.lang.Associative;
 import clojure.lang.Keyword;
 import flatgui.core.FGClipboardEvent;
 import flatgui.core.FGHostStateEvent;
+import flatgui.core.FGTimerEvent;
 import flatgui.core.IFGEvolveConsumer;
 import flatgui.core.IFGInteropUtil;
 import flatgui.core.awt.FGIncomingMouseWheelEvent;
 import flatgui.core.engine.AppContainer;
 import flatgui.core.engine.Container;
 import flatgui.core.engine.IInputEventParser;
+import flatgui.core.engine.SessionExecutor;
 
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
@@ -70,6 +72,13 @@ public class FGAppContainer<Interop extends IFGInteropUtil> extends AppContainer
             return m;
         });
         getInputEventParser().registerReasonClassParser(FGClipboardEvent.class, new FGClipboardEventEventParser());
+
+        registerCoalescingPolicy(MouseEvent.class, new FGMouseMoveCoalescingPolicy());
+        FGMouseWheelCoalescingPolicy mouseWheelCoalescingPolicy = new FGMouseWheelCoalescingPolicy();
+        registerCoalescingPolicy(MouseWheelEvent.class, mouseWheelCoalescingPolicy);
+        registerCoalescingPolicy(FGIncomingMouseWheelEvent.class, mouseWheelCoalescingPolicy);
+
+        setEventLane(FGTimerEvent.class, SessionExecutor.Lane.Timer);
     }
 
     @Override
@@ -4,7 +4,6 @@
 package flatgui.core.engine.ui;
 
 import clojure.lang.Keyword;
-import clojure.lang.PersistentHashMap;
 import clojure.lang.Var;
 import flatgui.core.awt.FGDefaultPrimitivePainter;
 import flatgui.core.engine.Container;
@@ -19,6 +18,8 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.Consumer;
 
 /**
@@ -29,6 +30,12 @@ public class FGClojureResultCollector implements IResultCollector, ClipboardOwne
     private static final Keyword VISIBLE_POPUP_KW = Keyword.intern("_visible-popup");
     private static final Keyword TO_CLIPBOARD_KW = Keyword.intern("->clipboard");
     protected static final Keyword CURSOR_KW = Keyword.intern("cursor");
+    private static final Keyword LOOK_KW = Keyword.intern("look");
+    private static final Keyword FONT_KW = Keyword.intern("font");
+
+    // Fewer look rebuilds per cycle are not worth handing over to other threads
+    static final int PARALLEL_LOOK_REBUILD_THRESHOLD = 64;
+    private static final int PARALLEL_LOOK_REBUILD_CHUNK = 16;
 
 
     //private static final String FG_NS = "flatgui.core";
@@ -38,26 +45,43 @@ public class FGClojureResultCollector implements IResultCollector, ClipboardOwne
 
     private final Map<Integer, Set<Integer>> parentToVisiblePopupChildCount_;
 
-    private final Set<Integer> changedComponents_;
+    // Changed component uid -> properties changed in current evolve cycle
+    private final Map<Integer, Set<Object>> changedComponents_;
 
     private final List<List<Object>> lookVectors_;
 
+    // Properties read by look function when look vector has been built, or null if look may depend on all of them
+    private final List<Set<Object>> lookInputs_;
+
+    private volatile FGLookCache lookCache_;
+    private volatile ForkJoinPool parallelLookRebuildPool_;
+    private volatile long parallelLookRebuildCycleCount_;
+
+    private volatile int lastCycleLookRebuildCount_;
+    private volatile int lastCycleSkippedLookRebuildCount_;
+    private volatile long skippedLookRebuildCount_;
+
     private volatile boolean cursorHasChanged_;
     private volatile Keyword latestCursor_;
 
     public FGClojureResultCollector(int unitSizePx)
     {
-        changedComponents_ = new HashSet<>();
+        changedComponents_ = new HashMap<>();
         parentToVisiblePopupChildCount_ = new HashMap<>();
         lookVectors_ = new ArrayList<>();
+        lookInputs_ = new ArrayList<>();
+        lookCache_ = FGLookCache.getDefault();
         unitSizePx_ = unitSizePx;
     }
 
     public FGClojureResultCollector(FGClojureResultCollector source)
     {
-        changedComponents_ = new HashSet<>();
+        changedComponents_ = new HashMap<>();
         parentToVisiblePopupChildCount_ = new HashMap<>(source.parentToVisiblePopupChildCount_);
         lookVectors_ = new ArrayList<>(source.lookVectors_);
+        lookInputs_ = new ArrayList<>(source.lookInputs_);
+        lookCache_ = source.lookCache_;
+        parallelLookRebuildPool_ = source.parallelLookRebuildPool_;
         unitSizePx_ = source.unitSizePx_;
     }
 
@@ -70,6 +94,7 @@ public class FGClojureResultCollector implements IResultCollector, ClipboardOwne
             for (int i=0; i<add; i++)
             {
                 lookVectors_.add(null);
+                lookInputs_.add(null);
             }
         }
     }
@@ -78,6 +103,7 @@ public class FGClojureResultCollector implements IResultCollector, ClipboardOwne
     public void componentRemoved(Integer componentUid)
     {
         lookVectors_.set(componentUid.intValue(), null);
+        lookInputs_.set(componentUid.intValue(), null);
         parentToVisiblePopupChildCount_.remove(componentUid);
         changedComponents_.remove(componentUid);
         changedComponentsForRemote_.remove(componentUid);
@@ -94,7 +120,13 @@ public class FGClojureResultCollector implements IResultCollector, ClipboardOwne
         Integer componentUid = node.getComponentUid();
         Object property = node.getPropertyId();
 
-        changedComponents_.add(componentUid);
+        Set<Object> changedProperties = changedComponents_.get(componentUid);
+        if (changedProperties == null)
+        {
+            changedProperties = new HashSet<>();
+            changedComponents_.put(componentUid, changedProperties);
+        }
+        changedProperties.add(property);
         changedComponentsForRemote_.add(componentUid);
 
         // TODO
@@ -137,24 +169,54 @@ public class FGClojureResultCollector implements IResultCollector, ClipboardOwne
     @Override
     public void postProcessAfterEvolveCycle(Container.IContainerAccessor containerAccessor, Container.IContainerMutator containerMutator)
     {
-        // TODO (*1) maybe rework deflookfn to utilize indexed access to properties
+        // Look vector is rebuilt only for components where some of the properties read by look function
+        // when it was built last time have changed
 
         //System.out.println("-DLTEMP- (1)FGClojureResultCollector.postProcessAfterEvolveCycle " + changedComponents_);
-        for (Integer changedComponentUid : changedComponents_)
+        List<LookRebuild> lookRebuilds = new ArrayList<>(changedComponents_.size());
+        int skippedLookRebuildCount = 0;
+        for (Map.Entry<Integer, Set<Object>> changedComponent : changedComponents_.entrySet())
         {
-            Container.IComponent componentAccessor = containerAccessor.getComponent(changedComponentUid.intValue());
-            FGClojureContainerParser.FGComponentDataCache componentDataCache =
-                    (FGClojureContainerParser.FGComponentDataCache) componentAccessor.getCustomData();
+            Integer changedComponentUid = changedComponent.getKey();
+            Set<Object> lookInputs = changedComponentUid.intValue() < lookInputs_.size()
+                    ? lookInputs_.get(changedComponentUid.intValue()) : null;
+            if (lookInputs != null && Collections.disjoint(lookInputs, changedComponent.getValue()))
+            {
+                skippedLookRebuildCount++;
+                continue;
+            }
+            lookRebuilds.add(new LookRebuild(changedComponentUid,
+                    containerAccessor.getComponent(changedComponentUid.intValue()), lookInputs));
+        }
 
-            // TODO creating Clojure map should not be needed after (*1)
-            Object componentClj = PersistentHashMap.create(componentAccessor);
-            //Object lookResult = rebuildLook_.invoke(componentClj);
-            //System.out.println("-DLTEMP- (2)FGClojureResultCollector.postProcessAfterEvolveCycle " + changedComponentUid + " " + lookResult);
-            List<Object> lookVec = (List<Object>) rebuildLook_.invoke(componentClj);
+        ForkJoinPool parallelLookRebuildPool = parallelLookRebuildPool_;
+        if (parallelLookRebuildPool != null && lookRebuilds.size() >= PARALLEL_LOOK_REBUILD_THRESHOLD)
+        {
+            rebuildLooksInParallel(parallelLookRebuildPool, lookRebuilds);
+        }
+        else
+        {
+            for (LookRebuild lookRebuild : lookRebuilds)
+            {
+                rebuildLook(lookRebuild);
+            }
+        }
+
+        // Results are applied in the same order whether looks have been rebuilt in parallel or not
+        for (LookRebuild lookRebuild : lookRebuilds)
+        {
+            Integer changedComponentUid = lookRebuild.componentUid_;
+            List<Object> lookVec = lookRebuild.lookVec_;
+            if (changedComponentUid.intValue() < lookInputs_.size())
+            {
+                lookInputs_.set(changedComponentUid.intValue(), lookRebuild.readProperties_);
+            }
             List<Object> oldLookVec = changedComponentUid.intValue() < lookVectors_.size()
                     ? lookVectors_.get(changedComponentUid.intValue()) : null;
             if (!Objects.equals(oldLookVec, lookVec))
             {
+                FGClojureContainerParser.FGComponentDataCache componentDataCache =
+                        (FGClojureContainerParser.FGComponentDataCache) lookRebuild.component_.getCustomData();
                 containerMutator.setValue(componentDataCache.getLookVecIndex(), lookVec);
                 lookVectors_.set(changedComponentUid.intValue(), lookVec);
                 lookVectorGenerated(changedComponentUid, lookVec);
@@ -163,12 +225,182 @@ public class FGClojureResultCollector implements IResultCollector, ClipboardOwne
 
         changedComponents_.clear();
         cursorHasChanged_ = false;
+        lastCycleLookRebuildCount_ = lookRebuilds.size();
+        lastCycleSkippedLookRebuildCount_ = skippedLookRebuildCount;
+        skippedLookRebuildCount_ += skippedLookRebuildCount;
+    }
+
+    /**
+     * Sets pool to rebuild look vectors on when many components change in one evolve cycle, or null (default) to
+     * rebuild them on evolver thread one by one. Look functions then must not depend on anything but the component
+     * they are called for, and must not set interop reference font other than that of the component: components
+     * with the same font are rebuilt concurrently, one font at a time.
+     */
+    public void setParallelLookRebuildPool(ForkJoinPool parallelLookRebuildPool)
+    {
+        parallelLookRebuildPool_ = parallelLookRebuildPool;
+    }
+
+    /**
+     * @return number of evolve cycles where look vectors have been rebuilt in parallel
+     */
+    public long getParallelLookRebuildCycleCount()
+    {
+        return parallelLookRebuildCycleCount_;
+    }
+
+    /**
+     * Sets cache to take look vectors from instead of invoking look functions where possible, or null to always
+     * invoke look functions. By default, {@link FGLookCache#getDefault()} is used.
+     */
+    public void setLookCache(FGLookCache lookCache)
+    {
+        lookCache_ = lookCache;
+    }
+
+    public FGLookCache getLookCache()
+    {
+        return lookCache_;
+    }
+
+    /**
+     * @return number of look vectors rebuilt in the latest evolve cycle, either by look function or taken from
+     *         look cache
+     */
+    public int getLastCycleLookRebuildCount()
+    {
+        return lastCycleLookRebuildCount_;
+    }
+
+    /**
+     * @return number of components changed in the latest evolve cycle whose look vector has not been rebuilt
+     *         because none of the properties their look function reads has changed
+     */
+    public int getLastCycleSkippedLookRebuildCount()
+    {
+        return lastCycleSkippedLookRebuildCount_;
+    }
+
+    public long getSkippedLookRebuildCount()
+    {
+        return skippedLookRebuildCount_;
     }
 
     protected void lookVectorGenerated(Integer componentUid, List<Object> lookVec)
     {
     }
 
+    private void rebuildLook(LookRebuild lookRebuild)
+    {
+        Container.IComponent componentAccessor = lookRebuild.component_;
+        FGLookCache lookCache = lookCache_;
+        Object lookFn = componentAccessor.get(LOOK_KW);
+        FGLookCache.Entry cachedLook = lookCache != null && lookFn != null
+                ? lookCache.get(lookFn, lookRebuild.previousReadProperties_, componentAccessor)
+                : null;
+        if (cachedLook != null)
+        {
+            lookRebuild.lookVec_ = cachedLook.getLookVec();
+            lookRebuild.readProperties_ = cachedLook.getInputs();
+        }
+        else
+        {
+            // Look function reads properties through component's property index, without copying them into a map
+            FGLookInputRecorder componentClj = new FGLookInputRecorder(componentAccessor);
+            //Object lookResult = rebuildLook_.invoke(componentClj);
+            //System.out.println("-DLTEMP- (2)FGClojureResultCollector.postProcessAfterEvolveCycle " + lookRebuild.componentUid_ + " " + lookResult);
+            List<Object> lookVec = (List<Object>) rebuildLook_.invoke(componentClj);
+            // Look function that has failed may not have read all its inputs
+            Set<Object> readProperties = lookVec != null ? componentClj.getReadProperties() : null;
+            if (lookCache != null && lookFn != null && readProperties != null)
+            {
+                lookCache.put(lookFn, readProperties, componentAccessor, lookVec);
+            }
+            lookRebuild.lookVec_ = lookVec;
+            lookRebuild.readProperties_ = readProperties;
+        }
+    }
+
+    /**
+     * Rebuild sets interop reference font to the font of the component, so components of one font are rebuilt
+     * concurrently, and fonts go one after another
+     */
+    private void rebuildLooksInParallel(ForkJoinPool pool, List<LookRebuild> lookRebuilds)
+    {
+        Map<Object, List<LookRebuild>> fontToLookRebuilds = new LinkedHashMap<>();
+        for (LookRebuild lookRebuild : lookRebuilds)
+        {
+            fontToLookRebuilds.computeIfAbsent(lookRebuild.component_.get(FONT_KW), f -> new ArrayList<>()).add(lookRebuild);
+        }
+        boolean parallel = false;
+        for (List<LookRebuild> fontLookRebuilds : fontToLookRebuilds.values())
+        {
+            if (fontLookRebuilds.size() >= PARALLEL_LOOK_REBUILD_THRESHOLD)
+            {
+                pool.invoke(new LookRebuildTask(fontLookRebuilds, 0, fontLookRebuilds.size()));
+                parallel = true;
+            }
+            else
+            {
+                for (LookRebuild lookRebuild : fontLookRebuilds)
+                {
+                    rebuildLook(lookRebuild);
+                }
+            }
+        }
+        if (parallel)
+        {
+            parallelLookRebuildCycleCount_++;
+        }
+    }
+
+    private static class LookRebuild
+    {
+        private final Integer componentUid_;
+        private final Container.IComponent component_;
+        private final Set<Object> previousReadProperties_;
+        private List<Object> lookVec_;
+        private Set<Object> readProperties_;
+
+        LookRebuild(Integer componentUid, Container.IComponent component, Set<Object> previousReadProperties)
+        {
+            componentUid_ = componentUid;
+            component_ = component;
+            previousReadProperties_ = previousReadProperties;
+        }
+    }
+
+    private class LookRebuildTask extends RecursiveAction
+    {
+        private final List<LookRebuild> lookRebuilds_;
+        private final int from_;
+        private final int to_;
+
+        LookRebuildTask(List<LookRebuild> lookRebuilds, int from, int to)
+        {
+            lookRebuilds_ = lookRebuilds;
+            from_ = from;
+            to_ = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to_ - from_ <= PARALLEL_LOOK_REBUILD_CHUNK)
+            {
+                for (int i=from_; i<to_; i++)
+                {
+                    rebuildLook(lookRebuilds_.get(i));
+                }
+            }
+            else
+            {
+                int middle = (from_ + to_) >>> 1;
+                invokeAll(new LookRebuildTask(lookRebuilds_, from_, middle), new LookRebuildTask(lookRebuilds_, middle, to_));
+            }
+        }
+    }
+
     boolean hasVisiblePopupChildren(Integer componentUid)
     {
         Set<Integer> visiblePopupChildCount = parentToVisiblePopupChildCount_.get(componentUid);
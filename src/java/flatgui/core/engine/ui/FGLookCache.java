@@ -0,0 +1,305 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.core.engine.ui;
+
+import clojure.lang.Keyword;
+import flatgui.core.IFGInteropUtil;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Look vectors shared by all components and sessions that use this cache. Look vector is keyed by look function,
+ * the set of properties that function has read when building it, and their values. Look function may read
+ * different properties depending on values it has read before (for example, :interop only when :font is set), but
+ * it returns the same result for the same values of properties it reads. So any component that has the same look
+ * function and the same values of the properties read gets the same look vector, as long as the set of properties
+ * is part of the key: values alone may match a vector built along another path.
+ *
+ * Interop util is a property of its own in each session, so it is keyed by how it measures the font of the
+ * component (see {@link IFGInteropUtil#getFontMetricsKey}) rather than by identity. This way sessions share look
+ * vectors of components that use fonts their clients measure the same way, and the cache does not keep interops of
+ * closed sessions.
+ *
+ * Cache is bounded by approximate size of look vectors it holds, and evicts least recently used ones first.
+ * Note that it also holds property values the look vectors have been built for, which are normally shared with
+ * live components.
+ *
+ * @author Denis Lebedev
+ */
+public class FGLookCache
+{
+    public static final long DFLT_MAX_SIZE_BYTES = 32L * 1024 * 1024;
+
+    // Value of property the component does not have, which look function may tell from nil
+    private static final Object ABSENT = new Object();
+
+    private static final Keyword FONT_KW = Keyword.intern("font");
+
+    private static final Object defaultLock_ = new Object();
+    private static volatile FGLookCache default_;
+
+    private final long maxSizeBytes_;
+
+    // Guarded by this
+    private final LinkedHashMap<LookKey, Entry> entries_;
+    private long sizeBytes_;
+
+    // Properties read by look function when it has been invoked last time, so that a component that has not
+    // had look vector yet may find one built for another component
+    private final Map<Object, Set<Object>> lookFnToInputs_;
+
+    private final AtomicLong hitCount_;
+    private final AtomicLong missCount_;
+    // Guarded by this
+    private volatile long evictionCount_;
+
+    public FGLookCache(long maxSizeBytes)
+    {
+        if (maxSizeBytes <= 0)
+        {
+            throw new IllegalArgumentException("Max size must be positive: " + maxSizeBytes);
+        }
+        maxSizeBytes_ = maxSizeBytes;
+        entries_ = new LinkedHashMap<>(256, 0.75f, true);
+        lookFnToInputs_ = Collections.synchronizedMap(new WeakHashMap<>());
+        hitCount_ = new AtomicLong();
+        missCount_ = new AtomicLong();
+    }
+
+    /**
+     * @return cache used by result collectors that have not been given another one; sized to
+     *         {@link #DFLT_MAX_SIZE_BYTES} unless set otherwise with {@link #setDefault}
+     */
+    public static FGLookCache getDefault()
+    {
+        FGLookCache cache = default_;
+        if (cache == null)
+        {
+            synchronized (defaultLock_)
+            {
+                if (default_ == null)
+                {
+                    default_ = new FGLookCache(DFLT_MAX_SIZE_BYTES);
+                }
+                cache = default_;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Sets cache for result collectors created afterwards
+     */
+    public static void setDefault(FGLookCache cache)
+    {
+        synchronized (defaultLock_)
+        {
+            default_ = cache;
+        }
+    }
+
+    /**
+     * @param inputs properties the look function has read when it has built look vector for the component last
+     *               time, or null if not known
+     * @return cached look vector for current property values of the component, or null if there is none
+     */
+    Entry get(Object lookFn, Set<Object> inputs, Map<Object, Object> component)
+    {
+        if (inputs == null)
+        {
+            inputs = lookFnToInputs_.get(lookFn);
+        }
+        Entry entry = null;
+        if (inputs != null)
+        {
+            LookKey key = new LookKey(lookFn, inputs, component);
+            synchronized (this)
+            {
+                entry = entries_.get(key);
+            }
+        }
+        if (entry != null)
+        {
+            hitCount_.incrementAndGet();
+        }
+        else
+        {
+            missCount_.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * @param inputs properties the look function has read when building given look vector
+     */
+    void put(Object lookFn, Set<Object> inputs, Map<Object, Object> component, List<Object> lookVec)
+    {
+        lookFnToInputs_.put(lookFn, inputs);
+        LookKey key = new LookKey(lookFn, inputs, component);
+        Entry entry = new Entry(lookVec, inputs, estimateSize(key, lookVec));
+        if (entry.sizeBytes_ > maxSizeBytes_)
+        {
+            return;
+        }
+        synchronized (this)
+        {
+            Entry replaced = entries_.put(key, entry);
+            if (replaced != null)
+            {
+                sizeBytes_ -= replaced.sizeBytes_;
+            }
+            sizeBytes_ += entry.sizeBytes_;
+            Iterator<Entry> i = entries_.values().iterator();
+            while (sizeBytes_ > maxSizeBytes_ && i.hasNext())
+            {
+                sizeBytes_ -= i.next().sizeBytes_;
+                i.remove();
+                evictionCount_++;
+            }
+        }
+    }
+
+    public void clear()
+    {
+        synchronized (this)
+        {
+            entries_.clear();
+            sizeBytes_ = 0;
+        }
+        lookFnToInputs_.clear();
+    }
+
+    // Metrics
+
+    public long getHitCount()
+    {
+        return hitCount_.get();
+    }
+
+    public long getMissCount()
+    {
+        return missCount_.get();
+    }
+
+    public long getEvictionCount()
+    {
+        return evictionCount_;
+    }
+
+    public synchronized int getEntryCount()
+    {
+        return entries_.size();
+    }
+
+    /**
+     * @return approximate size of look vectors held by the cache
+     */
+    public synchronized long getSizeBytes()
+    {
+        return sizeBytes_;
+    }
+
+    public long getMaxSizeBytes()
+    {
+        return maxSizeBytes_;
+    }
+
+    // Private
+
+    private static long estimateSize(LookKey key, List<Object> lookVec)
+    {
+        long size = 64 + 48 * key.inputValues_.size();
+        for (Object command : lookVec)
+        {
+            size += 32;
+            if (command instanceof List)
+            {
+                for (Object arg : (List<?>) command)
+                {
+                    size += arg instanceof String ? 48 + 2 * ((String) arg).length() : 24;
+                }
+            }
+        }
+        return size;
+    }
+
+    static final class Entry
+    {
+        private final List<Object> lookVec_;
+        private final Set<Object> inputs_;
+        private final long sizeBytes_;
+
+        Entry(List<Object> lookVec, Set<Object> inputs, long sizeBytes)
+        {
+            lookVec_ = lookVec;
+            inputs_ = inputs;
+            sizeBytes_ = sizeBytes;
+        }
+
+        List<Object> getLookVec()
+        {
+            return lookVec_;
+        }
+
+        Set<Object> getInputs()
+        {
+            return inputs_;
+        }
+    }
+
+    private static final class LookKey
+    {
+        private final Object lookFn_;
+        // Property -> value, so that keys do not depend on the order properties are listed in
+        private final Map<Object, Object> inputValues_;
+        private final int hashCode_;
+
+        LookKey(Object lookFn, Set<Object> inputs, Map<Object, Object> component)
+        {
+            lookFn_ = lookFn;
+            inputValues_ = new HashMap<>(inputs.size() * 2);
+            for (Object property : inputs)
+            {
+                Object value = component.containsKey(property) ? component.get(property) : ABSENT;
+                if (value instanceof IFGInteropUtil)
+                {
+                    Object font = component.get(FONT_KW);
+                    value = ((IFGInteropUtil) value).getFontMetricsKey(font instanceof String ? (String) font : null);
+                }
+                inputValues_.put(property, value);
+            }
+            hashCode_ = 31 * System.identityHashCode(lookFn) + inputValues_.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof LookKey))
+            {
+                return false;
+            }
+            LookKey other = (LookKey) o;
+            return lookFn_ == other.lookFn_ && hashCode_ == other.hashCode_ && Objects.equals(inputValues_, other.inputValues_);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode_;
+        }
+    }
+}
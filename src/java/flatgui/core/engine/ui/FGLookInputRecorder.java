@@ -0,0 +1,112 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.core.engine.ui;
+
+import clojure.lang.IMapEntry;
+import clojure.lang.IPersistentMap;
+import clojure.lang.ISeq;
+import flatgui.core.engine.ComponentMapView;
+import flatgui.core.engine.Container;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Component map passed to look function, that records which properties the function reads. Reading single
+ * properties by key is recorded precisely; anything that may depend on all properties (iterating or counting
+ * the map, comparing it, or deriving another map from it) makes the look depend on all properties.
+ *
+ * @author Denis Lebedev
+ */
+class FGLookInputRecorder extends ComponentMapView
+{
+    private final Set<Object> readProperties_;
+    private boolean readAll_;
+
+    FGLookInputRecorder(Container.IComponent component)
+    {
+        super(component);
+        readProperties_ = new HashSet<>();
+        readAll_ = false;
+    }
+
+    /**
+     * @return properties read so far, or null if look function may have depended on all properties
+     */
+    Set<Object> getReadProperties()
+    {
+        return readAll_ ? null : readProperties_;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        readProperties_.add(key);
+        return super.containsKey(key);
+    }
+
+    @Override
+    public IMapEntry entryAt(Object key)
+    {
+        readProperties_.add(key);
+        return super.entryAt(key);
+    }
+
+    @Override
+    public Object valAt(Object key)
+    {
+        readProperties_.add(key);
+        return super.valAt(key);
+    }
+
+    @Override
+    public Object valAt(Object key, Object notFound)
+    {
+        readProperties_.add(key);
+        return super.valAt(key, notFound);
+    }
+
+    @Override
+    public int count()
+    {
+        readAll_ = true;
+        return super.count();
+    }
+
+    @Override
+    public ISeq seq()
+    {
+        readAll_ = true;
+        return super.seq();
+    }
+
+    @Override
+    public Iterator<?> iterator()
+    {
+        readAll_ = true;
+        return super.iterator();
+    }
+
+    @Override
+    public IPersistentMap assoc(Object key, Object val)
+    {
+        readAll_ = true;
+        return super.assoc(key, val);
+    }
+
+    @Override
+    public IPersistentMap assocEx(Object key, Object val)
+    {
+        readAll_ = true;
+        return super.assocEx(key, val);
+    }
+
+    @Override
+    public IPersistentMap without(Object key)
+    {
+        readAll_ = true;
+        return super.without(key);
+    }
+}
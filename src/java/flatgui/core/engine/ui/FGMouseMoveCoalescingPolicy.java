@@ -0,0 +1,35 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.core.engine.ui;
+
+import flatgui.core.engine.IEventCoalescingPolicy;
+
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+
+/**
+ * Consecutive mouse move events, as well as consecutive drag events with the same buttons
+ * and modifiers held, are replaced with the newest one. Other mouse events are never coalesced.
+ *
+ * @author Denis Lebedev
+ */
+public class FGMouseMoveCoalescingPolicy implements IEventCoalescingPolicy<MouseEvent>
+{
+    @Override
+    public Object getCoalescingKey(MouseEvent event)
+    {
+        int id = event.getID();
+        if (id == MouseEvent.MOUSE_MOVED || id == MouseEvent.MOUSE_DRAGGED)
+        {
+            return Arrays.asList(Integer.valueOf(id), Integer.valueOf(event.getModifiersEx()));
+        }
+        return null;
+    }
+
+    @Override
+    public MouseEvent coalesce(MouseEvent queuedEvent, MouseEvent newEvent)
+    {
+        return newEvent;
+    }
+}
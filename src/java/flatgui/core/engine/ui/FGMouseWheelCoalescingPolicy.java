@@ -0,0 +1,69 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.core.engine.ui;
+
+import flatgui.core.awt.FGIncomingMouseWheelEvent;
+import flatgui.core.engine.IEventCoalescingPolicy;
+
+import java.awt.*;
+import java.awt.event.MouseWheelEvent;
+import java.util.Arrays;
+
+/**
+ * Consecutive wheel events of the same scroll type and modifiers are merged into one event
+ * located where the newest one is, with wheel rotation accumulated.
+ *
+ * @author Denis Lebedev
+ */
+public class FGMouseWheelCoalescingPolicy implements IEventCoalescingPolicy<MouseWheelEvent>
+{
+    @Override
+    public Object getCoalescingKey(MouseWheelEvent event)
+    {
+        return Arrays.asList(
+                Integer.valueOf(event.getModifiersEx()),
+                Integer.valueOf(event.getScrollType()),
+                Integer.valueOf(event.getScrollAmount()));
+    }
+
+    @Override
+    public MouseWheelEvent coalesce(MouseWheelEvent queuedEvent, MouseWheelEvent newEvent)
+    {
+        int wheelRotation = queuedEvent.getWheelRotation() + newEvent.getWheelRotation();
+        if (newEvent instanceof FGIncomingMouseWheelEvent)
+        {
+            return new FGIncomingMouseWheelEvent(
+                    (Component) newEvent.getSource(),
+                    newEvent.getID(),
+                    newEvent.getWhen(),
+                    newEvent.getModifiersEx(),
+                    newEvent.getX(),
+                    newEvent.getY(),
+                    newEvent.getClickCount(),
+                    newEvent.isPopupTrigger(),
+                    newEvent.getScrollType(),
+                    newEvent.getScrollAmount(),
+                    wheelRotation,
+                    ((FGIncomingMouseWheelEvent) queuedEvent).getScrollAmountX() + ((FGIncomingMouseWheelEvent) newEvent).getScrollAmountX());
+        }
+        else
+        {
+            return new MouseWheelEvent(
+                    (Component) newEvent.getSource(),
+                    newEvent.getID(),
+                    newEvent.getWhen(),
+                    newEvent.getModifiersEx(),
+                    newEvent.getX(),
+                    newEvent.getY(),
+                    newEvent.getXOnScreen(),
+                    newEvent.getYOnScreen(),
+                    newEvent.getClickCount(),
+                    newEvent.isPopupTrigger(),
+                    newEvent.getScrollType(),
+                    newEvent.getScrollAmount(),
+                    wheelRotation,
+                    queuedEvent.getPreciseWheelRotation() + newEvent.getPreciseWheelRotation());
+        }
+    }
+}
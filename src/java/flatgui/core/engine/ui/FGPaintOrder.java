@@ -0,0 +1,251 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.core.engine.ui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Order components are painted in: parents before their children, children in the order of their z positions.
+ * It is maintained as a linked list of component uids where each component is followed by its descendants, so
+ * adding, removing or reordering components relinks only boundaries of the affected subtrees instead of walking
+ * the whole component tree. List is materialized on demand, and only if it has changed since last time.
+ *
+ * @author Denis Lebedev
+ */
+class FGPaintOrder
+{
+    private final Map<Integer, Entry> uidToEntry_;
+    private Entry root_;
+
+    private long version_;
+    private List<Object> sequence_;
+    private long sequenceVersion_;
+    private long materializationCount_;
+
+    FGPaintOrder()
+    {
+        uidToEntry_ = new HashMap<>();
+        version_ = 0;
+        sequenceVersion_ = -1;
+    }
+
+    FGPaintOrder(FGPaintOrder source)
+    {
+        this();
+        for (Entry e = source.root_; e != null; e = e.next_)
+        {
+            add(e.parent_ != null ? e.parent_.uid_ : null, e.uid_);
+        }
+    }
+
+    /**
+     * Adds component as the last child of its parent, or as root if it has no parent
+     */
+    void add(Integer parentComponentUid, Integer componentUid)
+    {
+        Entry entry = new Entry(componentUid);
+        if (parentComponentUid == null)
+        {
+            if (root_ != null)
+            {
+                throw new IllegalStateException("Root component is already " + root_.uid_ + ", cannot add " + componentUid);
+            }
+            root_ = entry;
+        }
+        else
+        {
+            Entry parent = getEntry(parentComponentUid);
+            link(getLastDescendant(parent), entry, entry);
+            entry.parent_ = parent;
+            parent.children_.add(entry);
+        }
+        uidToEntry_.put(componentUid, entry);
+        version_++;
+    }
+
+    /**
+     * Removes component with all its descendants. Does nothing if component has been removed already together
+     * with its ancestor.
+     */
+    void remove(Integer componentUid)
+    {
+        Entry entry = uidToEntry_.get(componentUid);
+        if (entry == null)
+        {
+            return;
+        }
+        Entry last = getLastDescendant(entry);
+        unlink(entry, last);
+        if (entry.parent_ != null)
+        {
+            entry.parent_.children_.remove(entry);
+        }
+        else
+        {
+            root_ = null;
+        }
+        for (Entry e = entry; e != last.next_; e = e.next_)
+        {
+            uidToEntry_.remove(e.uid_);
+        }
+        last.next_ = null;
+        version_++;
+    }
+
+    /**
+     * @param childUids all children of given component in the order they are painted in
+     */
+    void setChildOrder(Integer componentUid, List<Integer> childUids)
+    {
+        Entry parent = getEntry(componentUid);
+        List<Entry> children = parent.children_;
+        if (children.size() != childUids.size())
+        {
+            throw new IllegalStateException("Component " + componentUid + " has " + children.size() +
+                    " children, cannot order them as " + childUids);
+        }
+        boolean changed = false;
+        for (int i=0; i<childUids.size() && !changed; i++)
+        {
+            changed = !children.get(i).uid_.equals(childUids.get(i));
+        }
+        if (!changed)
+        {
+            return;
+        }
+
+        List<Entry> newChildren = new ArrayList<>(childUids.size());
+        for (Integer uid : childUids)
+        {
+            Entry child = getEntry(uid);
+            if (child.parent_ != parent)
+            {
+                throw new IllegalStateException("Component " + uid + " is not a child of " + componentUid);
+            }
+            newChildren.add(child);
+        }
+        // Subtrees of children stay linked internally, only their boundaries are relinked
+        List<Entry> lastDescendants = new ArrayList<>(newChildren.size());
+        for (Entry child : newChildren)
+        {
+            lastDescendants.add(getLastDescendant(child));
+        }
+        Entry after = getLastDescendant(parent).next_;
+        Entry cursor = parent;
+        for (int i=0; i<newChildren.size(); i++)
+        {
+            cursor.next_ = newChildren.get(i);
+            newChildren.get(i).prev_ = cursor;
+            cursor = lastDescendants.get(i);
+        }
+        cursor.next_ = after;
+        if (after != null)
+        {
+            after.prev_ = cursor;
+        }
+        parent.children_ = newChildren;
+        version_++;
+    }
+
+    /**
+     * @return number of changes made so far; changes when the order changes
+     */
+    long getVersion()
+    {
+        return version_;
+    }
+
+    /**
+     * @return uids of all components in the order they are painted in. The same list is returned until
+     *         the order changes
+     */
+    List<Object> getSequence()
+    {
+        if (sequenceVersion_ != version_)
+        {
+            List<Object> sequence = new ArrayList<>(uidToEntry_.size());
+            for (Entry e = root_; e != null; e = e.next_)
+            {
+                sequence.add(e.uid_);
+            }
+            sequence_ = Collections.unmodifiableList(sequence);
+            sequenceVersion_ = version_;
+            materializationCount_++;
+        }
+        return sequence_;
+    }
+
+    /**
+     * @return how many times the sequence has been built
+     */
+    long getMaterializationCount()
+    {
+        return materializationCount_;
+    }
+
+    // Private
+
+    private Entry getEntry(Integer componentUid)
+    {
+        Entry entry = uidToEntry_.get(componentUid);
+        if (entry == null)
+        {
+            throw new IllegalStateException("Component has not been added: " + componentUid);
+        }
+        return entry;
+    }
+
+    private static Entry getLastDescendant(Entry entry)
+    {
+        while (!entry.children_.isEmpty())
+        {
+            entry = entry.children_.get(entry.children_.size() - 1);
+        }
+        return entry;
+    }
+
+    private static void link(Entry after, Entry first, Entry last)
+    {
+        Entry next = after.next_;
+        after.next_ = first;
+        first.prev_ = after;
+        last.next_ = next;
+        if (next != null)
+        {
+            next.prev_ = last;
+        }
+    }
+
+    private static void unlink(Entry first, Entry last)
+    {
+        if (first.prev_ != null)
+        {
+            first.prev_.next_ = last.next_;
+        }
+        if (last.next_ != null)
+        {
+            last.next_.prev_ = first.prev_;
+        }
+        first.prev_ = null;
+    }
+
+    private static final class Entry
+    {
+        private final Integer uid_;
+        private Entry parent_;
+        private List<Entry> children_;
+        private Entry prev_;
+        private Entry next_;
+
+        Entry(Integer uid)
+        {
+            uid_ = uid;
+            children_ = new ArrayList<>(0);
+        }
+    }
+}
@@ -6,6 +6,7 @@ package flatgui.core.engine.ui;
 import clojure.lang.Keyword;
 import flatgui.core.FGEvolveResultData;
 import flatgui.core.engine.Container;
+import flatgui.core.engine.SessionExecutor;
 import flatgui.core.websocket.FGWebInteropUtil;
 
 import java.awt.event.ActionEvent;
@@ -30,7 +31,6 @@ public class FGRemoteAppContainer extends FGAppContainer<FGWebInteropUtil>
     public FGRemoteAppContainer(String sessionId, Map<Object, Object> container, int unitSizePx, FGRemoteClojureResultCollector resultCollector)
     {
         super(sessionId, container, new FGWebInteropUtil(unitSizePx), resultCollector, unitSizePx);
-        resultCollector.initialize(this::getPaintAllSequence);
         unsolicitedEvloveCallback_ = null;
     }
 
@@ -38,7 +38,6 @@ public class FGRemoteAppContainer extends FGAppContainer<FGWebInteropUtil>
     {
         super(sessionId, null, source.getContainer(), new FGWebInteropUtil((int) source.getInteropUtil().getUnitSizePx()), resultCollector, (int)source.getInteropUtil().getUnitSizePx(),
             new FGMouseEventParser((int) source.getInteropUtil().getUnitSizePx()));
-        resultCollector.initialize(this::getPaintAllSequence);
         unsolicitedEvloveCallback_ = unsolicitedEvloveCallback;
     }
 
@@ -58,38 +57,69 @@ public class FGRemoteAppContainer extends FGAppContainer<FGWebInteropUtil>
 
     public Future<FGEvolveResultData> evolveRemote(Object evolveReason)
     {
-        Future<FGEvolveResultData> future = getEvolverExecutorService().submit(() -> {
-            evolveImpl(evolveReason);
-            Set<Integer> changedComponentUids = getResultCollector().getChangedComponentsForRemote();
-            Set<List> changedComponentPaths = new HashSet<>(changedComponentUids.size());
-            for (Integer changedComponentUid : changedComponentUids)
+        Future<FGEvolveResultData> future = submitCoalescing(evolveReason, reason -> {
+            evolveImpl(reason);
+            return collectEvolveResultData();
+        });
+        return future;
+    }
+
+    /**
+     * Evolves for all given input events as one batch, so that results are post-processed and collected once
+     */
+    public Future<FGEvolveResultData> evolveRemoteBatch(List<Object> evolveReasons)
+    {
+        return getEvolverExecutorService().submit(() -> {
+            evolveBatchImpl(evolveReasons);
+            return collectEvolveResultData();
+        });
+    }
+
+    /**
+     * Evolves component at given path for all given reasons as one batch, so that results are
+     * post-processed and collected once. Targeted events are pushed by server code rather than
+     * sent by the user, so they wait in background lane
+     */
+    public Future<FGEvolveResultData> evolveRemoteBatch(List<Keyword> targetCellIdPath, List<Object> evolveReasons)
+    {
+        return getEvolverExecutorService().submit(SessionExecutor.Lane.Background, () -> {
+            Integer targetUid = getContainer().getComponentUid((List) targetCellIdPath);
+            if (targetUid == null)
+            {
+                throw new IllegalArgumentException("Component path does not exist: " + targetCellIdPath);
+            }
+            List<Map.Entry<Integer, Object>> targetUidToReason = new ArrayList<>(evolveReasons.size());
+            for (Object evolveReason : evolveReasons)
             {
-                List changedComponentPath = ((Container.ComponentAccessor)getContainer().getComponent(changedComponentUid)).getComponentPath();
-                changedComponentPaths.add(changedComponentPath);
+                targetUidToReason.add(new AbstractMap.SimpleImmutableEntry<>(targetUid, evolveReason));
             }
-            getResultCollector().clearChangedComponentsForWeb();
-            return new FGLegacyGlueEvolveResultData(changedComponentPaths);
+            getContainer().evolveBatch(targetUidToReason);
+            return collectEvolveResultData();
         });
-        return future;
     }
 
     public Future<FGEvolveResultData> evolveRemote(List<Keyword> targetCellIdPath, Object evolveReason)
     {
-        Future<FGEvolveResultData> future = getEvolverExecutorService().submit(() -> {
+        Future<FGEvolveResultData> future = getEvolverExecutorService().submit(SessionExecutor.Lane.Background, () -> {
             evolveImpl((List)targetCellIdPath, evolveReason);
-            Set<Integer> changedComponentUids = getResultCollector().getChangedComponentsForRemote();
-            Set<List> changedComponentPaths = new HashSet<>(changedComponentUids.size());
-            for (Integer changedComponentUid : changedComponentUids)
-            {
-                List changedComponentPath = ((Container.ComponentAccessor)getContainer().getComponent(changedComponentUid)).getComponentPath();
-                changedComponentPaths.add(changedComponentPath);
-            }
-            getResultCollector().clearChangedComponentsForWeb();
-            return new FGLegacyGlueEvolveResultData(changedComponentPaths);
+            return collectEvolveResultData();
         });
         return future;
     }
 
+    private FGEvolveResultData collectEvolveResultData()
+    {
+        Set<Integer> changedComponentUids = getResultCollector().getChangedComponentsForRemote();
+        Set<List> changedComponentPaths = new HashSet<>(changedComponentUids.size());
+        for (Integer changedComponentUid : changedComponentUids)
+        {
+            List changedComponentPath = ((Container.ComponentAccessor)getContainer().getComponent(changedComponentUid)).getComponentPath();
+            changedComponentPaths.add(changedComponentPath);
+        }
+        getResultCollector().clearChangedComponentsForWeb();
+        return new FGLegacyGlueEvolveResultData(changedComponentPaths);
+    }
+
     public <T> Future<T> submitTask(Callable<T> callable)
     {
         return getEvolverExecutorService().submit(callable);
@@ -103,22 +133,7 @@ public class FGRemoteAppContainer extends FGAppContainer<FGWebInteropUtil>
 
     public List<Object> getPaintAllSequence()
     {
-        if (getContainer() == null)
-        {
-            // TODO this is called by new result collector during container initialization, needs to be refactored
-            return null;
-        }
-
-        // TODO 1 can know list size in advance
-        // TODO 2 no need to do this on each cycle
-        List<Object> sequence = new ArrayList<>();
-        Container.IContainerAccessor containerAccessor = getContainer().getContainerAccessor();
-        getResultCollector().collectPaintAllSequence(
-                sequence,
-                containerAccessor,
-                Integer.valueOf(0));
-        //System.out.println("PaintAllSeq: " + sequence);
-        return sequence;
+        return ((FGRemoteClojureResultCollector)getResultCollector()).getPaintAllSequence();
     }
 
     public Map<Object, Map<Keyword, Object>> getComponentIdPathToComponent(Collection<List<Keyword>> paths)
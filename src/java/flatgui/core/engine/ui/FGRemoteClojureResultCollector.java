@@ -30,8 +30,6 @@ public class FGRemoteClojureResultCollector extends FGClojureResultCollector
     private static final Var extractRegularStrings_ = clojure.lang.RT.var(RESPONSE_FEED_NS, "extract-regular-strings");
     private static final Var extractResourceStrings_ = clojure.lang.RT.var(RESPONSE_FEED_NS, "extract-resource-strings");
 
-    private static final Keyword CHILDREN_KW = Keyword.intern("children");
-    private static final Keyword Z_POSITION_KW = Keyword.intern("z-position");
     private static final Keyword LOOK_VEC_KW = Keyword.intern("look-vec");
 
     private static final Keyword MODEL_KW = Keyword.intern("model");
@@ -86,9 +84,13 @@ public class FGRemoteClojureResultCollector extends FGClojureResultCollector
 
     private final FGWebContainerWrapper.IKeyCache keyCache_;
     private final FGLegacyCoreGlue.GlueModule glueModule_;
-    private Supplier<List<Object>> paintAllSequenceSupplier_;
 
-    private List<Object> paintAllList_;
+    private final FGPaintOrder paintOrder_;
+    // Version of paint order that has been transmitted last time, or -1 if it has to be transmitted
+    private long transmittedPaintOrderVersion_;
+    // Components whose children have been added, removed or reordered in current cycle
+    private final Set<Integer> reorderedComponentUids_;
+
     private TextSelectionModel textSelectionModel_;
     private List<String> selectedTextComponentLines_;
     private boolean textSelectionModelChanged_;
@@ -127,6 +129,10 @@ public class FGRemoteClojureResultCollector extends FGClojureResultCollector
         addedComponentParentUids_ = new ArrayList<>();
         removedAddedUidsTriple_ = Tuple.triple(removedComponentUids_, addedComponentParentUids_, addedComponentUids_);
 
+        paintOrder_ = new FGPaintOrder();
+        transmittedPaintOrderVersion_ = -1;
+        reorderedComponentUids_ = new HashSet<>();
+
         diffsToTransmit_ = new ArrayList<>(12);
 
         componentIdToStringPool_ = new HashMap<>();
@@ -169,6 +175,10 @@ public class FGRemoteClojureResultCollector extends FGClojureResultCollector
         addedComponentParentUids_ = new ArrayList<>(source.addedComponentParentUids_);
         removedAddedUidsTriple_ = Tuple.triple(removedComponentUids_, addedComponentParentUids_, addedComponentUids_);
 
+        paintOrder_ = new FGPaintOrder(source.paintOrder_);
+        transmittedPaintOrderVersion_ = -1;
+        reorderedComponentUids_ = new HashSet<>(source.reorderedComponentUids_);
+
         diffsToTransmit_ = new ArrayList<>(source.diffsToTransmit_);
 
         componentIdToStringPool_ = new HashMap<>(source.componentIdToStringPool_);
@@ -197,9 +207,20 @@ public class FGRemoteClojureResultCollector extends FGClojureResultCollector
         /////
     }
 
-    void initialize(Supplier<List<Object>> paintAllSequenceSupplier)
+    /**
+     * @return uids of all components in the order they are painted in
+     */
+    public List<Object> getPaintAllSequence()
+    {
+        return paintOrder_.getSequence();
+    }
+
+    /**
+     * @return how many times paint all sequence has been built, which happens at most once per evolve cycle
+     */
+    public long getPaintAllSequenceBuildCount()
     {
-        paintAllSequenceSupplier_ = paintAllSequenceSupplier;
+        return paintOrder_.getMaterializationCount();
     }
 
     @Override
@@ -220,6 +241,11 @@ public class FGRemoteClojureResultCollector extends FGClojureResultCollector
     {
         super.appendResult(parentComponentUid, path, node, newValue);
 
+        if (node.isChildrenProperty() || node.isChildOrderProperty())
+        {
+            reorderedComponentUids_.add(node.getComponentUid());
+        }
+
         if (initialized_)
         {
             collectResultForTransmitting(node.getComponentUid(), node.getPropertyId(), newValue);
@@ -233,6 +259,8 @@ public class FGRemoteClojureResultCollector extends FGClojureResultCollector
 
         super.postProcessAfterEvolveCycle(containerAccessor, containerMutator);
 
+        updatePaintOrder(containerAccessor);
+
         if (initialized_)
         {
             prepareAccumulatedDataForTrasmitting();
@@ -275,6 +303,7 @@ public class FGRemoteClojureResultCollector extends FGClojureResultCollector
     public void componentAdded(Integer parentComponentUid, Integer componentUid)
     {
         super.componentAdded(parentComponentUid, componentUid);
+        paintOrder_.add(parentComponentUid, componentUid);
         addedComponentUids_.add(componentUid);
         addedComponentParentUids_.add(parentComponentUid);
     }
@@ -283,10 +312,27 @@ public class FGRemoteClojureResultCollector extends FGClojureResultCollector
     public void componentRemoved(Integer componentUid)
     {
         super.componentRemoved(componentUid);
+        paintOrder_.remove(componentUid);
+        reorderedComponentUids_.remove(componentUid);
         removedComponentUids_.add(componentUid);
         booleanFlagsMapTransmitterWrapper_.removeComponent(componentUid);
     }
 
+    private void updatePaintOrder(Container.IContainerAccessor containerAccessor)
+    {
+        // Components have been added to and removed from paint order as they have been added to and removed from
+        // the container; here added ones are put in their places, and children of reordered ones are relinked
+        for (Integer componentUid : reorderedComponentUids_)
+        {
+            Container.IComponent component = containerAccessor.getComponent(componentUid.intValue());
+            if (component != null && component.getChildIndices() != null)
+            {
+                paintOrder_.setChildOrder(componentUid, component.getChildIndices());
+            }
+        }
+        reorderedComponentUids_.clear();
+    }
+
     private void collectInitialDataForNode(Container container, Integer nodeIndex)
     {
         Node node = container.getNode(nodeIndex);
@@ -296,13 +342,6 @@ public class FGRemoteClojureResultCollector extends FGClojureResultCollector
 
     void collectResultForTransmitting(Integer componentUid, Object propertyId, Object newValue)
     {
-        // Only :children and :z-position changes may affect paint all sequence
-        if (propertyId == CHILDREN_KW || propertyId == Z_POSITION_KW)
-        {
-            List<Object> paintAllList = paintAllSequenceSupplier_.get();
-            paintAllList_ = paintAllList;
-        }
-
         {
             IDataTransmitterWrapper transmitterWrapper = propertyToTransWrapper_.get(propertyId);
             if (transmitterWrapper != null)
@@ -361,7 +400,10 @@ public class FGRemoteClojureResultCollector extends FGClojureResultCollector
 
     private void resetAll(boolean full)
     {
-        paintAllList_ = null;
+        if (full)
+        {
+            transmittedPaintOrderVersion_ = -1;
+        }
         textSelectionModelChanged_ = false;
         componentIdToStringPool_.clear();
         componentIdToResourceStringPool_.clear();
@@ -376,11 +418,12 @@ public class FGRemoteClojureResultCollector extends FGClojureResultCollector
 
     private void prepareAccumulatedDataForTrasmitting()
     {
-        if (paintAllList_ != null)
-        //if (paintAllListChanged_)
+        // Paint order is maintained as components are added, removed and reordered, and is built and
+        // transmitted here at most once per cycle, only if it has changed
+        if (paintOrder_.getVersion() != transmittedPaintOrderVersion_)
         {
-            // TODO Transmit it (or even everything) only once after init. It makes no sense to transmit repeatedly during the init process
-            diffsToTransmit_.add(paintAllTransmitter_.convertToBinary(paintAllTransmitter_.getCommandCode(), paintAllList_));
+            diffsToTransmit_.add(paintAllTransmitter_.convertToBinary(paintAllTransmitter_.getCommandCode(), paintOrder_.getSequence()));
+            transmittedPaintOrderVersion_ = paintOrder_.getVersion();
         }
 
         if (!componentIdToStringPool_.isEmpty())
@@ -61,6 +61,8 @@ public class FGAppServer
 
     private final Map<String, IFGCustomServlet> mappingToCustomServletMap_;
 
+    private final FGOverloadController overloadController_;
+
     public FGAppServer(IFGTemplate template, int port) throws Exception
     {
         this(template, port, DEFAULT_MAPPING, null, null);
@@ -94,6 +96,7 @@ public class FGAppServer
         mappingToAppTemplateMap_ = new HashMap<>();
         mappingToTextHtmlServletMap_ = new HashMap<>();
         mappingToCustomServletMap_ = new HashMap<>();
+        overloadController_ = new FGOverloadController();
 
         addApplication(mapping, template, containerConsumer, instanceConsumer);
 
@@ -110,7 +113,7 @@ public class FGAppServer
     public synchronized void addApplication(String mapping, IFGTemplate template, Consumer<IFGContainer> containerConsumer, Consumer<FGRemoteAppContainer> instanceConsumer)
     {
         mapping = ensureMapping(mapping);
-        FGWebSocketServlet servlet = new FGWebSocketServlet(template, containerConsumer, instanceConsumer);
+        FGWebSocketServlet servlet = new FGWebSocketServlet(template, containerConsumer, instanceConsumer, overloadController_);
         ServletHolder h = new ServletHolder(servlet);
         handler_.addServletWithMapping(h, mapping);
         mappingToAppTemplateMap_.put(mapping, servlet);
@@ -168,6 +171,16 @@ public class FGAppServer
         }
     }
 
+    /**
+     * Makes server stop accepting new sessions while evolver queue latency of any session exceeds
+     * given threshold. 0 (default) turns the check off. Bounds of each session queue may be set with
+     * {@link flatgui.core.engine.AppContainer#setEvolverQueueCapacity} via instance consumer.
+     */
+    public void setQueueLatencyThresholdMillis(long thresholdMillis)
+    {
+        overloadController_.setQueueLatencyThresholdMillis(thresholdMillis);
+    }
+
     public void start() throws Exception
     {
         server_.start();
@@ -192,7 +205,8 @@ public class FGAppServer
                             id,
                             new FGServerAppStats.SessionStats(
                                     s.getAccosiatedWebSocket().getAvgProcessingTime(),
-                                    s.getAccosiatedWebSocket().getQueueSizeWaiting())));
+                                    s.getAccosiatedWebSocket().getQueueSizeWaiting(),
+                                    s.getAccosiatedWebSocket().getCoalescedEventCount())));
 
             statsMap.put(appName, new FGServerAppStats(
                     servlet.getSessionHolder().getActiveOrIdleSessionCount(),
@@ -269,10 +283,13 @@ public class FGAppServer
 
             private int queueSizeWaiting_;
 
-            public SessionStats(double avgProcessingTime, int queueSizeWaiting)
+            private long coalescedEventCount_;
+
+            public SessionStats(double avgProcessingTime, int queueSizeWaiting, long coalescedEventCount)
             {
                 avgProcessingTime_ = avgProcessingTime;
                 queueSizeWaiting_ = queueSizeWaiting;
+                coalescedEventCount_ = coalescedEventCount;
             }
 
             public double getAvgProcessingTime()
@@ -284,6 +301,11 @@ public class FGAppServer
             {
                 return queueSizeWaiting_;
             }
+
+            public long getCoalescedEventCount()
+            {
+                return coalescedEventCount_;
+            }
         }
     }
 
@@ -296,10 +318,11 @@ public class FGAppServer
         private BiConsumer<Object, IFGContainer> sessionCloseConsumer_;
         private final Consumer<FGRemoteAppContainer> instanceConsumer_;
 
-        FGWebSocketServlet(IFGTemplate template, Consumer<IFGContainer> containerConsumer, Consumer<FGRemoteAppContainer> instanceConsumer)
+        FGWebSocketServlet(IFGTemplate template, Consumer<IFGContainer> containerConsumer, Consumer<FGRemoteAppContainer> instanceConsumer,
+                           FGOverloadController overloadController)
         {
             setTemplate(template);
-            sessionHolder_ = new FGContainerSessionHolder(new FGSessionContainerHost());
+            sessionHolder_ = new FGContainerSessionHolder(new FGSessionContainerHost(), overloadController);
             setContainerConsumer(containerConsumer);
             instanceConsumer_ = instanceConsumer;
         }
@@ -338,6 +361,18 @@ public class FGAppServer
             FGAppServer.getFGLogger().debug("Done feeding event.");
         }
 
+        void feedEventsToAllInstancesAndSendUpdates(List<Keyword> targetCellIdPath, List<Object> inputEvents)
+        {
+            FGAppServer.getFGLogger().debug("Started feeding " + inputEvents.size() + " events to all("
+                + sessionHolder_.getActiveSessionCount() +  " at the moment) active sessions.");
+            sessionHolder_.forEachActiveSession(s -> {
+                FGAppServer.getFGLogger().debug(" session " + s.toString());
+                s.getAccosiatedWebSocket().collectAndSendResponse(
+                    s.getContainer().feedTargetedEvents(targetCellIdPath, inputEvents), false);
+            });
+            FGAppServer.getFGLogger().debug("Done feeding events.");
+        }
+
         FGContainerSessionHolder getSessionHolder()
         {
             return sessionHolder_;
@@ -407,7 +442,15 @@ public class FGAppServer
                 paramMap.remove(API_PARAM_SERVICE_NAME);
                 paramMap.remove(API_PARAM_PATH);
 
-                fgWebSocketServlet.feedEventToAllInstancesAndSendUpdates(toTargetIdPath(pathParam), toClojureMap(paramMap));
+                List<Object> events = toClojureMaps(paramMap);
+                if (events.size() == 1)
+                {
+                    fgWebSocketServlet.feedEventToAllInstancesAndSendUpdates(toTargetIdPath(pathParam), events.get(0));
+                }
+                else
+                {
+                    fgWebSocketServlet.feedEventsToAllInstancesAndSendUpdates(toTargetIdPath(pathParam), events);
+                }
             }
             else
             {
@@ -428,19 +471,33 @@ public class FGAppServer
             }
         }
 
-        private IPersistentMap toClojureMap(Map<String, String[]> params)
+        /**
+         * Each parameter may have several values: i-th values of all parameters make i-th event, so all
+         * parameters must have the same number of values. Several events are evolved as one batch.
+         */
+        private List<Object> toClojureMaps(Map<String, String[]> params)
         {
-            Map<String, String> m = new HashMap<>();
-            for (String k : params.keySet())
+            int eventCount = -1;
+            for (String[] vArr : params.values())
+            {
+                if (eventCount >= 0 && vArr.length != eventCount)
+                {
+                    throw new IllegalArgumentException("Parameters must have the same number of values in case of passing events to a FlatGUI container");
+                }
+                eventCount = vArr.length;
+            }
+
+            List<Object> events = new ArrayList<>(Math.max(eventCount, 1));
+            for (int i=0; i<Math.max(eventCount, 1); i++)
             {
-                String[] vArr = params.get(k);
-                if (vArr.length != 1)
+                Map<String, String> m = new HashMap<>();
+                for (String k : params.keySet())
                 {
-                    throw new IllegalArgumentException("Parameters must have single values in case of passing event to a FlatGUI container");
+                    m.put(k, params.get(k)[i]);
                 }
-                m.put(k, vArr[0]);
+                events.add(PersistentHashMap.create(m));
             }
-            return PersistentHashMap.create(m);
+            return events;
         }
 
         private List<Keyword> toTargetIdPath(String[] param)
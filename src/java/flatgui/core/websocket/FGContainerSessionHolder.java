@@ -47,15 +47,17 @@ class FGContainerSessionHolder
 
     private final IFGContainerHost<FGContainerSession> sessionHost_;
     private final Map<Object, FGContainerSession> sessionMap_;
+    private final FGOverloadController overloadController_;
 
     private int sessionNumWhenCannotStateLastOccured_ = -1;
 
     enum HeapMemoryState {Ok, Low, VeryLow, CannotAccept}
 
-    FGContainerSessionHolder(IFGContainerHost<FGContainerSession> sessionHost)
+    FGContainerSessionHolder(IFGContainerHost<FGContainerSession> sessionHost, FGOverloadController overloadController)
     {
         sessionHost_ = sessionHost;
         sessionMap_ = new ConcurrentHashMap<>();
+        overloadController_ = overloadController;
 
         Timer longIdleTimer = new Timer("FlatGUI web container long idle session cleaner", true);
         longIdleTimer.schedule(new TimerTask()
@@ -271,6 +273,11 @@ class FGContainerSessionHolder
         }
     }
 
+    boolean queueLatencyAllowsAcceptingNewSessions()
+    {
+        return overloadController_.queueLatencyAllowsAcceptingNewSessions();
+    }
+
     // TODO turn off counter - string pool is broken
     private static long counter_ = 0;
     private static Object getSessionId(IFGTemplate template, InetAddress remoteAddress)
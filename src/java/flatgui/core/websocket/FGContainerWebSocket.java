@@ -16,9 +16,11 @@ import clojure.lang.Var;
 import flatgui.core.*;
 import flatgui.core.awt.HostComponent;
 
+import flatgui.core.engine.SessionScheduler;
 import flatgui.core.engine.remote.FGLegacyCoreGlue;
 import flatgui.core.engine.ui.FGRemoteAppContainer;
 import org.eclipse.jetty.websocket.api.CloseStatus;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.WebSocketListener;
 
@@ -30,7 +32,7 @@ import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
@@ -43,6 +45,8 @@ public class FGContainerWebSocket implements WebSocketListener
 {
     private static final long SEND_PREDICTIONS_THRESHOLD = 500;
 
+    private static final long OVERLOAD_NOTIFICATION_INTERVAL = 1000;
+
     private static final Keyword fontKey_ = Keyword.intern("font");
     private static final Keyword childrenKey_ = Keyword.intern("children");
 
@@ -68,6 +72,7 @@ public class FGContainerWebSocket implements WebSocketListener
     private volatile FGInputEventDecoder parser_;
     private volatile FGContainerSession fgSession_;
     private volatile Timer blinkHelperTimer_;
+    private volatile long lastOverloadNotificationTime_;
     //private volatile Timer predictorTimer_;
     private volatile long latestInputEventTimestamp_;
     private volatile boolean predictionsSent_;
@@ -162,6 +167,14 @@ public class FGContainerWebSocket implements WebSocketListener
             return;
         }
 
+        if (!sessionHolder_.queueLatencyAllowsAcceptingNewSessions())
+        {
+            session.close(new CloseStatus(1000, "Server is overloaded. Use alternative server."));
+            FGAppServer.getFGLogger().info("Refused remote endpoint " +
+                    session.getRemoteAddress() + " because of the queue latency");
+            return;
+        }
+
         if (!acceptingRequests_)
         {
             session.close(new CloseStatus(1000, "Server maintenance. Use alternative server."));
@@ -171,7 +184,8 @@ public class FGContainerWebSocket implements WebSocketListener
         }
 
         session_ = session;
-        endpointTransportService_ = Executors.newSingleThreadExecutor();
+        endpointTransportService_ = SessionScheduler.getDefault().newSessionExecutor(
+                "FlatGUI Transport ", String.valueOf(System.identityHashCode(this)));
         FGAppServer.getFGLogger().info("WS Connect " + System.identityHashCode(this) +
                 " session: " + fgSession_ +
                 " remote: " + session_.getRemoteAddress());
@@ -337,6 +351,7 @@ public class FGContainerWebSocket implements WebSocketListener
 
         // TODO refactor
         FGLegacyCoreGlue legacyCoreGlue = (FGLegacyCoreGlue) container_.getContainer();
+        legacyCoreGlue.getRemoteAppContainer().setOverloadListener(e -> notifyInputRejected());
         if (instanceConsumer_ != null)
         {
             instanceConsumer_.accept(legacyCoreGlue.getRemoteAppContainer());
@@ -366,10 +381,7 @@ public class FGContainerWebSocket implements WebSocketListener
                 " remote: " + session_.getRemoteAddress());
         container_.resetCache();
 
-        pendingEvents_.forEach(b -> onWebSocketBinary(b.getPayload(), b.getOffset(), b.getLen()));
-        pendingEvents_.clear();
-
-        collectAndSendResponse(null, false);
+        processPendingEvents();
 
         FGAppServer.getFGLogger().info("Container ready " + System.identityHashCode(this) +
                 " session: " + fgSession_ +
@@ -377,6 +389,55 @@ public class FGContainerWebSocket implements WebSocketListener
         container_.resetCache();
     }
 
+    /**
+     * Input events received while collecting metrics are fed to the container in batches, so that results are
+     * post-processed and sent to the remote endpoint once per batch. Metrics and ping frames are handled in the
+     * order they have been received, so input received before such frame is fed before it is handled.
+     */
+    private void processPendingEvents()
+    {
+        List<Object> inputEvents = new ArrayList<>();
+        boolean forceRepaint = false;
+        for (FGInputEventDecoder.BinaryInput b : pendingEvents_)
+        {
+            byte[] payload = b.getPayload();
+            if (payload.length > 0 && payload[0] != METRICS_INPUT_CODE - 400 && payload[0] != PING_INPUT_CODE - 400)
+            {
+                fgSession_.markAccesed();
+                latestInputEventTimestamp_ = System.currentTimeMillis();
+                Object e = parser_.getInputEvent(b);
+                predictor_.considerInputEvent(e);
+                if (e != null)
+                {
+                    inputEvents.add(e);
+                    forceRepaint |= e instanceof FGHostStateEvent;
+                }
+            }
+            else
+            {
+                feedInputEvents(inputEvents, forceRepaint);
+                inputEvents = new ArrayList<>();
+                forceRepaint = false;
+                onWebSocketBinary(payload, b.getOffset(), b.getLen());
+            }
+        }
+        feedInputEvents(inputEvents, forceRepaint);
+        pendingEvents_.clear();
+
+        collectAndSendResponse(null, false);
+    }
+
+    private void feedInputEvents(List<Object> inputEvents, boolean forceRepaint)
+    {
+        if (inputEvents.isEmpty())
+        {
+            return;
+        }
+        collectAndSendResponse(container_.feedEvents(inputEvents), forceRepaint);
+        container_.clearForks();
+        predictionsSent_ = false;
+    }
+
     private boolean isStarted()
     {
         return container_ != null;
@@ -554,32 +615,74 @@ public class FGContainerWebSocket implements WebSocketListener
         return container_.getContainer().getQueueSizeWaiting();
     }
 
+    long getCoalescedEventCount()
+    {
+        return container_.getContainer().getCoalescedEventCount();
+    }
+
+    private void notifyInputRejected()
+    {
+        long now = System.currentTimeMillis();
+        if (now - lastOverloadNotificationTime_ >= OVERLOAD_NOTIFICATION_INTERVAL)
+        {
+            lastOverloadNotificationTime_ = now;
+            setTextToRemote("Server is busy, some of your input has been lost");
+        }
+    }
+
     private void sendBytesToRemote(ByteBuffer bytes)
     {
-        endpointTransportService_.submit(() -> {
-            try
-            {
-                session_.getRemote().sendBytes(bytes);
-            }
-            catch (IOException ex)
-            {
-                ex.printStackTrace();
-            }
-        });
+        endpointTransportService_.submit(() -> sendToRemote(remote -> remote.sendBytes(bytes)));
     }
 
     private void setTextToRemote(String text)
     {
-        endpointTransportService_.submit(() -> {
-            try
-            {
-                session_.getRemote().sendString(text);
-            }
-            catch (IOException e)
+        endpointTransportService_.submit(() -> sendToRemote(remote -> remote.sendString(text)));
+    }
+
+    /**
+     * Transport executor runs on threads shared with other sessions, and send blocks until remote endpoint
+     * takes the data. So the pool is told the thread is blocked, and may start another one meanwhile.
+     */
+    private void sendToRemote(IRemoteSend send)
+    {
+        try
+        {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker()
             {
-                e.printStackTrace();
-            }
-        });
+                private boolean sent_;
+
+                @Override
+                public boolean block()
+                {
+                    try
+                    {
+                        send.send(session_.getRemote());
+                    }
+                    catch (IOException ex)
+                    {
+                        ex.printStackTrace();
+                    }
+                    sent_ = true;
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable()
+                {
+                    return sent_;
+                }
+            });
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface IRemoteSend
+    {
+        void send(RemoteEndpoint remote) throws IOException;
     }
 
     public static class FGSessionInfo
@@ -688,5 +791,11 @@ public class FGContainerWebSocket implements WebSocketListener
         {
             throw new UnsupportedOperationException();
         }
+
+        @Override
+        public long getCoalescedEventCount()
+        {
+            throw new UnsupportedOperationException();
+        }
     }
 }
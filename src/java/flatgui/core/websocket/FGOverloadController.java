@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2015 Denys Lebediev and contributors. All rights reserved.
+ * The use and distribution terms for this software are covered by the
+ * Eclipse Public License 1.0 (http://opensource.org/licenses/eclipse-1.0.php)
+ * which can be found in the file LICENSE at the root of this distribution.
+ * By using this software in any fashion, you are agreeing to be bound by
+ * the terms of this license.
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package flatgui.core.websocket;
+
+import flatgui.core.engine.SessionScheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-wide admission control by evolver queue latency. Complements heap state check: a server may have enough
+ * memory for new sessions but not enough CPU to keep existing ones responsive.
+ *
+ * Latency is the longest wait of an evolver task among all sessions of the default {@link SessionScheduler}, so
+ * that a session stalled for long is not averaged away by idle ones. Once it exceeds the threshold, new sessions
+ * are refused until it drops below half of the threshold, so that admission does not flap.
+ *
+ * @author Denis Lebedev
+ */
+class FGOverloadController
+{
+    private volatile long latencyThresholdNanos_;
+    private boolean overloaded_;
+
+    FGOverloadController()
+    {
+        latencyThresholdNanos_ = 0;
+        overloaded_ = false;
+    }
+
+    /**
+     * @param thresholdMillis evolver queue latency beyond which new sessions are refused; 0 turns the check off
+     */
+    void setQueueLatencyThresholdMillis(long thresholdMillis)
+    {
+        latencyThresholdNanos_ = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    synchronized boolean queueLatencyAllowsAcceptingNewSessions()
+    {
+        long threshold = latencyThresholdNanos_;
+        if (threshold <= 0)
+        {
+            overloaded_ = false;
+            return true;
+        }
+        long latency = SessionScheduler.getDefault().getMaxEvolverOldestWaitNanos();
+        boolean overloaded = overloaded_ ? latency > threshold / 2 : latency > threshold;
+        if (overloaded != overloaded_)
+        {
+            FGAppServer.getFGLogger().info("Queue latency " + TimeUnit.NANOSECONDS.toMillis(latency) + " ms, "
+                    + (overloaded ? "stopped" : "resumed") + " accepting new sessions");
+            overloaded_ = overloaded;
+        }
+        return !overloaded;
+    }
+}
@@ -11,6 +11,8 @@ package flatgui.core.websocket;
 
 import javax.swing.*;
 import java.awt.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -125,6 +127,18 @@ public class FGWebInteropUtil implements IFGInteropUtil
         return referenceFontStr_;
     }
 
+    /**
+     * Sessions that have received the same metrics for the font from their clients, or have received none
+     * for it, measure it the same way
+     */
+    @Override
+    public Object getFontMetricsKey(String font)
+    {
+        String fontStr = font != null ? font : referenceFontStr_;
+        byte[] charMetrics = fontStrToCharMetrics_.get(fontStr);
+        return Arrays.asList(Double.valueOf(unitSizePx_), fontStr, charMetrics != null ? ByteBuffer.wrap(charMetrics) : null);
+    }
+
     public double getUnitSizePx()
     {
         return unitSizePx_;
@@ -0,0 +1,112 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.util;
+
+import java.util.Arrays;
+
+/**
+ * Set of vacant non-negative int indices kept as a bit set, that hands out the lowest vacant index first. Reusing
+ * low indices keeps arrays indexed by them dense, and makes allocation order deterministic.
+ *
+ * Allocation looks for the lowest vacant index starting from the lowest word that may have one, so a series of
+ * allocations costs O(1) amortized per index as long as no lower index is released in between.
+ *
+ * @author Denis Lebedev
+ */
+public class IntFreeList
+{
+    private static final int WORD_SHIFT = 6;
+
+    private long[] words_;
+    private int size_;
+
+    // No vacant index is in words before this one
+    private int lowestWord_;
+
+    public IntFreeList()
+    {
+        words_ = new long[1];
+        size_ = 0;
+        lowestWord_ = 0;
+    }
+
+    public IntFreeList(IntFreeList source)
+    {
+        words_ = Arrays.copyOf(source.words_, source.words_.length);
+        size_ = source.size_;
+        lowestWord_ = source.lowestWord_;
+    }
+
+    /**
+     * Makes given index vacant
+     *
+     * @return false if index has already been vacant
+     */
+    public boolean release(int index)
+    {
+        if (index < 0)
+        {
+            throw new IllegalArgumentException("Negative index: " + index);
+        }
+        int word = index >> WORD_SHIFT;
+        if (word >= words_.length)
+        {
+            words_ = Arrays.copyOf(words_, Math.max(word + 1, words_.length * 2));
+        }
+        long bit = 1L << index;
+        if ((words_[word] & bit) != 0)
+        {
+            return false;
+        }
+        words_[word] |= bit;
+        size_++;
+        if (word < lowestWord_)
+        {
+            lowestWord_ = word;
+        }
+        return true;
+    }
+
+    /**
+     * Takes the lowest vacant index
+     *
+     * @return the index that is not vacant any more, or -1 if there are no vacant indices
+     */
+    public int allocate()
+    {
+        if (size_ == 0)
+        {
+            return -1;
+        }
+        int word = lowestWord_;
+        while (words_[word] == 0)
+        {
+            word++;
+        }
+        lowestWord_ = word;
+        int bitIndex = Long.numberOfTrailingZeros(words_[word]);
+        words_[word] &= ~(1L << bitIndex);
+        size_--;
+        return (word << WORD_SHIFT) + bitIndex;
+    }
+
+    public boolean contains(int index)
+    {
+        int word = index >> WORD_SHIFT;
+        return index >= 0 && word < words_.length && (words_[word] & (1L << index)) != 0;
+    }
+
+    public boolean isEmpty()
+    {
+        return size_ == 0;
+    }
+
+    /**
+     * @return number of vacant indices
+     */
+    public int size()
+    {
+        return size_;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.util;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Directed graph over int vertices where each edge carries an int payload. Kept in CSR-like form: edges of
+ * each vertex occupy one contiguous segment of shared primitive arrays. Segments have some slack so that
+ * edges may be inserted and deleted incrementally; a segment that runs out of room is moved to the tail,
+ * and arrays are compacted once abandoned space prevails. Edges of a vertex keep insertion order.
+ *
+ * Iterating edges does not allocate:
+ * <pre>
+ *     for (int i=0; i&lt;graph.getDegree(v); i++) { int w = graph.getTarget(v, i); int p = graph.getPayload(v, i); }
+ * </pre>
+ *
+ * @author Denis Lebedev
+ */
+public class IntGraph
+{
+    private static final int MIN_SEGMENT_CAPACITY = 2;
+
+    private int[] offsets_;
+    private int[] degrees_;
+    private int[] capacities_;
+
+    private int[] targets_;
+    private int[] payloads_;
+
+    private int edgeArrayUsed_;
+    private int edgeArrayAbandoned_;
+    private int edgeCount_;
+
+    public IntGraph(int initialVertexCapacity)
+    {
+        int vertexCapacity = Math.max(initialVertexCapacity, 1);
+        offsets_ = new int[vertexCapacity];
+        degrees_ = new int[vertexCapacity];
+        capacities_ = new int[vertexCapacity];
+        targets_ = new int[vertexCapacity * MIN_SEGMENT_CAPACITY];
+        payloads_ = new int[targets_.length];
+    }
+
+    public IntGraph(IntGraph source)
+    {
+        offsets_ = Arrays.copyOf(source.offsets_, source.offsets_.length);
+        degrees_ = Arrays.copyOf(source.degrees_, source.degrees_.length);
+        capacities_ = Arrays.copyOf(source.capacities_, source.capacities_.length);
+        targets_ = Arrays.copyOf(source.targets_, source.edgeArrayUsed_);
+        payloads_ = Arrays.copyOf(source.payloads_, source.edgeArrayUsed_);
+        edgeArrayUsed_ = source.edgeArrayUsed_;
+        edgeArrayAbandoned_ = source.edgeArrayAbandoned_;
+        edgeCount_ = source.edgeCount_;
+    }
+
+    public int getDegree(int vertex)
+    {
+        return vertex < degrees_.length ? degrees_[vertex] : 0;
+    }
+
+    public int getTarget(int vertex, int edgeIndex)
+    {
+        return targets_[offsets_[vertex] + edgeIndex];
+    }
+
+    public int getPayload(int vertex, int edgeIndex)
+    {
+        return payloads_[offsets_[vertex] + edgeIndex];
+    }
+
+    public void setPayload(int vertex, int edgeIndex, int payload)
+    {
+        payloads_[offsets_[vertex] + edgeIndex] = payload;
+    }
+
+    /**
+     * @return index of the edge from..to among edges of vertex from, or -1 if there is no such edge
+     */
+    public int indexOfEdge(int from, int to)
+    {
+        int degree = getDegree(from);
+        if (degree == 0)
+        {
+            return -1;
+        }
+        int offset = offsets_[from];
+        for (int i=0; i<degree; i++)
+        {
+            if (targets_[offset + i] == to)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return true if edge has been added; false if it already exists (in which case it is left intact)
+     */
+    public boolean addEdge(int from, int to, int payload)
+    {
+        if (indexOfEdge(from, to) >= 0)
+        {
+            return false;
+        }
+        ensureVertexCapacity(from + 1);
+        int degree = degrees_[from];
+        if (degree == capacities_[from])
+        {
+            relocateSegment(from, Math.max(MIN_SEGMENT_CAPACITY, degree * 2));
+        }
+        int position = offsets_[from] + degree;
+        targets_[position] = to;
+        payloads_[position] = payload;
+        degrees_[from] = degree + 1;
+        edgeCount_++;
+        return true;
+    }
+
+    /**
+     * @return payload of removed edge, or -1 if there was no such edge
+     */
+    public int removeEdge(int from, int to)
+    {
+        int edgeIndex = indexOfEdge(from, to);
+        if (edgeIndex < 0)
+        {
+            return -1;
+        }
+        int offset = offsets_[from];
+        int payload = payloads_[offset + edgeIndex];
+        int tail = degrees_[from] - edgeIndex - 1;
+        System.arraycopy(targets_, offset + edgeIndex + 1, targets_, offset + edgeIndex, tail);
+        System.arraycopy(payloads_, offset + edgeIndex + 1, payloads_, offset + edgeIndex, tail);
+        degrees_[from]--;
+        edgeCount_--;
+        return payload;
+    }
+
+    /**
+     * Removes outgoing edges of given vertex whose targets match given predicate, in one pass over the edges
+     * and keeping the order of the rest
+     *
+     * @return number of removed edges
+     */
+    public int removeEdges(int from, IntPredicate targetPredicate)
+    {
+        int degree = getDegree(from);
+        if (degree == 0)
+        {
+            return 0;
+        }
+        int offset = offsets_[from];
+        int kept = 0;
+        for (int i=0; i<degree; i++)
+        {
+            int target = targets_[offset + i];
+            if (!targetPredicate.test(target))
+            {
+                targets_[offset + kept] = target;
+                payloads_[offset + kept] = payloads_[offset + i];
+                kept++;
+            }
+        }
+        degrees_[from] = kept;
+        edgeCount_ -= degree - kept;
+        return degree - kept;
+    }
+
+    /**
+     * Removes all outgoing edges of given vertex, releasing its segment
+     */
+    public void clearVertex(int vertex)
+    {
+        if (vertex < degrees_.length)
+        {
+            edgeCount_ -= degrees_[vertex];
+            edgeArrayAbandoned_ += capacities_[vertex];
+            degrees_[vertex] = 0;
+            capacities_[vertex] = 0;
+            offsets_[vertex] = 0;
+            compactIfNeeded();
+        }
+    }
+
+    public int getEdgeCount()
+    {
+        return edgeCount_;
+    }
+
+    public int getVertexCapacity()
+    {
+        return degrees_.length;
+    }
+
+    // Private
+
+    private void ensureVertexCapacity(int vertexCount)
+    {
+        if (vertexCount > degrees_.length)
+        {
+            int newCapacity = Math.max(vertexCount, degrees_.length * 2);
+            offsets_ = Arrays.copyOf(offsets_, newCapacity);
+            degrees_ = Arrays.copyOf(degrees_, newCapacity);
+            capacities_ = Arrays.copyOf(capacities_, newCapacity);
+        }
+    }
+
+    private void relocateSegment(int vertex, int newSegmentCapacity)
+    {
+        ensureEdgeArrayCapacity(edgeArrayUsed_ + newSegmentCapacity);
+        int degree = degrees_[vertex];
+        System.arraycopy(targets_, offsets_[vertex], targets_, edgeArrayUsed_, degree);
+        System.arraycopy(payloads_, offsets_[vertex], payloads_, edgeArrayUsed_, degree);
+        edgeArrayAbandoned_ += capacities_[vertex];
+        offsets_[vertex] = edgeArrayUsed_;
+        capacities_[vertex] = newSegmentCapacity;
+        edgeArrayUsed_ += newSegmentCapacity;
+        compactIfNeeded();
+    }
+
+    private void ensureEdgeArrayCapacity(int requiredSize)
+    {
+        if (requiredSize > targets_.length)
+        {
+            int newLength = Math.max(requiredSize, targets_.length * 2);
+            targets_ = Arrays.copyOf(targets_, newLength);
+            payloads_ = Arrays.copyOf(payloads_, newLength);
+        }
+    }
+
+    private void compactIfNeeded()
+    {
+        if (edgeArrayAbandoned_ > 1024 && edgeArrayAbandoned_ > edgeArrayUsed_ / 2)
+        {
+            int[] targets = new int[Math.max(edgeArrayUsed_ - edgeArrayAbandoned_, 1) * 2];
+            int[] payloads = new int[targets.length];
+            int used = 0;
+            for (int v=0; v<degrees_.length; v++)
+            {
+                int capacity = capacities_[v];
+                if (capacity > 0)
+                {
+                    System.arraycopy(targets_, offsets_[v], targets, used, degrees_[v]);
+                    System.arraycopy(payloads_, offsets_[v], payloads, used, degrees_[v]);
+                    offsets_[v] = used;
+                    used += capacity;
+                }
+            }
+            targets_ = targets;
+            payloads_ = payloads;
+            edgeArrayUsed_ = used;
+            edgeArrayAbandoned_ = 0;
+        }
+    }
+}
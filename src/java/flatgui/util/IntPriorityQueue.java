@@ -0,0 +1,122 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Binary min-heap of primitive int elements ordered by primitive long priority. Does not box
+ * and does not allocate once it has grown to the working size.
+ *
+ * @author Denis Lebedev
+ */
+public class IntPriorityQueue
+{
+    private int size_;
+    private int[] elements_;
+    private long[] priorities_;
+
+    public IntPriorityQueue(int initialCapacity)
+    {
+        int capacity = Math.max(initialCapacity, 1);
+        elements_ = new int[capacity];
+        priorities_ = new long[capacity];
+        size_ = 0;
+    }
+
+    public void add(int element, long priority)
+    {
+        if (size_ == elements_.length)
+        {
+            int newCapacity = elements_.length * 2;
+            elements_ = Arrays.copyOf(elements_, newCapacity);
+            priorities_ = Arrays.copyOf(priorities_, newCapacity);
+        }
+
+        int i = size_;
+        size_++;
+        while (i > 0)
+        {
+            int parent = (i - 1) >>> 1;
+            if (priorities_[parent] <= priority)
+            {
+                break;
+            }
+            elements_[i] = elements_[parent];
+            priorities_[i] = priorities_[parent];
+            i = parent;
+        }
+        elements_[i] = element;
+        priorities_[i] = priority;
+    }
+
+    /**
+     * @return priority of the head element; must not be called on empty queue
+     */
+    public long peekPriority()
+    {
+        checkNotEmpty();
+        return priorities_[0];
+    }
+
+    /**
+     * Removes the element with the least priority. Elements of equal priority are returned in no particular order.
+     */
+    public int poll()
+    {
+        checkNotEmpty();
+        int head = elements_[0];
+        size_--;
+        if (size_ > 0)
+        {
+            int element = elements_[size_];
+            long priority = priorities_[size_];
+            int i = 0;
+            int half = size_ >>> 1;
+            while (i < half)
+            {
+                int child = 2*i + 1;
+                int right = child + 1;
+                if (right < size_ && priorities_[right] < priorities_[child])
+                {
+                    child = right;
+                }
+                if (priority <= priorities_[child])
+                {
+                    break;
+                }
+                elements_[i] = elements_[child];
+                priorities_[i] = priorities_[child];
+                i = child;
+            }
+            elements_[i] = element;
+            priorities_[i] = priority;
+        }
+        return head;
+    }
+
+    public boolean isEmpty()
+    {
+        return size_ == 0;
+    }
+
+    public int size()
+    {
+        return size_;
+    }
+
+    public void clear()
+    {
+        size_ = 0;
+    }
+
+    private void checkNotEmpty()
+    {
+        if (size_ == 0)
+        {
+            throw new NoSuchElementException();
+        }
+    }
+}
@@ -50,13 +50,7 @@ public class ObjectMatrix<T> implements RandomAccess, IObjectListCoder<T>, IMatr
         int[] indices = new int[pathSize];
         for (int row=0; row<pathSize; row++)
         {
-            T elem = path.get(row);
-            int ei = indexOfInRow(elem, row);
-            if (ei == -1)
-            {
-                ei = addToRow(elem, row);
-            }
-            indices[row] = ei;
+            indices[row] = addIfAbsent(row, path.get(row));
         }
         return indices;
     }
@@ -67,6 +61,10 @@ public class ObjectMatrix<T> implements RandomAccess, IObjectListCoder<T>, IMatr
         return data_[row][col];
     }
 
+    /**
+     * Lookup is lock-free; appending is synchronized so that the matrix may be used by evolvers running
+     * concurrently. Elements are never removed or moved, so an index once obtained stays valid.
+     */
     @Override
     public int addIfAbsent(int row, T elem)
     {
@@ -75,12 +73,10 @@ public class ObjectMatrix<T> implements RandomAccess, IObjectListCoder<T>, IMatr
         {
             return index;
         }
-        else
+        synchronized (this)
         {
-            int rowSize = rowSizes_[row];
-            data_[row][rowSize] = elem;
-            rowSizes_[row] = rowSize + 1;
-            return rowSize;
+            index = indexOfInRow(elem, row);
+            return index >= 0 ? index : addToRow(elem, row);
         }
     }
 
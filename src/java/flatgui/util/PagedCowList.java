@@ -0,0 +1,149 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Growable list of fixed-size pages that supports cheap copying: a copy shares all pages with its source,
+ * and either list copies a page only when it writes to it for the first time after copying. So copying
+ * costs O(size/PAGE_SIZE), and lists that change only a few elements afterwards keep sharing most pages.
+ *
+ * Copying marks pages as shared in both lists, so source must not be modified concurrently with copying.
+ * Otherwise, lists created from one another may be used from different threads independently.
+ *
+ * @author Denis Lebedev
+ */
+public class PagedCowList<T> extends AbstractList<T> implements RandomAccess
+{
+    static final int PAGE_SHIFT = 7;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private Object[][] pages_;
+    private boolean[] ownPages_;
+    private int size_;
+
+    public PagedCowList(int initialCapacity)
+    {
+        int pageCount = Math.max((initialCapacity + PAGE_MASK) >> PAGE_SHIFT, 1);
+        pages_ = new Object[pageCount][];
+        ownPages_ = new boolean[pageCount];
+        size_ = 0;
+    }
+
+    public PagedCowList(PagedCowList<T> source)
+    {
+        int usedPageCount = getPageCount(source.size_);
+        pages_ = Arrays.copyOf(source.pages_, Math.max(usedPageCount, 1));
+        ownPages_ = new boolean[pages_.length];
+        Arrays.fill(source.ownPages_, false);
+        size_ = source.size_;
+    }
+
+    @Override
+    public T get(int index)
+    {
+        if (index >= size_)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size_);
+        }
+        return elementAt(pages_[index >> PAGE_SHIFT], index);
+    }
+
+    @Override
+    public int size()
+    {
+        return size_;
+    }
+
+    @Override
+    public T set(int index, T element)
+    {
+        if (index >= size_)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size_);
+        }
+        Object[] page = getPageForWrite(index >> PAGE_SHIFT);
+        T oldElement = elementAt(page, index);
+        page[index & PAGE_MASK] = element;
+        return oldElement;
+    }
+
+    @Override
+    public boolean add(T element)
+    {
+        int pageIndex = size_ >> PAGE_SHIFT;
+        if (pageIndex == pages_.length)
+        {
+            int newPageCount = pages_.length + Math.max(pages_.length >> 1, 1);
+            pages_ = Arrays.copyOf(pages_, newPageCount);
+            ownPages_ = Arrays.copyOf(ownPages_, newPageCount);
+        }
+        getPageForWrite(pageIndex)[size_ & PAGE_MASK] = element;
+        size_++;
+        return true;
+    }
+
+    /**
+     * Releases page table slots beyond the pages in use
+     */
+    public void trimCapacity()
+    {
+        int usedPageCount = Math.max(getPageCount(size_), 1);
+        if (pages_.length > usedPageCount)
+        {
+            pages_ = Arrays.copyOf(pages_, usedPageCount);
+            ownPages_ = Arrays.copyOf(ownPages_, usedPageCount);
+        }
+    }
+
+    /**
+     * @return number of pages this list has allocated or copied itself (since it has been created or copied)
+     */
+    public int getOwnPageCount()
+    {
+        int count = 0;
+        for (int i=0; i<ownPages_.length; i++)
+        {
+            if (ownPages_[i])
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getPageCount()
+    {
+        return getPageCount(size_);
+    }
+
+    // Private
+
+    @SuppressWarnings("unchecked")
+    private static <T> T elementAt(Object[] page, int index)
+    {
+        return (T) page[index & PAGE_MASK];
+    }
+
+    private Object[] getPageForWrite(int pageIndex)
+    {
+        Object[] page = pages_[pageIndex];
+        if (!ownPages_[pageIndex])
+        {
+            page = page != null ? Arrays.copyOf(page, PAGE_SIZE) : new Object[PAGE_SIZE];
+            pages_[pageIndex] = page;
+            ownPages_[pageIndex] = true;
+        }
+        return page;
+    }
+
+    private static int getPageCount(int size)
+    {
+        return (size + PAGE_MASK) >> PAGE_SHIFT;
+    }
+}
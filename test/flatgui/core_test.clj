@@ -19,15 +19,21 @@
             [flatgui.inputchannels.host :as host]
             [flatgui.inputchannels.clipboard :as clipboard]
             [flatgui.inputchannels.timer :as timer])
-  (:import (flatgui.core.engine IResultCollector Container ClojureContainerParser)
-           (flatgui.core.engine.ui FGAppContainer FGAWTAppContainer)
-           (flatgui.core.awt FGAWTInteropUtil)
-           (java.util ArrayList)
+  (:import (flatgui.core.engine IResultCollector Container ComponentMapView Container$EvolveMode ClojureContainerParser AppContainer AppContainer$OverloadPolicy IEventCoalescingPolicy)
+           (flatgui.core.engine.ui FGAppContainer FGAWTAppContainer FGClojureResultCollector FGLookCache FGRemoteAppContainer FGRemoteClojureResultCollector)
+           (flatgui.core.engine.remote FGLegacyCoreGlue$GlueModule)
+           (flatgui.core FGWebContainerWrapper$KeyCache)
+           (flatgui.core.awt FGAWTInteropUtil FGIncomingMouseWheelEvent)
+           (flatgui.core.websocket FGWebInteropUtil)
+           (clojure.lang MapEntry)
+           (java.util ArrayList HashSet)
            (java.util.function Consumer)
            (java.awt.geom AffineTransform)
            (flatgui.core IFGEvolveConsumer)
            (java.util.concurrent.locks ReentrantLock)
-           (java.util.concurrent TimeUnit)))
+           (java.util.concurrent TimeUnit CountDownLatch ExecutionException ForkJoinPool)
+           (java.lang.management ManagementFactory)
+           (java.awt.event MouseEvent MouseWheelEvent KeyEvent)))
 
 (test/deftest get-property-call?-test
   (test/is (true? (core/get-property-call? (list 'get-property [:a :b] :c))))
@@ -87,6 +93,147 @@
     (test/is (= 18 (get @results [[:main :c2] :b])))
     (test/is (= 15 (get @results [[:main :c2] :d])))))
 
+;; :d depends on [:this :c1] :s directly and also via :b; FIFO mode evaluates :d twice
+(defn- diamond-evolve-run [evolve-mode]
+  (let [d-evaluations (atom 0)
+        d-reason-counts (atom [])
+        d-results (atom [])
+        _ (core/defevolverfn evolver-s :s (if (map? (get-reason)) (:x (get-reason)) old-s))
+        _ (core/defevolverfn evolver-b :b (inc (get-property [:this :c1] :s)))
+        _ (core/defevolverfn evolver-d :d (do
+                                            (swap! d-evaluations inc)
+                                            (swap! d-reason-counts conj (count (.getEvolveReasons component)))
+                                            (+ (get-property [:this :c1] :s) (get-property [:this] :b))))
+        container (core/defroot
+                    {:id :main
+                     :b 2
+                     :d 3
+                     :evolvers {:b evolver-b
+                                :d evolver-d}
+                     :children {:c1 {:id :c1
+                                     :s 1
+                                     :evolvers {:s evolver-s}}}})
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid, path, node, newValue]
+                             (if (= :d (.getPropertyId node)) (swap! d-results conj newValue)))
+                           (componentAdded [_parentComponentUid _componentUid])
+                           (postProcessAfterEvolveCycle [_a _m]))
+        container-engine (Container.
+                           "diamond-evolve-test"
+                           (ClojureContainerParser.)
+                           result-collector
+                           container)
+        _ (.setEvolveMode container-engine evolve-mode)
+        _ (reset! d-evaluations 0)
+        _ (reset! d-reason-counts [])
+        _ (reset! d-results [])
+        _ (.evolve container-engine [:main :c1] {:x 10})]
+    {:d-evaluations @d-evaluations
+     :d-reason-counts @d-reason-counts
+     :d-results @d-results
+     :avoided (.getAvoidedEvolverInvocationCount container-engine)}))
+
+(test/deftest ranked-evolve-test
+  (let [fifo (diamond-evolve-run Container$EvolveMode/Fifo)
+        ranked (diamond-evolve-run Container$EvolveMode/Ranked)]
+    (test/is (= 2 (:d-evaluations fifo)))
+    (test/is (= 21 (last (:d-results fifo))))
+    (test/is (= 1 (:d-evaluations ranked)))
+    (test/is (= [2] (:d-reason-counts ranked)))
+    (test/is (= [21] (:d-results ranked)))
+    (test/is (= 1 (:avoided ranked)))))
+
+;; 300 independent children depend on root :src; in parallel mode they are evaluated as independent groups
+(defn- fan-out-evolve-run [evolve-mode]
+  (let [_ (core/defevolverfn evolver-src :src (if-let [v (:src (get-reason))] v old-src))
+        _ (core/defevolverfn evolver-a :a (+ (get-property [] :src) (:k component)))
+        _ (core/defevolverfn evolver-b :b (* 2 (get-property [:this] :a)))
+        child-count 300
+        children (into {} (map (fn [i] (let [id (keyword (str "c" i))]
+                                         [id {:id id :k i :a 0 :b 0 :evolvers {:a evolver-a :b evolver-b}}]))
+                               (range child-count)))
+        container (core/defroot
+                    {:id :main
+                     :src 1
+                     :evolvers {:src evolver-src}
+                     :children children})
+        results (atom [])
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid, path, node, newValue]
+                             (swap! results conj [path (.getPropertyId node) newValue]))
+                           (componentAdded [_parentComponentUid _componentUid])
+                           (postProcessAfterEvolveCycle [_a _m]))
+        container-engine (Container.
+                           "fan-out-evolve-test"
+                           (ClojureContainerParser.)
+                           result-collector
+                           container)
+        _ (.setEvolveMode container-engine evolve-mode)
+        _ (reset! results [])
+        _ (.evolve container-engine [:main] {:src 10})]
+    {:results @results
+     :values (set (map (fn [i] [(.getPropertyValue container-engine [:main (keyword (str "c" i))] :a)
+                                (.getPropertyValue container-engine [:main (keyword (str "c" i))] :b)])
+                       (range child-count)))
+     :parallel-cycles (.getParallelEvolveCycleCount container-engine)}))
+
+(test/deftest parallel-evolve-test
+  (let [fifo (fan-out-evolve-run Container$EvolveMode/Fifo)
+        parallel1 (fan-out-evolve-run Container$EvolveMode/Parallel)
+        parallel2 (fan-out-evolve-run Container$EvolveMode/Parallel)]
+    (test/is (= 0 (:parallel-cycles fifo)))
+    (test/is (= 1 (:parallel-cycles parallel1)))
+    (test/is (= (:values fifo) (:values parallel1)))
+    (test/is (= (set (:results fifo)) (set (:results parallel1))))
+    (test/is (= 601 (count (:results parallel1))))
+    (test/is (= (:results parallel1) (:results parallel2)))))
+
+;; Returns average bytes allocated by the evolver thread per evolve cycle in which each of child-count
+;; children gets triggered by the change of the root property
+(defn- dependent-trigger-allocation [child-count]
+  (let [_ (core/defevolverfn evolver-src :src (if (mouse/mouse-moved? component) (mouse/get-mouse-x component) old-src))
+        _ (core/defevolverfn evolver-a :a (get-property [] :src))
+        children (into {} (map (fn [i] (let [id (keyword (str "c" i))]
+                                         [id {:id id :a 0 :evolvers {:a evolver-a}}]))
+                               (range child-count)))
+        container (core/defroot
+                    {:id :main
+                     :src 1
+                     :evolvers {:src evolver-src}
+                     :children children})
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid _path _node _newValue])
+                           (componentAdded [_parentComponentUid _componentUid])
+                           (postProcessAfterEvolveCycle [_a _m]))
+        ^Container container-engine (Container.
+                                      "dependent-trigger-allocation-test"
+                                      (ClojureContainerParser.)
+                                      result-collector
+                                      container)
+        ^com.sun.management.ThreadMXBean mx (ManagementFactory/getThreadMXBean)
+        thread-id (.getId (Thread/currentThread))
+        cycle-count 100
+        source (proxy [java.awt.Component] [])
+        reasons [(MouseEvent. source MouseEvent/MOUSE_MOVED 0 0 1 1 0 false)
+                 (MouseEvent. source MouseEvent/MOUSE_MOVED 0 0 2 1 0 false)]
+        _ (dotimes [i (* 2 cycle-count)] (.evolve container-engine [:main] (nth reasons (mod i 2))))
+        bytes-before (.getThreadAllocatedBytes mx thread-id)
+        _ (dotimes [i cycle-count] (.evolve container-engine [:main] (nth reasons (mod i 2))))
+        bytes-per-cycle (/ (- (.getThreadAllocatedBytes mx thread-id) bytes-before) cycle-count)]
+    (test/is (= (.getPropertyValue container-engine [:main] :src)
+                (.getPropertyValue container-engine [:main (keyword (str "c" (dec child-count)))] :a)))
+    bytes-per-cycle))
+
+(test/deftest dependent-trigger-allocation-test
+  (when (.isThreadAllocatedMemorySupported ^com.sun.management.ThreadMXBean (ManagementFactory/getThreadMXBean))
+    ;; Child ids at one path position have to fit CompactList encoding (1024), so the larger tree stays below that
+    (let [small (dependent-trigger-allocation 100)
+          large (dependent-trigger-allocation 1000)
+          bytes-per-triggered-node (/ (- large small) 900)]
+      ;; Reason vectors are precomputed per dependency edge, so what remains per node is its share of the value
+      ;; pages copied on write, under 30 bytes. Building a reason vector per trigger used to cost about 140 bytes
+      (test/is (< bytes-per-triggered-node 48)))))
+
 (test/deftest init-&-evolve-test2
   (let [_ (core/defevolverfn :z-position
                              (let [pz {:a (get-property component [] :z-position)}]
@@ -389,6 +536,244 @@
         container-accessor (.getContainerAccessor ui-app)]
     (test/is (= [["fillRect" 0 0 4 4]] (.get (.getComponent container-accessor 0) :look-vec)))))
 
+(test/deftest look-rebuild-skip-test
+  (let [_ (core/defevolverfn :a (if-let [v (:a (get-reason))] v old-a))
+        _ (core/defevolverfn :b (if-let [v (:b (get-reason))] v old-b))
+        _ (fgp/deflookfn test-look (:a) (awt/fillRect 0 0 a a))
+        container (core/defroot
+                    {:id :main
+                     :a 1
+                     :b 1
+                     :popup false
+                     :look test-look
+                     :look-vec []
+                     :position-matrix nil
+                     :viewport-matrix nil
+                     :clip-size nil
+                     :evolvers {:a a-evolver
+                                :b b-evolver}})
+        result-collector (FGClojureResultCollector. 64)
+        ui-app (FGAppContainer. "c1" container (FGAWTInteropUtil. 64) result-collector 64)
+        _ (.initialize ui-app)
+        container-accessor (.getContainerAccessor ui-app)
+        evolve (fn [reason] (.get (.evolveBatch ui-app [(MapEntry. (Integer/valueOf 0) reason)]) 5 TimeUnit/SECONDS))]
+    (test/is (= [["fillRect" 0 0 1 1]] (.get (.getComponent container-accessor 0) :look-vec)))
+    (evolve {:b 2})
+    (test/is (= 0 (.getLastCycleLookRebuildCount result-collector)))
+    (test/is (= 1 (.getLastCycleSkippedLookRebuildCount result-collector)))
+    (evolve {:a 3})
+    (test/is (= 1 (.getLastCycleLookRebuildCount result-collector)))
+    (test/is (= 0 (.getLastCycleSkippedLookRebuildCount result-collector)))
+    (test/is (= [["fillRect" 0 0 3 3]] (.get (.getComponent container-accessor 0) :look-vec)))
+    (test/is (= 1 (.getSkippedLookRebuildCount result-collector)))
+    (let [component (.getComponent container-accessor 0)
+          view (ComponentMapView. component)]
+      (test/is (= 3 (:a view)))
+      (test/is (= 2 (get view :b)))
+      (test/is (= :nf (get view :missing :nf)))
+      (test/is (contains? view :look-vec))
+      (test/is (not (contains? view :missing)))
+      (test/is (= (count component) (count view)))
+      (test/is (= (into {} component) (into {} view)))
+      (test/is (= 5 (:z (assoc view :z 5))))
+      (test/is (= 3 (:a (assoc view :z 5)))))
+    (.unInitialize ui-app)))
+
+(test/deftest look-cache-test
+  (let [_ (core/defevolverfn :a (if-let [v (:a (get-reason))] v old-a))
+        _ (fgp/deflookfn test-look (:a) (awt/fillRect 0 0 a a))
+        container (core/defroot
+                    {:id :main
+                     :a 1
+                     :popup false
+                     :look test-look
+                     :look-vec []
+                     :position-matrix nil
+                     :viewport-matrix nil
+                     :clip-size nil
+                     :evolvers {:a a-evolver}})
+        interop (FGAWTInteropUtil. 64)
+        look-cache (FGLookCache. 100000)
+        create-app (fn [id]
+                     (let [result-collector (FGClojureResultCollector. 64)
+                           _ (.setLookCache result-collector look-cache)
+                           app (FGAppContainer. id container interop result-collector 64)]
+                       (.initialize app)
+                       app))
+        look-vec (fn [app] (.get (.getComponent (.getContainerAccessor app) 0) :look-vec))
+        app1 (create-app "c1")
+        _ (test/is (= 0 (.getHitCount look-cache)))
+        _ (test/is (= 1 (.getEntryCount look-cache)))
+        app2 (create-app "c2")]
+    (test/is (= 1 (.getHitCount look-cache)))
+    (test/is (= [["fillRect" 0 0 1 1]] (look-vec app2)))
+    (.get (.evolveBatch app1 [(MapEntry. (Integer/valueOf 0) {:a 2})]) 5 TimeUnit/SECONDS)
+    (.get (.evolveBatch app2 [(MapEntry. (Integer/valueOf 0) {:a 2})]) 5 TimeUnit/SECONDS)
+    (test/is (= 2 (.getHitCount look-cache)))
+    (test/is (= [["fillRect" 0 0 2 2]] (look-vec app1) (look-vec app2)))
+    (test/is (= 2 (.getEntryCount look-cache)))
+    (test/is (= 0 (.getEvictionCount look-cache)))
+    (.unInitialize app1)
+    (.unInitialize app2)
+    (let [small-cache (FGLookCache. (quot (.getSizeBytes look-cache) 2))
+          result-collector (FGClojureResultCollector. 64)
+          _ (.setLookCache result-collector small-cache)
+          app (FGAppContainer. "c3" container interop result-collector 64)
+          _ (.initialize app)]
+      (.get (.evolveBatch app [(MapEntry. (Integer/valueOf 0) {:a 2})]) 5 TimeUnit/SECONDS)
+      (test/is (= 1 (.getEntryCount small-cache)))
+      (test/is (= 1 (.getEvictionCount small-cache)))
+      (test/is (<= (.getSizeBytes small-cache) (.getMaxSizeBytes small-cache)))
+      (.unInitialize app))))
+
+;; Each session has interop util of its own, as web sessions do
+(test/deftest look-cache-interop-test
+  (let [_ (fgp/deflookfn test-look (:a) (awt/fillRect 0 0 a a))
+        container (core/defroot
+                    {:id :main
+                     :a 1
+                     :font "12px Tahoma"
+                     :popup false
+                     :look test-look
+                     :look-vec []
+                     :position-matrix nil
+                     :viewport-matrix nil
+                     :clip-size nil})
+        look-cache (FGLookCache. 100000)
+        create-app (fn [id interop]
+                     (let [result-collector (FGClojureResultCollector. 64)
+                           _ (.setLookCache result-collector look-cache)
+                           app (FGAppContainer. id container interop result-collector 64)]
+                       (.initialize app)
+                       app))
+        look-vec (fn [app] (.get (.getComponent (.getContainerAccessor app) 0) :look-vec))
+        metrics-transmission (fn [font char-width]
+                               (byte-array (concat [0 (count font)] (map int font) (repeat 95 char-width))))
+        app1 (create-app "c1" (FGWebInteropUtil. 64))
+        app2 (create-app "c2" (FGWebInteropUtil. 64))
+        _ (test/is (= 1 (.getHitCount look-cache)))
+        interop3 (FGWebInteropUtil. 64)
+        _ (.setMetricsTransmission interop3 (metrics-transmission "12px Tahoma" 7))
+        app3 (create-app "c3" interop3)]
+    (test/is (= 1 (.getHitCount look-cache)))
+    (test/is (= 2 (.getEntryCount look-cache)))
+    (test/is (= (look-vec app1) (look-vec app2) (look-vec app3)))
+    (.unInitialize app1)
+    (.unInitialize app2)
+    (.unInitialize app3)))
+
+(test/deftest parallel-look-rebuild-test
+  (let [_ (core/defevolverfn :a (if-let [v (:a (get-reason))] v old-a))
+        _ (fgp/deflookfn test-look (:a :n) (awt/fillRect 0 0 a n))
+        child-count 200
+        container (core/defroot
+                    {:id :main
+                     :a 1
+                     :n 0
+                     :popup false
+                     :look test-look
+                     :look-vec []
+                     :position-matrix nil
+                     :viewport-matrix nil
+                     :clip-size nil
+                     :evolvers {:a a-evolver}
+                     :children (into {} (for [i (range child-count)]
+                                          [(keyword (str "c" i)) {:id (keyword (str "c" i))
+                                                                  :a 1
+                                                                  :n i
+                                                                  :popup false
+                                                                  :look test-look
+                                                                  :look-vec []
+                                                                  :position-matrix nil
+                                                                  :viewport-matrix nil
+                                                                  :clip-size nil
+                                                                  :evolvers {:a a-evolver}}]))})
+        pool (ForkJoinPool. 4)
+        create-app (fn [id parallel]
+                     (let [result-collector (FGClojureResultCollector. 64)
+                           _ (.setLookCache result-collector nil)
+                           _ (if parallel (.setParallelLookRebuildPool result-collector pool))
+                           app (FGAppContainer. id container (FGAWTInteropUtil. 64) result-collector 64)]
+                       (.initialize app)
+                       [app result-collector]))
+        look-vecs (fn [app]
+                    (let [accessor (.getContainerAccessor app)]
+                      (mapv (fn [uid] (.get (.getComponent accessor uid) :look-vec)) (range (inc child-count)))))
+        [sequential-app sequential-collector] (create-app "c1" false)
+        [parallel-app parallel-collector] (create-app "c2" true)]
+    (test/is (= (look-vecs sequential-app) (look-vecs parallel-app)))
+    (test/is (= [["fillRect" 0 0 1 7]] (get (look-vecs parallel-app) (.getComponentUid parallel-app [:main :c7]))))
+    (let [reasons (vec (for [i (range child-count)] (MapEntry. (.getComponentUid parallel-app [:main (keyword (str "c" i))]) {:a 2})))]
+      (.get (.evolveBatch sequential-app reasons) 5 TimeUnit/SECONDS)
+      (.get (.evolveBatch parallel-app reasons) 5 TimeUnit/SECONDS))
+    (test/is (= 1 (.getParallelLookRebuildCycleCount parallel-collector)))
+    (test/is (= 0 (.getParallelLookRebuildCycleCount sequential-collector)))
+    (test/is (= (look-vecs sequential-app) (look-vecs parallel-app)))
+    (test/is (= [["fillRect" 0 0 2 7]] (get (look-vecs parallel-app) (.getComponentUid parallel-app [:main :c7]))))
+    (.unInitialize sequential-app)
+    (.unInitialize parallel-app)
+    (.shutdown pool)))
+
+(test/deftest paint-all-sequence-test
+  (let [_ (core/defevolverfn :a (if-let [v (:a (get-reason))] v old-a))
+        _ (core/defevolverfn :children-z-order (if-let [order (:order (get-reason))] order old-children-z-order))
+        _ (core/defevolverfn :children (cond
+                                         (:add (get-reason)) (assoc old-children :c3 (assoc (:c0 old-children) :id :c3))
+                                         (:remove (get-reason)) (dissoc old-children :c0)
+                                         :else old-children))
+        _ (fgp/deflookfn test-look (:a) (awt/fillRect 0 0 a a))
+        component (fn [id children]
+                    (merge {:id id
+                            :a 1
+                            :popup false
+                            :look test-look
+                            :look-vec []
+                            :position-matrix nil
+                            :viewport-matrix nil
+                            :clip-size nil
+                            :evolvers {:a a-evolver}}
+                           (if children
+                             {:children children
+                              :children-z-order (vec (keys children))
+                              :evolvers {:a a-evolver
+                                         :children children-evolver
+                                         :children-z-order children-z-order-evolver}})))
+        container (core/defroot
+                    (component :main {:c0 (component :c0 {:c00 (component :c00 nil)})
+                                      :c1 (component :c1 nil)
+                                      :c2 (component :c2 nil)}))
+        result-collector (FGRemoteClojureResultCollector. 64 FGWebContainerWrapper$KeyCache/INSTANCE
+                                                          (FGLegacyCoreGlue$GlueModule. "paint-all-sequence-test") (HashSet.))
+        app (FGRemoteAppContainer. "paint-all-sequence-test" container result-collector)
+        _ (.initialize app)
+        accessor (.getContainerAccessor app)
+        walk (fn walk [uid]
+               (cons uid (mapcat walk (.getChildIndices (.getComponent accessor (int uid))))))
+        uid (fn [& path] (.getComponentUid app (vec (cons :main path))))
+        evolve (fn [reason] (.get (.evolveBatch app [(MapEntry. (Integer/valueOf 0) reason)]) 5 TimeUnit/SECONDS))
+        initial-sequence (.getPaintAllSequence app)]
+    (test/is (= (walk 0) initial-sequence))
+    (test/is (= 5 (count initial-sequence)))
+    (test/is (identical? initial-sequence (.getPaintAllSequence app)))
+    (let [build-count (.getPaintAllSequenceBuildCount result-collector)]
+      (evolve {:a 2})
+      (test/is (identical? initial-sequence (.getPaintAllSequence app)))
+      (evolve {:order [:c2 :c1 :c0]})
+      (test/is (= [(uid) (uid :c2) (uid :c1) (uid :c0) (uid :c0 :c00)] (.getPaintAllSequence app)))
+      (test/is (= (walk 0) (.getPaintAllSequence app)))
+      (.getPaintAllSequence app)
+      (test/is (= (inc build-count) (.getPaintAllSequenceBuildCount result-collector))))
+    (evolve {:add true})
+    (test/is (= (walk 0) (.getPaintAllSequence app)))
+    (test/is (= 7 (count (.getPaintAllSequence app))))
+    (evolve {:order [:c3 :c0 :c2 :c1]})
+    (test/is (= [(uid) (uid :c3) (uid :c3 :c00) (uid :c0) (uid :c0 :c00) (uid :c2) (uid :c1)] (.getPaintAllSequence app)))
+    (test/is (= (walk 0) (.getPaintAllSequence app)))
+    (evolve {:remove true :order [:c3 :c2 :c1]})
+    (test/is (= [(uid) (uid :c3) (uid :c3 :c00) (uid :c2) (uid :c1)] (.getPaintAllSequence app)))
+    (test/is (= (walk 0) (.getPaintAllSequence app)))
+    (.unInitialize app)))
+
 (test/deftest paint-all-test
   (let [_ (core/defevolverfn :a (* (get-property [:this] :b) 2))
         _ (fgp/deflookfn test-look (:a) (awt/fillRect 0 0 a a))
@@ -437,6 +822,104 @@
                  ["transform" (.createInverse (AffineTransform. 1.0 0.0 0.0 1.0 2.0 1.0))]
                  ["popCurrentClip"]] paint-all-vec))))
 
+;; Evolver thread is held by the first event, so that subsequent ones wait in the queue
+(test/deftest event-coalescing-test
+  (let [release-latch (CountDownLatch. 1)
+        started-latch (CountDownLatch. 1)
+        evolved-reasons (atom [])
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid _path _node _newValue])
+                           (componentAdded [_parentComponentUid _componentUid])
+                           (postProcessAfterEvolveCycle [_a _m]))
+        app (proxy [AppContainer] ["event-coalescing-test" (ClojureContainerParser.) result-collector {:id :main} nil]
+              (evolveImpl [reason]
+                (when (:block reason)
+                  (.countDown started-latch)
+                  (.await release-latch 5 TimeUnit/SECONDS))
+                (swap! evolved-reasons conj reason)))
+        _ (.registerCoalescingPolicy app (class {:move 1}) (reify IEventCoalescingPolicy
+                                                            (getCoalescingKey [_ e] (when (:move e) :move))
+                                                            (coalesce [_ queued e] {:move (+ (:move queued) (:move e))})))
+        _ (.initialize app)
+        _ (test/is (= :main (.get (.getComponent (.getContainerAccessor app) 0) :id)))
+        _ (.evolve app {:block true})
+        _ (.await started-latch 5 TimeUnit/SECONDS)
+        f1 (.evolve app {:move 1})
+        f2 (.evolve app {:move 2})
+        _ (.evolve app {:press 1})
+        _ (.evolve app {:move 3})
+        f4 (.evolve app {:move 4})
+        _ (.countDown release-latch)
+        _ (.get f4 5 TimeUnit/SECONDS)]
+    (test/is (identical? f1 f2))
+    (test/is (= [{:block true} {:move 3} {:press 1} {:move 7}] @evolved-reasons))
+    (test/is (= 2 (.getCoalescedEventCount app)))
+    (.unInitialize app)))
+
+;; Evolver thread is held by blocking events, so that subsequent ones wait in the queue
+(test/deftest evolver-queue-overload-test
+  (let [release-latch (atom (CountDownLatch. 1))
+        started-latch (atom (CountDownLatch. 1))
+        evolved-reasons (atom [])
+        overload-reasons (atom [])
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid _path _node _newValue])
+                           (componentAdded [_parentComponentUid _componentUid])
+                           (postProcessAfterEvolveCycle [_a _m]))
+        app (proxy [AppContainer] ["evolver-queue-overload-test" (ClojureContainerParser.) result-collector {:id :main} nil]
+              (evolveImpl [reason]
+                (when (and (map? reason) (:block reason))
+                  (.countDown @started-latch)
+                  (.await @release-latch 5 TimeUnit/SECONDS))
+                (swap! evolved-reasons conj reason)))
+        _ (.registerCoalescingPolicy app (class {:move 1}) (reify IEventCoalescingPolicy
+                                                            (getCoalescingKey [_ e] (when (:move e) :move))
+                                                            (coalesce [_ queued e] {:move (+ (:move queued) (:move e))})))
+        _ (.setEventDroppable app String true)
+        _ (.setOverloadListener app (reify Consumer (accept [_ e] (swap! overload-reasons conj e))))
+        _ (.setEvolverQueueCapacity app 2 AppContainer$OverloadPolicy/DropOldest)
+        _ (.initialize app)
+        _ (test/is (= :main (.get (.getComponent (.getContainerAccessor app) 0) :id)))
+        _ (.evolve app {:block true})
+        _ (.await @started-latch 5 TimeUnit/SECONDS)
+        f-tick (.evolve app "tick")
+        _ (.evolve app {:press 1})
+        f-press (.evolve app {:press 2})
+        f-rejected (.evolve app {:press 3})
+        _ (.countDown @release-latch)]
+    (test/is (.isCancelled f-tick))
+    (test/is (thrown? ExecutionException (.get f-rejected)))
+    (test/is (= [{:press 3}] @overload-reasons))
+    (test/is (= 1 (.getDroppedEventCount app)))
+    (test/is (= 1 (.getRejectedEventCount app)))
+    (.get f-press 5 TimeUnit/SECONDS)
+    (reset! release-latch (CountDownLatch. 1))
+    (reset! started-latch (CountDownLatch. 1))
+    (.setEvolverQueueCapacity app 2 AppContainer$OverloadPolicy/Coalesce)
+    (.evolve app {:block true})
+    (.await @started-latch 5 TimeUnit/SECONDS)
+    (let [_ (.evolve app {:move 1})
+          f-press (.evolve app {:press 4})
+          f-rejected (.evolve app {:move 2})]
+      (.countDown @release-latch)
+      (.get f-press 5 TimeUnit/SECONDS)
+      (test/is (thrown? ExecutionException (.get f-rejected))))
+    (reset! release-latch (CountDownLatch. 1))
+    (reset! started-latch (CountDownLatch. 1))
+    (.evolve app {:block true})
+    (.await @started-latch 5 TimeUnit/SECONDS)
+    (let [_ (.evolve app {:press 5})
+          f-move (.evolve app {:move 5})
+          f-coalesced (.evolve app {:move 6})]
+      (.countDown @release-latch)
+      (.get f-move 5 TimeUnit/SECONDS)
+      (test/is (identical? f-move f-coalesced)))
+    (test/is (= [{:block true} {:press 1} {:press 2} {:block true} {:move 1} {:press 4}
+                 {:block true} {:press 5} {:move 11}] @evolved-reasons))
+    (test/is (= [{:press 3} {:move 2}] @overload-reasons))
+    (test/is (= 2 (.getRejectedEventCount app)))
+    (.unInitialize app)))
+
 (test/deftest add-children-test
   (let [_ (core/defevolverfn evolver-res :res (if (= (get-reason) {:do :res})
                                                 (let [child-list (list :c1 :c2 :c3)]
@@ -480,6 +963,243 @@
         _ (.evolve container-engine [:main] {:do :res})]
     (test/is (= (+ 5 6 7) (get @results :res)))))
 
+(test/deftest shared-topology-test
+  (let [_ (core/defevolverfn :src (if-let [v (:src (get-reason))] v old-src))
+        _ (core/defevolverfn :a (get-property [] :src))
+        _ (core/defevolverfn :children (if (= (get-reason) {:do :children})
+                                         (assoc old-children :c2 (assoc (:c1 old-children) :id :c2))
+                                         old-children))
+        container (core/defroot
+                    {:id :main
+                     :src 1
+                     :evolvers {:src src-evolver
+                                :children children-evolver}
+                     :children {:c1 {:id :c1
+                                     :a 0
+                                     :evolvers {:a a-evolver}}}})
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid, _path, _node, _newValue])
+                           (componentAdded [_parentComponentUid _componentUid])
+                           (componentRemoved [_componentUid])
+                           (postProcessAfterEvolveCycle [_a _m]))
+        template (Container.
+                   "shared-topology-test"
+                   (ClojureContainerParser.)
+                   result-collector
+                   container)
+        _ (.freeze template)
+        session1 (Container. template "session1" (ClojureContainerParser.) result-collector nil)
+        session2 (Container. template "session2" (ClojureContainerParser.) result-collector nil)
+        _ (.evolve session1 [:main] {:src 3})]
+    (test/is (.isTopologyShared session1))
+    (test/is (identical? (.getNode template (int 0)) (.getNode session1 (int 0))))
+    (test/is (= 3 (.getPropertyValue session1 [:main :c1] :a)))
+    (test/is (= 1 (.getPropertyValue session2 [:main :c1] :a)))
+    (.evolve session1 [:main] {:do :children})
+    (test/is (not (.isTopologyShared session1)))
+    (test/is (.isTopologyShared session2))
+    (test/is (= 3 (.getPropertyValue session1 [:main :c2] :a)))
+    (test/is (nil? (.getComponentUid session2 [:main :c2])))
+    (test/is (nil? (.getComponentUid template [:main :c2])))
+    (.evolve session2 [:main] {:src 4})
+    (.evolve session1 [:main] {:src 5})
+    (test/is (= 4 (.getPropertyValue session2 [:main :c1] :a)))
+    (test/is (= 5 (.getPropertyValue session1 [:main :c2] :a)))
+    (test/is (= 1 (.getPropertyValue template [:main :c1] :a)))))
+
+(test/deftest fork-test
+  (let [_ (core/defevolverfn :src (if-let [v (:src (get-reason))] v old-src))
+        _ (core/defevolverfn :a (get-property [] :src))
+        _ (core/defevolverfn :children (if (= (get-reason) {:do :children})
+                                         (assoc old-children :c2 (assoc (:c1 old-children) :id :c2))
+                                         old-children))
+        container (core/defroot
+                    {:id :main
+                     :src 1
+                     :evolvers {:src src-evolver
+                                :children children-evolver}
+                     :children {:c1 {:id :c1
+                                     :a 0
+                                     :evolvers {:a a-evolver}}}})
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid, _path, _node, _newValue])
+                           (componentAdded [_parentComponentUid _componentUid])
+                           (componentRemoved [_componentUid])
+                           (postProcessAfterEvolveCycle [_a _m]))
+        session (Container.
+                  "fork-test"
+                  (ClojureContainerParser.)
+                  result-collector
+                  container)
+        _ (.evolve session [:main] {:src 2})
+        fork (Container. session "fork" (ClojureContainerParser.) result-collector nil)]
+    (test/is (.isTopologyShared session))
+    (test/is (.isTopologyShared fork))
+    (test/is (= 2 (.getPropertyValue fork [:main :c1] :a)))
+    (.evolve fork [:main] {:src 3})
+    (test/is (= 3 (.getPropertyValue fork [:main :c1] :a)))
+    (test/is (= 2 (.getPropertyValue session [:main :c1] :a)))
+    (.evolve session [:main] {:do :children})
+    (test/is (not (.isTopologyShared session)))
+    (test/is (= 2 (.getPropertyValue session [:main :c2] :a)))
+    (test/is (nil? (.getComponentUid fork [:main :c2])))
+    (.evolve fork [:main] {:src 4})
+    (test/is (= 4 (.getPropertyValue fork [:main :c1] :a)))
+    (test/is (= 2 (.getPropertyValue session [:main :c1] :a)))
+    (test/is (= 2 (.getPropertyValue session [:main :c2] :a)))))
+
+(test/deftest value-snapshot-test
+  (let [_ (core/defevolverfn :src (if-let [v (:src (get-reason))] v old-src))
+        _ (core/defevolverfn :a (get-property [] :src))
+        _ (core/defevolverfn :b (get-property [:this] :a))
+        container (core/defroot
+                    {:id :main
+                     :src 0
+                     :evolvers {:src src-evolver}
+                     :children (into {} (map (fn [i] (let [id (keyword (str "c" i))]
+                                                       [id {:id id :a 0 :b 0 :evolvers {:a a-evolver :b b-evolver}}]))
+                                             (range 200)))})
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid, _path, _node, _newValue])
+                           (componentAdded [_parentComponentUid _componentUid])
+                           (componentRemoved [_componentUid])
+                           (postProcessAfterEvolveCycle [_a _m]))
+        c (Container.
+            "value-snapshot-test"
+            (ClojureContainerParser.)
+            result-collector
+            container)
+        indices (map (fn [i] [(.getPropertyIndex c [:main (keyword (str "c" i))] :a)
+                              (.getPropertyIndex c [:main (keyword (str "c" i))] :b)])
+                     (range 200))
+        s0 (.getValueSnapshot c)
+        _ (.evolve c [:main] {:src 1})
+        s1 (.getValueSnapshot c)
+        running (atom true)
+        inconsistent (atom 0)
+        reads (atom 0)
+        reader (future
+                 (while @running
+                   (let [s (.getValueSnapshot c)
+                         v (.getPropertyValue s (first (first indices)))]
+                     (doseq [[ai bi] indices]
+                       (when (not= v (.getPropertyValue s ai) (.getPropertyValue s bi))
+                         (swap! inconsistent inc)))
+                     (swap! reads inc))))]
+    (test/is (= (inc (.getEpoch s0)) (.getEpoch s1)))
+    (test/is (= 0 (.getPropertyValue s0 (.getPropertyIndex c [:main :c7] :b))))
+    (test/is (= 1 (.getPropertyValue s1 (.getPropertyIndex c [:main :c7] :b))))
+    (doseq [i (range 2 500)]
+      (.evolve c [:main] {:src i}))
+    (while (< @reads 10) (Thread/sleep 1))
+    (reset! running false)
+    @reader
+    (test/is (= 0 @inconsistent))
+    (test/is (= 1 (.getPropertyValue s1 (.getPropertyIndex c [:main :c7] :b))))
+    (test/is (= 499 (.getPropertyValue (.getValueSnapshot c) (.getPropertyIndex c [:main :c7] :b))))))
+
+(test/deftest evolver-memoization-test
+  (let [calls (atom 0)
+        _ (core/defevolverfn :flag (let [r (get-reason)] (if (contains? r :flag) (:flag r) old-flag)))
+        _ (core/defevolverfn :x (let [r (get-reason)] (if (contains? r :x) (:x r) old-x)))
+        _ (core/defevolverfn :y (let [r (get-reason)] (if (contains? r :y) (:y r) old-y)))
+        _ (core/defevolverfn :r (do
+                                  (swap! calls inc)
+                                  (if (get-property [] :flag) (get-property [] :x) (get-property [] :y))))
+        container (core/defroot
+                    {:id :main
+                     :flag false
+                     :x 0
+                     :y 0
+                     :evolvers {:flag flag-evolver
+                                :x x-evolver
+                                :y y-evolver}
+                     :children {:c1 {:id :c1
+                                     :r nil
+                                     :evolvers {:r r-evolver}}}})
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid, _path, _node, _newValue])
+                           (componentAdded [_parentComponentUid _componentUid])
+                           (componentRemoved [_componentUid])
+                           (postProcessAfterEvolveCycle [_a _m]))
+        c (Container.
+            "evolver-memoization-test"
+            (ClojureContainerParser.)
+            result-collector
+            container)
+        r (fn [] (.getPropertyValue c [:main :c1] :r))]
+    (.setEvolverMemoization c true)
+    (reset! calls 0)
+    (.evolve c [:main] {:x 5})
+    (test/is (= 1 @calls))
+    (test/is (= 0 (r)))
+    (.evolve c [:main] {:x 6})
+    (test/is (= 1 @calls))
+    (test/is (= 1 (.getEvolverMemoHitCount c)))
+    (.evolve c [:main] {:y 7})
+    (test/is (= 2 @calls))
+    (test/is (= 7 (r)))
+    (.evolve c [:main] {:flag true})
+    (test/is (= 3 @calls))
+    (test/is (= 6 (r)))
+    (.evolve c [:main] {:y 8})
+    (test/is (= 3 @calls))
+    (test/is (= 6 (r)))
+    (test/is (= 2 (.getEvolverMemoHitCount c)))
+    (test/is (= 3 (.getEvolverMemoMissCount c)))
+    (.setEvolverMemoization c false)
+    (.evolve c [:main] {:y 9})
+    (test/is (= 4 @calls))
+    (test/is (= 6 (r)))))
+
+(test/deftest change-tracking-test
+  (let [_ (core/defevolverfn :x (let [r (get-reason)] (if (contains? r :x) (:x r) old-x)))
+        _ (core/defevolverfn :y (let [r (get-reason)] (if (contains? r :y) (:y r) old-y)))
+        _ (core/defevolverfn :r (get-property [] :x))
+        container (core/defroot
+                    {:id :main
+                     :x 0
+                     :y 0
+                     :evolvers {:x x-evolver
+                                :y y-evolver}
+                     :children {:c1 {:id :c1
+                                     :r nil
+                                     :evolvers {:r r-evolver}}}})
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid, _path, _node, _newValue])
+                           (componentAdded [_parentComponentUid _componentUid])
+                           (componentRemoved [_componentUid])
+                           (postProcessAfterEvolveCycle [_a _m]))
+        c (Container.
+            "change-tracking-test"
+            (ClojureContainerParser.)
+            result-collector
+            container)
+        x-index (.getPropertyIndex c [:main] :x)
+        r-index (.getPropertyIndex c [:main :c1] :r)
+        c1-uid (.getComponentUid c [:main :c1])
+        _ (.setChangeTracking c true)
+        cycle0 (.getCompletedCycle c)
+        _ (.evolve c [:main] {:x 5})
+        cycle1 (.getCompletedCycle c)
+        _ (.evolve c [:main] {:x 5})
+        cycle2 (.getCompletedCycle c)]
+    (test/is (= (.getNodeCount c) (count (.changedNodesSince c (dec cycle0)))))
+    (test/is (= #{x-index r-index} (set (.changedNodesSince c cycle0))))
+    (test/is (= #{0 c1-uid} (set (.changedComponentsSince c cycle0))))
+    (test/is (= (inc cycle0) cycle1 (dec cycle2)))
+    (test/is (= cycle2 (.getCycle c)))
+    (test/is (empty? (.changedNodesSince c cycle1)))
+    (doseq [i (range 300)]
+      (.evolve c [:main] {:x i}))
+    (test/is (= #{x-index r-index} (set (.changedNodesSince c cycle0))))
+    (test/is (= 2 (count (.changedNodesSince c cycle2))))
+    (.evolve c [:main] {:y 1})
+    (test/is (= [(.getPropertyIndex c [:main] :y)] (vec (.changedNodesSince c (dec (.getCycle c))))))
+    (test/is (= [0] (vec (.changedComponentsSince c (dec (.getCycle c))))))
+    (.setChangeTracking c false)
+    (test/is (thrown? IllegalStateException (.changedNodesSince c cycle0)))))
+
 (test/deftest add-children-test1
   (let [_ (core/defevolverfn evolver-res :res (if (= (get-reason) {:do :res})
                                                 (let [child-list (list :c1 :c2 :c3)]
@@ -755,6 +1475,178 @@
     (test/is (= 6 (get-in @res [:main :y])))
     (test/is (= 6 (get-in @res [:main :z])))))
 
+(test/deftest bulk-remove-subtree-test
+  (let [_ (core/defevolverfn :src (if-let [v (:src (get-reason))] v old-src))
+        _ (core/defevolverfn :a (get-property [] :src))
+        _ (core/defevolverfn :b (get-property [] :a))
+        row (fn [i] (let [id (keyword (str "r" i))]
+                      [id {:id id
+                           :a 0
+                           :evolvers {:a a-evolver}
+                           :children {:cell {:id :cell
+                                             :b 0
+                                             :evolvers {:b b-evolver}}}}]))
+        all-rows (into {} (map row (range 100)))
+        _ (core/defevolverfn :children (case (:do (get-reason))
+                                         :remove (into {} (filter (fn [[id _]] (< (Integer/parseInt (subs (name id) 1)) 50)) old-children))
+                                         :restore all-rows
+                                         old-children))
+        container (core/defroot
+                    {:id :main
+                     :src 1
+                     :evolvers {:src src-evolver
+                                :children children-evolver}
+                     :children all-rows})
+        removed (atom #{})
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid, _path, _node, _newValue])
+                           (componentAdded [_parentComponentUid _componentUid])
+                           (componentRemoved [componentUid] (swap! removed conj componentUid))
+                           (postProcessAfterEvolveCycle [_a _m]))
+        c (Container.
+            "bulk-remove-subtree-test"
+            (ClojureContainerParser.)
+            result-collector
+            container)
+        node-count (fn [] (count (filter #(.getNode c (int %)) (range (.getNodeCount c)))))
+        initial-node-count (node-count)
+        root-node-count (count (.getPropertyIndices (.getRootComponent c)))
+        r70-cell-uid (.getComponentUid c [:main :r70 :cell])]
+    (.evolve c [:main] {:do :remove :src 2})
+    (test/is (= 100 (count @removed)))
+    (test/is (contains? @removed r70-cell-uid))
+    (test/is (nil? (.getComponentUid c [:main :r70])))
+    (test/is (nil? (.getComponentUid c [:main :r70 :cell])))
+    (test/is (= 2 (.getPropertyValue c [:main :r10 :cell] :b)))
+    (test/is (= (- initial-node-count (/ (- initial-node-count root-node-count) 2)) (node-count)))
+    (.evolve c [:main] {:src 3})
+    (test/is (= 3 (.getPropertyValue c [:main :r49 :cell] :b)))
+    (.evolve c [:main] {:do :restore})
+    (.evolve c [:main] {:src 4})
+    (test/is (= initial-node-count (node-count)))
+    (test/is (= 4 (.getPropertyValue c [:main :r99 :cell] :b)))
+    (test/is (= 4 (.getPropertyValue c [:main :r0 :cell] :b)))))
+
+(test/deftest index-reuse-after-churn-test
+  (let [_ (core/defevolverfn :a (if-let [v (:a (get-reason))] v old-a))
+        row (fn [id] {:id id :a 0 :evolvers {:a a-evolver}})
+        _ (core/defevolverfn :children (let [r (get-reason)]
+                                         (cond
+                                           (:add r) (merge old-children (into {} (map (fn [id] [id (row id)]) (:add r))))
+                                           (:remove r) (apply dissoc old-children (:remove r))
+                                           :else old-children)))
+        ids (map #(keyword (str "r" %)) (range 10))
+        container (core/defroot
+                    {:id :main
+                     :evolvers {:children children-evolver}
+                     :children (into {} (map (fn [id] [id (row id)]) ids))})
+        added (atom [])
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid, _path, _node, _newValue])
+                           (componentAdded [_parentComponentUid componentUid] (swap! added conj componentUid))
+                           (componentRemoved [_componentUid])
+                           (postProcessAfterEvolveCycle [_a _m]))
+        c (Container.
+            "index-reuse-after-churn-test"
+            (ClojureContainerParser.)
+            result-collector
+            container)
+        initial-node-count (.getNodeCount c)
+        uid (fn [id] (.getComponentUid c [:main id]))
+        removed-uids (sort [(uid :r3) (uid :r7)])]
+    (.evolve c [:main] {:remove [:r3 :r7]})
+    (reset! added [])
+    (.evolve c [:main] {:add [:x0]})
+    (test/is (= [(first removed-uids)] @added))
+    (.evolve c [:main] {:add [:x1]})
+    (test/is (= (second removed-uids) (uid :x1)))
+    (test/is (= initial-node-count (.getNodeCount c)))
+    (let [r (java.util.Random. 3)
+          live (atom (set (concat (remove #{:r3 :r7} ids) [:x0 :x1])))]
+      (dotimes [step 50]
+        (let [victims (take (inc (.nextInt r 4)) (doto (java.util.ArrayList. (sort @live)) (java.util.Collections/shuffle r)))
+              newcomers (map #(keyword (str "y" step "-" %)) (range (count victims)))]
+          (.evolve c [:main] {:remove victims})
+          (.evolve c [:main] {:add newcomers})
+          (swap! live #(into (apply disj % victims) newcomers))))
+      (test/is (= initial-node-count (.getNodeCount c)))
+      (test/is (= 10 (count (set (map uid @live)))))
+      (test/is (every? #(= 0 (.getPropertyValue c [:main %] :a)) @live))
+      (let [y (first (filter #(.startsWith (name %) "y") @live))]
+        (.evolve c [:main y] {:a 5})
+        (test/is (= 5 (.getPropertyValue c [:main y] :a)))))))
+
+(test/deftest getter-slot-sharing-test
+  (let [_ (core/defaccessorfn read-b [component] (get-property component [:this] :b))
+        _ (core/defevolverfn :a (if-let [v (:a (get-reason))] v old-a))
+        _ (core/defevolverfn :b (if-let [v (:b (get-reason))] v old-b))
+        _ (core/defevolverfn :sum (+ (get-property [:this] :a) (read-b component) (get-property [:this] :a)))
+        container (core/defroot
+                    {:id :main
+                     :a 1
+                     :b 10
+                     :sum 0
+                     :evolvers {:a a-evolver
+                                :b b-evolver
+                                :sum sum-evolver}})
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid, _path, _node, _newValue])
+                           (componentAdded [_parentComponentUid _componentUid])
+                           (componentRemoved [_componentUid])
+                           (postProcessAfterEvolveCycle [_a _m]))
+        c (Container.
+            "getter-slot-sharing-test"
+            (ClojureContainerParser.)
+            result-collector
+            container)]
+    (test/is (= 12 (.getPropertyValue c [:main] :sum)))
+    (.evolve c [:main] {:b 20})
+    (test/is (= 22 (.getPropertyValue c [:main] :sum)))
+    (.evolve c [:main] {:a 3})
+    (test/is (= 26 (.getPropertyValue c [:main] :sum)))))
+
+(test/deftest wildcard-dependency-on-added-test
+  (let [_ (core/defevolverfn :a (if-let [v (:a (get-reason))] v old-a))
+        _ (core/defevolverfn :total (let [r (get-reason)]
+                                      (if (and (vector? r) (= 2 (count r)))
+                                        (+ old-total (get-property [:this (second r)] :a))
+                                        old-total)))
+        row (fn [id] {:id id :a 0 :evolvers {:a a-evolver}})
+        _ (core/defevolverfn :children (let [r (get-reason)]
+                                         (cond
+                                           (:add r) (assoc old-children (:add r) (row (:add r)))
+                                           (:remove r) (dissoc old-children (:remove r))
+                                           :else old-children)))
+        container (core/defroot
+                    {:id :main
+                     :total 0
+                     :evolvers {:children children-evolver
+                                :total total-evolver}
+                     :children {:other {:id :other :a 0 :evolvers {:a a-evolver}}}})
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid, _path, _node, _newValue])
+                           (componentAdded [_parentComponentUid _componentUid])
+                           (componentRemoved [_componentUid])
+                           (postProcessAfterEvolveCycle [_a _m]))
+        c (Container.
+            "wildcard-dependency-on-added-test"
+            (ClojureContainerParser.)
+            result-collector
+            container)
+        total (fn [] (.getPropertyValue c [:main] :total))]
+    (.evolve c [:main] {:add :r1})
+    (.evolve c [:main] {:add :r2})
+    (.evolve c [:main :r1] {:a 5})
+    (test/is (= 5 (total)))
+    (.evolve c [:main :r2] {:a 7})
+    (test/is (= 12 (total)))
+    (.evolve c [:main] {:remove :r1})
+    (.evolve c [:main :r2] {:a 8})
+    (test/is (= 20 (total)))
+    (.evolve c [:main] {:add :r1})
+    (.evolve c [:main :r1] {:a 1})
+    (test/is (= 21 (total)))))
+
 (test/deftest remove-add-dependent-test
   (let [_ (core/defevolverfn :a (if (= (get-reason) []) (get-property [] :res) old-a))
         c1-prototype {:id :c1
@@ -894,6 +1786,36 @@
     (test/is (= 7 (first @consumed-results)))
     (test/is (not= (second @results) (second @consumed-results)))))
 
+(test/deftest evolve-batch-test
+  (let [_ (core/defevolverfn :a (if (not (nil? (get-reason)))
+                                  (+ old-a (:x (get-reason)))
+                                  old-a))
+        container (core/defroot
+                    {:id :main
+                     :a 0
+                     :evolvers {:a a-evolver}})
+        results (atom [])
+        post-process-count (atom 0)
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid, _path, node, newValue]
+                             (if (= :a (.getPropertyId node)) (swap! results conj newValue)))
+                           (componentAdded [_parentComponentUid _componentUid])
+                           (postProcessAfterEvolveCycle [_a _m] (swap! post-process-count inc)))
+        container-engine (Container.
+                           "evolve-batch-test"
+                           (ClojureContainerParser.)
+                           result-collector
+                           container)
+        main-uid (.getComponentUid container-engine [:main])
+        _ (reset! results [])
+        _ (reset! post-process-count 0)
+        _ (.evolveBatch container-engine [(MapEntry. main-uid {:x 1})
+                                          (MapEntry. main-uid {:x 2})
+                                          (MapEntry. main-uid {:x 3})])]
+    (test/is (= [1 3 6] @results))
+    (test/is (= 1 @post-process-count))
+    (test/is (= 6 (.getPropertyValue container-engine [:main] :a)))))
+
 (test/deftest input-dep-test
   (let [_ (core/defevolverfn :a (cond
                                   (mouse/mouse-event? component) (mouse/get-mouse-rel-x component)
@@ -902,4 +1824,45 @@
                                   (host/host-event? component) "host"
                                   (clipboard/clipboard-paste? component) "paste"
                                   (timer/timer-event? component) "timer"))]
-    (test/is (= #{:mouse :mousewheel :keyboard :host :clipboard :timer} (set (:input-channel-dependencies (meta a-evolver)))))))
\ No newline at end of file
+    (test/is (= #{:mouse :mousewheel :keyboard :host :clipboard :timer} (set (:input-channel-dependencies (meta a-evolver)))))))
+
+(test/deftest input-channel-interest-test
+  (let [_ (core/defevolverfn evolver-m :m (if (mouse/mouse-event? component) (inc old-m) old-m))
+        _ (core/defevolverfn evolver-w :w (if (mousewheel/mouse-wheel? component) (inc old-w) old-w))
+        _ (core/defevolverfn evolver-k :k (if (keyboard/key-event? component) (inc old-k) old-k))
+        _ (core/defevolverfn evolver-p :p (inc old-p))
+        container (core/defroot
+                    {:id :main
+                     :children {:cm {:id :cm :m 0 :evolvers {:m evolver-m}}
+                                :cw {:id :cw :w 0 :evolvers {:w evolver-w}}
+                                :ck {:id :ck :k 0 :evolvers {:k evolver-k}}
+                                :cp {:id :cp :p 0 :evolvers {:p evolver-p}}
+                                :cn {:id :cn :n 0}}})
+        result-collector (proxy [IResultCollector] []
+                           (appendResult [_parentComponentUid _path _node _newValue])
+                           (componentAdded [_parentComponentUid _componentUid])
+                           (postProcessAfterEvolveCycle [_a _m]))
+        container-engine (Container.
+                           "input-channel-interest-test"
+                           (ClojureContainerParser.)
+                           result-collector
+                           container)
+        source (proxy [java.awt.Component] [])
+        mouse-event (MouseEvent. source MouseEvent/MOUSE_MOVED 0 0 1 1 0 false)
+        wheel-event (FGIncomingMouseWheelEvent. source MouseEvent/MOUSE_WHEEL 0 0 1 1 0 false MouseWheelEvent/WHEEL_UNIT_SCROLL 1 1 0)
+        key-event (KeyEvent. source KeyEvent/KEY_TYPED 0 0 KeyEvent/VK_UNDEFINED \a)
+        interested? (fn [id reason] (.isInterestedIn container-engine (.getComponentUid container-engine [:main id]) reason))
+        p-before (.getPropertyValue container-engine [:main :cp] :p)]
+    (test/is (interested? :cm mouse-event))
+    (test/is (not (interested? :cm wheel-event)))
+    (test/is (not (interested? :cm key-event)))
+    (test/is (interested? :cw wheel-event))
+    (test/is (not (interested? :cw mouse-event)))
+    (test/is (interested? :ck key-event))
+    (test/is (not (interested? :cp mouse-event)))
+    (test/is (interested? :cp {:any :reason}))
+    (test/is (not (interested? :cn {:any :reason})))
+    (.evolve container-engine [:main :cp] mouse-event)
+    (test/is (= p-before (.getPropertyValue container-engine [:main :cp] :p)))
+    (.evolve container-engine [:main :cp] {:any :reason})
+    (test/is (= (inc p-before) (.getPropertyValue container-engine [:main :cp] :p)))))
@@ -0,0 +1,300 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.core.engine;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Denis Lebedev
+ */
+public class SessionExecutorTest
+{
+    @Test
+    public void testSerialOrderOnSharedPool() throws Exception
+    {
+        SessionScheduler scheduler = SessionScheduler.createSharedPool(3);
+        int sessionCount = 40;
+        int taskCount = 500;
+        List<SessionExecutor> executors = new ArrayList<>();
+        List<List<Integer>> executed = new ArrayList<>();
+        AtomicBoolean overlap = new AtomicBoolean();
+        List<AtomicInteger> running = new ArrayList<>();
+        for (int s=0; s<sessionCount; s++)
+        {
+            executors.add(scheduler.newSessionExecutor("Test ", String.valueOf(s)));
+            executed.add(new ArrayList<>());
+            running.add(new AtomicInteger());
+        }
+        Assert.assertEquals(sessionCount, scheduler.getSessionExecutors().size());
+        for (int t=0; t<taskCount; t++)
+        {
+            for (int s=0; s<sessionCount; s++)
+            {
+                int task = t;
+                List<Integer> sessionExecuted = executed.get(s);
+                AtomicInteger sessionRunning = running.get(s);
+                executors.get(s).execute(() -> {
+                    if (sessionRunning.incrementAndGet() != 1)
+                    {
+                        overlap.set(true);
+                    }
+                    // Not synchronized: session tasks must see effects of previous ones
+                    sessionExecuted.add(Integer.valueOf(task));
+                    sessionRunning.decrementAndGet();
+                });
+            }
+        }
+        for (SessionExecutor e : executors)
+        {
+            e.shutdown();
+        }
+        for (SessionExecutor e : executors)
+        {
+            Assert.assertTrue(e.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        Assert.assertFalse(overlap.get());
+        for (int s=0; s<sessionCount; s++)
+        {
+            Assert.assertEquals(taskCount, executed.get(s).size());
+            for (int t=0; t<taskCount; t++)
+            {
+                Assert.assertEquals(t, executed.get(s).get(t).intValue());
+            }
+            Assert.assertEquals(taskCount, executors.get(s).getTaskCount());
+            Assert.assertEquals(taskCount, executors.get(s).getCompletedTaskCount());
+            Assert.assertEquals(0, executors.get(s).getQueueDepth());
+        }
+        Assert.assertTrue(scheduler.getSessionExecutors().isEmpty());
+    }
+
+    @Test
+    public void testAwaitAnotherSessionOnSinglePoolThread() throws Exception
+    {
+        SessionScheduler scheduler = SessionScheduler.createSharedPool(1);
+        SessionExecutor evolver = scheduler.newSessionExecutor("Test Evolver ", "1");
+        SessionExecutor notifier = scheduler.newSessionExecutor("Test Notifier ", "1");
+        Future<Integer> result = evolver.submit(() -> SessionScheduler.await(notifier.submit(() -> Integer.valueOf(7))));
+        Assert.assertEquals(7, result.get(10, TimeUnit.SECONDS).intValue());
+    }
+
+    @Test
+    public void testMetricsAndShutdown() throws Exception
+    {
+        SessionScheduler scheduler = SessionScheduler.createDedicatedThreads();
+        SessionExecutor executor = scheduler.newSessionExecutor("Test ", "m");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try
+            {
+                gate.await();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        Future<?> last = null;
+        for (int i=0; i<5; i++)
+        {
+            last = executor.submit(() -> {});
+        }
+        Assert.assertEquals(last, executor.peekLastWaitingTask(SessionExecutor.Lane.Interactive));
+        Assert.assertEquals(5, executor.getQueueDepth());
+        executor.shutdown();
+        Assert.assertFalse(executor.isTerminated());
+        try
+        {
+            executor.execute(() -> {});
+            Assert.fail();
+        }
+        catch (RejectedExecutionException ex)
+        {
+            // Expected
+        }
+        gate.countDown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(last.isDone());
+        Assert.assertEquals(6, executor.getCompletedTaskCount());
+        Assert.assertTrue(executor.getBusyTimeNanos() >= executor.getMaxTaskTimeNanos());
+        Assert.assertTrue(executor.getMaxTaskTimeNanos() > 0);
+        Assert.assertTrue(scheduler.getSessionExecutors().isEmpty());
+    }
+
+    @Test
+    public void testBoundedOffer() throws Exception
+    {
+        SessionScheduler scheduler = SessionScheduler.createDedicatedThreads();
+        SessionExecutor executor = scheduler.newSessionExecutor("Test ", "b");
+        executor.setCapacity(2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        Assert.assertTrue(executor.offer(() -> {
+            started.countDown();
+            try
+            {
+                gate.await();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, executor.getOldestWaitNanos());
+
+        AtomicInteger executed = new AtomicInteger();
+        Runnable first = executed::incrementAndGet;
+        Assert.assertTrue(executor.offer(first));
+        Assert.assertTrue(executor.offer(executed::incrementAndGet));
+        Assert.assertFalse(executor.offer(executed::incrementAndGet));
+        // Unbounded submission is still accepted
+        executor.execute(executed::incrementAndGet);
+        Assert.assertEquals(3, executor.getQueueDepth());
+        Assert.assertFalse(executor.offer(executed::incrementAndGet));
+
+        Assert.assertTrue(executor.remove(first));
+        Assert.assertFalse(executor.remove(first));
+        Assert.assertEquals(2, executor.getQueueDepth());
+        Thread.sleep(5);
+        Assert.assertTrue(executor.getOldestWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(5));
+
+        gate.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(2, executed.get());
+        Assert.assertTrue(executor.getQueueWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    @Test
+    public void testMaxEvolverOldestWait() throws Exception
+    {
+        SessionScheduler scheduler = SessionScheduler.createDedicatedThreads();
+        List<SessionExecutor> executors = new ArrayList<>();
+        for (int s=0; s<30; s++)
+        {
+            executors.add(scheduler.newEvolverExecutor("Test Evolver ", String.valueOf(s)));
+            executors.add(scheduler.newSessionExecutor("Test Notifier ", String.valueOf(s)));
+        }
+        SessionExecutor stalled = executors.get(0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        stalled.execute(() -> {
+            started.countDown();
+            try
+            {
+                gate.await();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, scheduler.getMaxEvolverOldestWaitNanos());
+        stalled.execute(() -> {});
+        Thread.sleep(20);
+        Assert.assertTrue(scheduler.getMaxEvolverOldestWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+
+        gate.countDown();
+        for (SessionExecutor e : executors)
+        {
+            e.shutdown();
+            Assert.assertTrue(e.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(0, scheduler.getMaxEvolverOldestWaitNanos());
+        Assert.assertTrue(scheduler.getSessionExecutors().isEmpty());
+    }
+
+    @Test
+    public void testLanePriorityAndStarvation() throws Exception
+    {
+        SessionScheduler scheduler = SessionScheduler.createDedicatedThreads();
+        SessionExecutor executor = scheduler.newSessionExecutor("Test ", "l");
+        executor.setStarvationThresholdMillis(10000);
+        List<String> executed = new ArrayList<>();
+
+        CountDownLatch gate = blockExecutor(executor);
+        executor.execute(SessionExecutor.Lane.Background, () -> executed.add("b1"));
+        executor.execute(SessionExecutor.Lane.Timer, () -> executed.add("t1"));
+        executor.execute(SessionExecutor.Lane.Interactive, () -> executed.add("i1"));
+        executor.execute(SessionExecutor.Lane.Background, () -> executed.add("b2"));
+        executor.execute(() -> executed.add("i2"));
+        Assert.assertEquals(2, executor.getQueueDepth(SessionExecutor.Lane.Background));
+        Assert.assertEquals(5, executor.getQueueDepth());
+        gate.countDown();
+        executor.submit(SessionExecutor.Lane.Background, () -> null).get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(java.util.Arrays.asList("i1", "i2", "t1", "b1", "b2"), executed);
+
+        // Background task that has been waiting beyond the threshold goes before interactive ones submitted later
+        executed.clear();
+        executor.setStarvationThresholdMillis(20);
+        gate = blockExecutor(executor);
+        executor.execute(SessionExecutor.Lane.Background, () -> executed.add("b1"));
+        Thread.sleep(40);
+        executor.execute(SessionExecutor.Lane.Interactive, () -> executed.add("i1"));
+        executor.execute(SessionExecutor.Lane.Interactive, () -> executed.add("i2"));
+        gate.countDown();
+        executor.submit(SessionExecutor.Lane.Background, () -> null).get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(java.util.Arrays.asList("b1", "i1", "i2"), executed);
+
+        Assert.assertEquals(5, executor.getCompletedTaskCount(SessionExecutor.Lane.Background));
+        Assert.assertEquals(1, executor.getCompletedTaskCount(SessionExecutor.Lane.Timer));
+        Assert.assertTrue(executor.getQueueWaitNanos(SessionExecutor.Lane.Background) >= TimeUnit.MILLISECONDS.toNanos(40));
+        Assert.assertEquals(executor.getQueueWaitNanos(), executor.getQueueWaitNanos(SessionExecutor.Lane.Interactive)
+                + executor.getQueueWaitNanos(SessionExecutor.Lane.Timer)
+                + executor.getQueueWaitNanos(SessionExecutor.Lane.Background));
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private static CountDownLatch blockExecutor(SessionExecutor executor) throws InterruptedException
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try
+            {
+                gate.await();
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        return gate;
+    }
+
+    @Test
+    public void testShutdownNowReturnsWaitingTasks() throws Exception
+    {
+        ExecutorService carrier = java.util.concurrent.Executors.newSingleThreadExecutor();
+        AtomicBoolean blocked = new AtomicBoolean(true);
+        carrier.execute(() -> {while (blocked.get()) Thread.yield();});
+        SessionExecutor executor = new SessionScheduler(carrier).newSessionExecutor("Test ", "n");
+        executor.execute(() -> {});
+        executor.execute(() -> {});
+        Assert.assertEquals(2, executor.shutdownNow().size());
+        blocked.set(false);
+        carrier.shutdown();
+        Assert.assertTrue(carrier.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, executor.getCompletedTaskCount());
+    }
+}
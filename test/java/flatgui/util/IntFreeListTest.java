@@ -0,0 +1,95 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * @author Denis Lebedev
+ */
+public class IntFreeListTest
+{
+    @Test
+    public void testLowestFirst()
+    {
+        IntFreeList list = new IntFreeList();
+        Assert.assertTrue(list.isEmpty());
+        Assert.assertEquals(-1, list.allocate());
+
+        Assert.assertTrue(list.release(130));
+        Assert.assertTrue(list.release(7));
+        Assert.assertTrue(list.release(64));
+        Assert.assertFalse(list.release(7));
+        Assert.assertEquals(3, list.size());
+        Assert.assertTrue(list.contains(64));
+        Assert.assertFalse(list.contains(65));
+        Assert.assertFalse(list.contains(100000));
+
+        Assert.assertEquals(7, list.allocate());
+        Assert.assertEquals(64, list.allocate());
+        Assert.assertTrue(list.release(3));
+        Assert.assertEquals(3, list.allocate());
+        Assert.assertEquals(130, list.allocate());
+        Assert.assertEquals(-1, list.allocate());
+        Assert.assertTrue(list.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReleaseNegative()
+    {
+        new IntFreeList().release(-1);
+    }
+
+    @Test
+    public void testCopyIsolation()
+    {
+        IntFreeList source = new IntFreeList();
+        source.release(5);
+        source.release(70);
+        IntFreeList copy = new IntFreeList(source);
+        Assert.assertEquals(5, copy.allocate());
+        copy.release(1);
+        Assert.assertEquals(2, source.size());
+        Assert.assertEquals(5, source.allocate());
+        Assert.assertEquals(70, source.allocate());
+        Assert.assertEquals(1, copy.allocate());
+        Assert.assertEquals(70, copy.allocate());
+    }
+
+    @Test
+    public void testChurnAgainstTreeSet()
+    {
+        Random r = new Random(11);
+        IntFreeList list = new IntFreeList();
+        TreeSet<Integer> expected = new TreeSet<>();
+        // Indices in use, as allocated from the list or appended past the highest one
+        TreeSet<Integer> used = new TreeSet<>();
+        for (int step=0; step<100000; step++)
+        {
+            if (r.nextInt(2) == 0 && !used.isEmpty())
+            {
+                Integer index = used.ceiling(Integer.valueOf(r.nextInt(used.last() + 1)));
+                used.remove(index);
+                Assert.assertTrue(list.release(index.intValue()));
+                expected.add(index);
+            }
+            else
+            {
+                int index = list.allocate();
+                Integer lowest = expected.pollFirst();
+                Assert.assertEquals(lowest != null ? lowest.intValue() : -1, index);
+                used.add(Integer.valueOf(index >= 0 ? index : used.size() + expected.size()));
+            }
+            Assert.assertEquals(expected.size(), list.size());
+        }
+        for (Integer index : expected)
+        {
+            Assert.assertTrue(list.contains(index.intValue()));
+        }
+    }
+}
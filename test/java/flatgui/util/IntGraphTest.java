@@ -0,0 +1,142 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @author Denis Lebedev
+ */
+public class IntGraphTest
+{
+    @Test
+    public void testAddRemove()
+    {
+        IntGraph g = new IntGraph(2);
+        Assert.assertTrue(g.addEdge(0, 1, 10));
+        Assert.assertTrue(g.addEdge(0, 2, 20));
+        Assert.assertTrue(g.addEdge(0, 3, 30));
+        Assert.assertFalse(g.addEdge(0, 2, 25));
+        Assert.assertTrue(g.addEdge(5, 0, 50));
+
+        Assert.assertEquals(4, g.getEdgeCount());
+        Assert.assertEquals(3, g.getDegree(0));
+        Assert.assertEquals(0, g.getDegree(1));
+        Assert.assertEquals(0, g.getDegree(100));
+        Assert.assertEquals(1, g.getDegree(5));
+        Assert.assertEquals(1, g.getTarget(0, 0));
+        Assert.assertEquals(2, g.getTarget(0, 1));
+        Assert.assertEquals(3, g.getTarget(0, 2));
+        Assert.assertEquals(20, g.getPayload(0, 1));
+
+        Assert.assertEquals(20, g.removeEdge(0, 2));
+        Assert.assertEquals(-1, g.removeEdge(0, 2));
+        Assert.assertEquals(2, g.getDegree(0));
+        Assert.assertEquals(1, g.getTarget(0, 0));
+        Assert.assertEquals(3, g.getTarget(0, 1));
+        Assert.assertEquals(30, g.getPayload(0, 1));
+        Assert.assertEquals(-1, g.indexOfEdge(0, 2));
+        Assert.assertEquals(1, g.indexOfEdge(0, 3));
+
+        g.clearVertex(0);
+        Assert.assertEquals(0, g.getDegree(0));
+        Assert.assertEquals(1, g.getEdgeCount());
+        Assert.assertTrue(g.addEdge(0, 7, 70));
+        Assert.assertEquals(7, g.getTarget(0, 0));
+    }
+
+    @Test
+    public void testCopy()
+    {
+        IntGraph g = new IntGraph(4);
+        g.addEdge(1, 2, 12);
+        g.addEdge(1, 3, 13);
+        IntGraph copy = new IntGraph(g);
+        copy.addEdge(1, 4, 14);
+        g.removeEdge(1, 2);
+
+        Assert.assertEquals(1, g.getDegree(1));
+        Assert.assertEquals(3, copy.getDegree(1));
+        Assert.assertEquals(2, copy.getTarget(1, 0));
+        Assert.assertEquals(14, copy.getPayload(1, 2));
+    }
+
+    @Test
+    public void testRemoveEdgesByPredicate()
+    {
+        IntGraph g = new IntGraph(4);
+        for (int i=0; i<10; i++)
+        {
+            g.addEdge(0, i, 100 + i);
+        }
+        g.addEdge(1, 2, 12);
+        Assert.assertEquals(5, g.removeEdges(0, t -> t % 2 == 0));
+        Assert.assertEquals(5, g.getDegree(0));
+        for (int i=0; i<5; i++)
+        {
+            Assert.assertEquals(2*i + 1, g.getTarget(0, i));
+            Assert.assertEquals(100 + 2*i + 1, g.getPayload(0, i));
+        }
+        Assert.assertEquals(0, g.removeEdges(3, t -> true));
+        Assert.assertEquals(6, g.getEdgeCount());
+        Assert.assertTrue(g.addEdge(0, 4, 104));
+        Assert.assertEquals(4, g.getTarget(0, 5));
+    }
+
+    @Test
+    public void testChurnAgainstMap()
+    {
+        Random r = new Random(5);
+        int vertexCount = 200;
+        IntGraph g = new IntGraph(8);
+        List<Map<Integer, Integer>> expected = new ArrayList<>();
+        for (int v=0; v<vertexCount; v++)
+        {
+            expected.add(new LinkedHashMap<>());
+        }
+        for (int step=0; step<100000; step++)
+        {
+            int from = r.nextInt(vertexCount);
+            int to = r.nextInt(vertexCount);
+            int op = r.nextInt(10);
+            if (op < 6)
+            {
+                boolean added = g.addEdge(from, to, step);
+                Assert.assertEquals(!expected.get(from).containsKey(to), added);
+                expected.get(from).putIfAbsent(to, step);
+            }
+            else if (op < 9)
+            {
+                Integer payload = expected.get(from).remove(to);
+                Assert.assertEquals(payload != null ? payload.intValue() : -1, g.removeEdge(from, to));
+            }
+            else
+            {
+                g.clearVertex(from);
+                expected.get(from).clear();
+            }
+        }
+
+        int edgeCount = 0;
+        for (int v=0; v<vertexCount; v++)
+        {
+            Map<Integer, Integer> actual = new LinkedHashMap<>();
+            for (int i=0; i<g.getDegree(v); i++)
+            {
+                actual.put(g.getTarget(v, i), g.getPayload(v, i));
+            }
+            Assert.assertEquals(new ArrayList<>(expected.get(v).entrySet()), new ArrayList<>(actual.entrySet()));
+            edgeCount += actual.size();
+        }
+        Assert.assertEquals(edgeCount, g.getEdgeCount());
+    }
+}
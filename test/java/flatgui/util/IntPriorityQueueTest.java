@@ -0,0 +1,81 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * @author Denis Lebedev
+ */
+public class IntPriorityQueueTest
+{
+    @Test
+    public void testOrder()
+    {
+        IntPriorityQueue q = new IntPriorityQueue(2);
+        q.add(30, 3);
+        q.add(10, 1);
+        q.add(50, 5);
+        q.add(20, 2);
+        q.add(40, 4);
+
+        Assert.assertEquals(5, q.size());
+        Assert.assertEquals(1, q.peekPriority());
+        Assert.assertEquals(10, q.poll());
+        Assert.assertEquals(20, q.poll());
+        Assert.assertEquals(30, q.poll());
+        Assert.assertEquals(40, q.poll());
+        Assert.assertEquals(50, q.poll());
+        Assert.assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void testRandom()
+    {
+        Random r = new Random(17);
+        IntPriorityQueue q = new IntPriorityQueue(1);
+        List<Long> expected = new ArrayList<>();
+        for (int i=0; i<1000; i++)
+        {
+            long p = r.nextInt(100000);
+            q.add((int) p, p);
+            expected.add(p);
+        }
+        Collections.sort(expected);
+        for (Long p : expected)
+        {
+            Assert.assertEquals(p.longValue(), q.peekPriority());
+            Assert.assertEquals(p.intValue(), q.poll());
+        }
+        Assert.assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void testInterleaved()
+    {
+        IntPriorityQueue q = new IntPriorityQueue(4);
+        q.add(5, 5);
+        q.add(1, 1);
+        Assert.assertEquals(1, q.poll());
+        q.add(3, 3);
+        q.add(0, 0);
+        Assert.assertEquals(0, q.poll());
+        Assert.assertEquals(3, q.poll());
+        q.clear();
+        Assert.assertTrue(q.isEmpty());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testPollEmpty()
+    {
+        new IntPriorityQueue(1).poll();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright Denys Lebediev
+ */
+package flatgui.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Denis Lebedev
+ */
+public class PagedCowListTest
+{
+    @Test
+    public void testAddGetSet()
+    {
+        PagedCowList<Integer> list = new PagedCowList<>(1);
+        int count = PagedCowList.PAGE_SIZE * 3 + 5;
+        for (int i=0; i<count; i++)
+        {
+            list.add(Integer.valueOf(i));
+        }
+        Assert.assertEquals(count, list.size());
+        Assert.assertEquals(4, list.getPageCount());
+        for (int i=0; i<count; i++)
+        {
+            Assert.assertEquals(i, list.get(i).intValue());
+        }
+        Assert.assertEquals(7, list.set(7, Integer.valueOf(-7)).intValue());
+        Assert.assertEquals(-7, list.get(7).intValue());
+        list.trimCapacity();
+        list.add(Integer.valueOf(count));
+        Assert.assertEquals(count, list.get(count).intValue());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds()
+    {
+        PagedCowList<Integer> list = new PagedCowList<>(PagedCowList.PAGE_SIZE);
+        list.add(Integer.valueOf(0));
+        list.get(1);
+    }
+
+    @Test
+    public void testCopyIsolation()
+    {
+        PagedCowList<Integer> source = new PagedCowList<>(0);
+        int count = PagedCowList.PAGE_SIZE * 4;
+        for (int i=0; i<count; i++)
+        {
+            source.add(Integer.valueOf(i));
+        }
+        Assert.assertEquals(4, source.getOwnPageCount());
+
+        PagedCowList<Integer> copy = new PagedCowList<>(source);
+        Assert.assertEquals(0, source.getOwnPageCount());
+        Assert.assertEquals(0, copy.getOwnPageCount());
+        Assert.assertEquals(source, copy);
+
+        copy.set(1, Integer.valueOf(-1));
+        Assert.assertEquals(1, copy.getOwnPageCount());
+        Assert.assertEquals(1, source.get(1).intValue());
+
+        source.set(PagedCowList.PAGE_SIZE * 2, Integer.valueOf(-2));
+        Assert.assertEquals(1, source.getOwnPageCount());
+        Assert.assertEquals(PagedCowList.PAGE_SIZE * 2, copy.get(PagedCowList.PAGE_SIZE * 2).intValue());
+
+        copy.add(Integer.valueOf(count));
+        Assert.assertEquals(count + 1, copy.size());
+        Assert.assertEquals(count, source.size());
+
+        PagedCowList<Integer> copyOfCopy = new PagedCowList<>(copy);
+        copyOfCopy.set(1, Integer.valueOf(-3));
+        Assert.assertEquals(-1, copy.get(1).intValue());
+        Assert.assertEquals(1, source.get(1).intValue());
+    }
+
+    @Test
+    public void testRandomAgainstArrayList()
+    {
+        Random random = new Random(9);
+        List<PagedCowList<Integer>> lists = new ArrayList<>();
+        List<List<Integer>> expected = new ArrayList<>();
+        lists.add(new PagedCowList<>(10));
+        expected.add(new ArrayList<>());
+        for (int step=0; step<20000; step++)
+        {
+            int i = random.nextInt(lists.size());
+            PagedCowList<Integer> list = lists.get(i);
+            List<Integer> e = expected.get(i);
+            int op = random.nextInt(20);
+            if (op == 0 && lists.size() < 8)
+            {
+                lists.add(new PagedCowList<>(list));
+                expected.add(new ArrayList<>(e));
+            }
+            else if (op < 8 || e.isEmpty())
+            {
+                Integer value = Integer.valueOf(random.nextInt());
+                list.add(value);
+                e.add(value);
+            }
+            else
+            {
+                int index = random.nextInt(e.size());
+                Integer value = Integer.valueOf(random.nextInt());
+                Assert.assertEquals(e.set(index, value), list.set(index, value));
+            }
+        }
+        for (int i=0; i<lists.size(); i++)
+        {
+            Assert.assertEquals(expected.get(i), lists.get(i));
+        }
+    }
+}